@@ -0,0 +1,137 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map-backed stand-ins for the repositories, so service benchmarks measure the service
+ * and not the database. Only the methods used by the service are implemented.
+ */
+final class InMemoryRepositories {
+
+    private final NavigableMap<Integer, Product> products = new ConcurrentSkipListMap<>();
+    private final Map<InventarKey, Inventar> inventars = new ConcurrentHashMap<>();
+    private final AtomicInteger productIds = new AtomicInteger();
+
+    final ProductRepository productRepository = proxy(ProductRepository.class, (method, args) -> switch (method) {
+        case "findById" -> Optional.ofNullable(products.get((Integer) args[0]));
+        case "findRowById" -> Optional.ofNullable(products.get((Integer) args[1]))
+                .filter(product -> product.getMachineId().equals(args[0])).map(InMemoryRepositories::toRow);
+        case "findAllRows" -> products.values().stream()
+                .filter(product -> product.getMachineId().equals(args[0])).map(InMemoryRepositories::toRow).toList();
+        case "findRowsAfter" -> products.tailMap((Integer) args[1], false).values().stream()
+                .filter(product -> product.getMachineId().equals(args[0]))
+                .limit(((Limit) args[2]).max()).map(InMemoryRepositories::toRow).toList();
+        case "save" -> save((Product) args[0]);
+        case "saveAll" -> ((Collection<?>) args[0]).stream().map(product -> save((Product) product)).toList();
+        case "deleteByProductId" -> products.computeIfPresent((Integer) args[1],
+                (id, product) -> product.getMachineId().equals(args[0]) ? null : product) == null ? 1 : 0;
+        case "count" -> (long) products.size();
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    final InventarRepository inventarRepository = proxy(InventarRepository.class, (method, args) -> switch (method) {
+        case "findByMachineIdAndProductName", "findCurrent" -> inventars.get(new InventarKey((String) args[0], (String) args[1]));
+        case "getReferenceById" -> inventars.values().stream().filter(i -> i.getId().equals(args[0])).findFirst().orElseThrow();
+        case "incrementQuantity" -> incrementQuantity((String) args[1], (String) args[2], (Integer) args[3]);
+        case "decrementQuantity" -> {
+            Inventar inventar = inventars.get(new InventarKey((String) args[0], (String) args[1]));
+            if (inventar == null || inventar.getQuantity() == 0) {
+                yield Optional.empty();
+            }
+            inventar.setQuantity(inventar.getQuantity() - 1);
+            yield Optional.of(inventar.getQuantity());
+        }
+        case "insertMissing" -> {
+            int inserted = 0;
+            for (String productName : (String[]) args[1]) {
+                if (inventars.putIfAbsent(new InventarKey((String) args[0], productName),
+                        new Inventar(UUID.randomUUID().toString(), (String) args[0], productName, 0)) == null) {
+                    inserted++;
+                }
+            }
+            yield inserted;
+        }
+        case "findByMachineIdAndProductNameInOrderByProductName" -> ((Collection<?>) args[1]).stream()
+                .map(productName -> inventars.get(new InventarKey((String) args[0], (String) productName))).toList();
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    private Product save(Product product) {
+        if (product.getProductId() == null) {
+            product.setProductId(productIds.incrementAndGet());
+        }
+        products.put(product.getProductId(), product);
+        return product;
+    }
+
+    private Optional<InventarRepository.InventarQuantity> incrementQuantity(String machineId, String productName, int maxQuantity) {
+        Inventar inventar = inventars.computeIfAbsent(new InventarKey(machineId, productName),
+                key -> new Inventar(UUID.randomUUID().toString(), machineId, productName, 0));
+        synchronized (inventar) {
+            if (inventar.getQuantity() >= maxQuantity) {
+                return Optional.empty();
+            }
+            inventar.setQuantity(inventar.getQuantity() + 1);
+            String id = inventar.getId();
+            Integer quantity = inventar.getQuantity();
+            return Optional.of(new InventarRepository.InventarQuantity() {
+                @Override
+                public String getId() {
+                    return id;
+                }
+
+                @Override
+                public Integer getQuantity() {
+                    return quantity;
+                }
+            });
+        }
+    }
+
+    private static ProductRow toRow(Product product) {
+        Inventar inventar = product.getInventar();
+        return inventar == null
+                ? new ProductRow(product.getProductId(), product.getMachineId(), product.getProductName(), product.getProductPrice(), null, null, null)
+                : new ProductRow(product.getProductId(), product.getMachineId(), product.getProductName(), product.getProductPrice(),
+                        inventar.getId(), inventar.getProductName(), inventar.getQuantity());
+    }
+
+    List<Product> products() {
+        return new ArrayList<>(products.values());
+    }
+
+    private record InventarKey(String machineId, String productName) {
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> switch (method.getName()) {
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> type.getSimpleName() + "InMemory";
+            default -> handler.handle(method.getName(), args);
+        });
+    }
+}
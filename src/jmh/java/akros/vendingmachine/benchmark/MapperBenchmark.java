@@ -0,0 +1,50 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.InventarDTO;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.mapper.InventarMapper;
+import akros.vendingmachine.dto.mapper.ProductMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private Product product;
+    private Inventar inventar;
+
+    @Setup
+    public void setUp() {
+        inventar = new Inventar("3f1c2d4e-0000-4000-8000-000000000001", DEFAULT_MACHINE_ID, "Cola", 7);
+        product = new Product(42, DEFAULT_MACHINE_ID, "Cola", 350, inventar);
+    }
+
+    @Benchmark
+    public ProductDTO productToDto() {
+        return ProductMapper.PRODUCT_MAPPER.mapToProductDTO(product);
+    }
+
+    @Benchmark
+    public Product productRoundTrip() {
+        return ProductMapper.PRODUCT_MAPPER.mapToProduct(ProductMapper.PRODUCT_MAPPER.mapToProductDTO(product));
+    }
+
+    @Benchmark
+    public Inventar inventarRoundTrip() {
+        InventarDTO inventarDTO = InventarMapper.INVENTAR_MAPPER.mapToInventarDTO(inventar);
+        return InventarMapper.INVENTAR_MAPPER.mapToInventar(inventarDTO);
+    }
+}
@@ -0,0 +1,93 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.config.CborConfig;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Serialization cost of a single-product response and of a page of 100 products as JSON and as
+ * trimmed CBOR. The payload sizes of both formats are printed once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadFormatBenchmark {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = CborConfig.trimmed(new CBORMapper());
+    private ProductResponseDto response;
+    private ProductPageDTO page;
+    private byte[] cborPage;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        List<ProductDTO> products = IntStream.range(0, 100)
+                .mapToObj(i -> new ProductDTO(1_000 + i, DEFAULT_MACHINE_ID, "Product " + i % 10, 250 + i % 10 * 10,
+                        new Inventar(UUID.nameUUIDFromBytes(new byte[]{(byte) (i % 10)}).toString(), DEFAULT_MACHINE_ID, "Product " + i % 10, 7)))
+                .toList();
+        response = ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(OK)
+                .message("Product found by ID: " + products.get(0).getProductId())
+                .error(null)
+                .path(PRODUCT_API_PATH + products.get(0).getProductId())
+                .statusCode(OK.value())
+                .data(Map.of(PRODUCT_KEY, products.get(0)))
+                .build();
+        page = ProductPageDTO.builder().products(products).size(products.size()).nextCursor(1_099).build();
+        cborPage = cborMapper.writeValueAsBytes(page);
+        System.out.printf("%nPayload bytes: response json=%d cbor=%d, page of 100 json=%d cbor=%d%n",
+                jsonMapper.writeValueAsBytes(response).length, cborMapper.writeValueAsBytes(response).length,
+                jsonMapper.writeValueAsBytes(page).length, cborPage.length);
+    }
+
+    @Benchmark
+    public byte[] responseJson() throws JsonProcessingException {
+        return jsonMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] responseCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] pageJson() throws JsonProcessingException {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] pageCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public ProductPageDTO pageCborRead() throws IOException {
+        return cborMapper.readValue(cborPage, ProductPageDTO.class);
+    }
+}
@@ -0,0 +1,85 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.cache.ProductCache;
+import akros.vendingmachine.config.CacheProperties;
+import akros.vendingmachine.config.StatsProperties;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.search.ProductSearchIndex;
+import akros.vendingmachine.service.impl.ProductServiceImpl;
+import akros.vendingmachine.service.impl.RowInventoryStore;
+import akros.vendingmachine.stats.VendStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.dto.mapper.ProductMapper.PRODUCT_MAPPER;
+
+/**
+ * {@link ProductServiceImpl} end to end against in-memory repositories: mapping, validation,
+ * caching, event publishing and envelope construction, without the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductServiceBenchmark {
+
+    private static final int CATALOG_SIZE = 100;
+
+    private ProductServiceImpl productService;
+    private Integer hotProductId;
+
+    @Setup
+    public void setUp() {
+        var repositories = new InMemoryRepositories();
+        var inventoryStore = new RowInventoryStore(repositories.inventarRepository);
+        var productCache = new ProductCache(repositories.productRepository, inventoryStore, PRODUCT_MAPPER, new CacheProperties());
+        productService = new ProductServiceImpl(repositories.productRepository, repositories.inventarRepository,
+                inventoryStore, productCache, new ProductSearchIndex(repositories.productRepository, inventoryStore, PRODUCT_MAPPER), Optional.empty(),
+                event -> { }, Optional.empty(), null, new VendStats(new StatsProperties()), PRODUCT_MAPPER);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            productService.createProduct(DEFAULT_MACHINE_ID, product("Product " + (i / MAX_PRODUCT_QUANTITY)));
+        }
+        hotProductId = repositories.products().getFirst().getProductId();
+    }
+
+    @Benchmark
+    public ProductResponseDto getProduct() {
+        return productService.getProduct(DEFAULT_MACHINE_ID, hotProductId);
+    }
+
+    @Benchmark
+    public List<ProductDTO> getProducts() {
+        return productService.getProducts(DEFAULT_MACHINE_ID);
+    }
+
+    @Benchmark
+    public ProductResponseDto searchProducts() {
+        return productService.searchProducts(DEFAULT_MACHINE_ID, "Product 1", null, 400, "price", null);
+    }
+
+    @Benchmark
+    public ProductResponseDto createAndDeleteProduct() {
+        ProductResponseDto created = productService.createProduct(DEFAULT_MACHINE_ID, product("Cola"));
+        Integer productId = ((ProductDTO) created.getData().get(PRODUCT_KEY)).getProductId();
+        return productService.deleteProduct(DEFAULT_MACHINE_ID, productId);
+    }
+
+    private static ProductDTO product(String productName) {
+        return ProductDTO.builder()
+                .productName(productName)
+                .productPrice(350)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Cost of building and serializing the {@link ProductResponseDto} envelope returned by every
+ * single-product endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseEnvelopeBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ProductDTO product;
+    private ProductResponseDto response;
+    private String timestamp;
+
+    @Setup
+    public void setUp() {
+        product = new ProductDTO(42, DEFAULT_MACHINE_ID, "Cola", 350, new Inventar("3f1c2d4e-0000-4000-8000-000000000001", DEFAULT_MACHINE_ID, "Cola", 7));
+        timestamp = Instant.now().toString();
+        response = build(timestamp);
+    }
+
+    @Benchmark
+    public ProductResponseDto buildWithTimestamp() {
+        return build(Instant.now().toString());
+    }
+
+    @Benchmark
+    public ProductResponseDto buildWithFixedTimestamp() {
+        return build(timestamp);
+    }
+
+    @Benchmark
+    public String timestampOnly() {
+        return Instant.now().toString();
+    }
+
+    @Benchmark
+    public Map<String, ProductDTO> dataMapOnly() {
+        return Map.of(PRODUCT_KEY, product);
+    }
+
+    @Benchmark
+    public byte[] serializeEnvelope() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeEnvelope() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(build(Instant.now().toString()));
+    }
+
+    private ProductResponseDto build(String timestamp) {
+        return ProductResponseDto.builder()
+                .timestamp(timestamp)
+                .status(OK)
+                .message("Product found by ID: " + product.getProductId())
+                .error(null)
+                .path(PRODUCT_API_PATH + product.getProductId())
+                .statusCode(OK.value())
+                .data(Map.of(PRODUCT_KEY, product))
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package akros.vendingmachine.benchmark;
+
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.plausibility.ProductValidation;
+import akros.vendingmachine.plausibility.ProductValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the capturing lambda created by {@link ProductValidator#findProductById} on every lookup,
+ * compared to reusing one validator. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidatorBenchmark {
+
+    @Param({"42", "4242"})
+    private Integer productId;
+
+    private ProductDTO product;
+    private ProductValidator validator;
+
+    @Setup
+    public void setUp() {
+        product = ProductDTO.builder().productId(productId).productName("Cola").productPrice(350).build();
+        validator = ProductValidator.findProductById(productId);
+    }
+
+    @Benchmark
+    public ProductValidation newValidatorPerCall() {
+        return ProductValidator.findProductById(productId).apply(product);
+    }
+
+    @Benchmark
+    public ProductValidation reusedValidator() {
+        return validator.apply(product);
+    }
+}
@@ -0,0 +1,142 @@
+package akros.vendingmachine.loadtest;
+
+import akros.vendingmachine.loadtest.LoadTestSettings.Endpoint;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counters per endpoint.
+ * <p>
+ * Latencies are recorded in microseconds, from the time a request was scheduled to start
+ * rather than the time it was sent, so a stalled server shows up in the percentiles.
+ * A request is an error if it failed or timed out or was answered with a 5xx status,
+ * and it is rejected if the response status or the status of the response envelope is 4xx.
+ * A request is dropped, and not sent, if there was no known product for it to target.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+
+    public LatencyReport() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    public void recordSuccess(Endpoint endpoint, long latencyNanos) {
+        stats.get(endpoint).record(latencyNanos);
+    }
+
+    public void recordRejection(Endpoint endpoint, long latencyNanos) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.record(latencyNanos);
+        endpointStats.rejected.increment();
+    }
+
+    public void recordError(Endpoint endpoint, long latencyNanos) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.record(latencyNanos);
+        endpointStats.errors.increment();
+    }
+
+    public void recordDropped(Endpoint endpoint) {
+        stats.get(endpoint).dropped.increment();
+    }
+
+    /**
+     * Discards everything recorded so far, at the end of the warmup.
+     */
+    public void reset() {
+        stats.values().forEach(EndpointStats::reset);
+    }
+
+    /**
+     * Renders the report of everything recorded since the last reset.
+     *
+     * @param settings      The settings of the run.
+     * @param elapsedMillis The measured duration of the run.
+     */
+    public String render(LoadTestSettings settings, long elapsedMillis) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Load test: %d req/s for %s after %s warmup, mix %s%n",
+                settings.rate(), settings.duration(), settings.warmup(), settings.mix()));
+        report.append(String.format(Locale.ROOT, "%-30s %9s %9s %8s %8s %8s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "req/s", "errors", "rejected", "dropped", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalErrors = 0;
+        long totalRejected = 0;
+        long totalDropped = 0;
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            Histogram histogram = endpointStats.recorder.getIntervalHistogram();
+            if (histogram.getTotalCount() == 0 && endpointStats.dropped.sum() == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalErrors += endpointStats.errors.sum();
+            totalRejected += endpointStats.rejected.sum();
+            totalDropped += endpointStats.dropped.sum();
+            appendRow(report, entry.getKey().label(), histogram, endpointStats.errors.sum(),
+                    endpointStats.rejected.sum(), endpointStats.dropped.sum(), elapsedMillis);
+        }
+        appendRow(report, "total", total, totalErrors, totalRejected, totalDropped, elapsedMillis);
+        return report.toString();
+    }
+
+    public void write(Path file, String report) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, report);
+    }
+
+    private static void appendRow(StringBuilder report, String label, Histogram histogram, long errors, long rejected,
+                                  long dropped, long elapsedMillis) {
+        long requests = histogram.getTotalCount();
+        report.append(String.format(Locale.ROOT, "%-30s %9d %9.1f %7.2f%% %7.2f%% %8d %10.2f %10.2f %10.2f %10.2f%n",
+                label, requests, requests * 1000.0 / Math.max(elapsedMillis, 1),
+                percent(errors, requests), percent(rejected, requests), dropped,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue())));
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : part * 100.0 / whole;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class EndpointStats {
+
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        private void record(long latencyNanos) {
+            recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+        }
+
+        private void reset() {
+            recorder.reset();
+            errors.reset();
+            rejected.reset();
+            dropped.reset();
+        }
+    }
+}
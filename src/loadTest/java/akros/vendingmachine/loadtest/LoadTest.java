@@ -0,0 +1,79 @@
+package akros.vendingmachine.loadtest;
+
+import akros.vendingmachine.VendingMachineApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entry point of the {@code loadTest} Gradle task.
+ * <p>
+ * Boots the application on a random port against an embedded Postgres, whose binaries ship
+ * in a Maven artifact so the run needs neither Docker nor a network once the dependencies are
+ * cached, seeds one product per product name, then drives the configured request mix at a
+ * fixed arrival rate: first for the warmup, then for the measured duration. The report is
+ * printed and written to {@code loadtest.report}.
+ * <p>
+ * Arguments are passed to the booted application, for example {@code --spring.profiles.active=reactive}
+ * to measure the reactive service; the R2DBC pool then connects to the same embedded Postgres.
+ * With {@code loadtest.url} set, the requests go to that application and nothing is booted.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        if (settings.baseUrl() != null) {
+            run(settings, settings.baseUrl());
+            return;
+        }
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+             ConfigurableApplicationContext context = boot(postgres, args)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            run(settings, "http://localhost:" + port);
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(EmbeddedPostgres postgres, String[] args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                "--spring.r2dbc.username=postgres",
+                "--spring.r2dbc.password=",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0"));
+        arguments.addAll(List.of(args));
+        return SpringApplication.run(VendingMachineApplication.class, arguments.toArray(String[]::new));
+    }
+
+    private static void run(LoadTestSettings settings, String baseUrl) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            OpenModelLoadGenerator generator = new OpenModelLoadGenerator(settings, baseUrl, executor);
+            System.out.printf("Seeded %d products on %s%n", generator.seed(), baseUrl);
+
+            LatencyReport report = new LatencyReport();
+            generator.run(settings.warmup(), report);
+            report.reset();
+
+            long start = System.currentTimeMillis();
+            generator.run(settings.duration(), report);
+            String rendered = report.render(settings, System.currentTimeMillis() - start);
+            System.out.print(rendered);
+            if (settings.report() != null) {
+                report.write(settings.report(), rendered);
+                System.out.println("Report written to " + settings.report());
+            }
+        }
+    }
+}
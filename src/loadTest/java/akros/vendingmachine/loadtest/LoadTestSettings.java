@@ -0,0 +1,79 @@
+package akros.vendingmachine.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from the {@code loadtest.*} system properties
+ * that the {@code loadTest} Gradle task forwards from its project properties.
+ *
+ * @param rate     Requests started per second, whatever the response times.
+ * @param duration Measured duration of the run.
+ * @param warmup   Duration of the unmeasured run before it.
+ * @param timeout  Timeout of a single request.
+ * @param names    Number of distinct product names the generated products are spread over.
+ * @param mix      Relative weight of each endpoint.
+ * @param baseUrl  URL of an already running application, or null to boot one.
+ * @param report   File the report is written to, or null for standard output only.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public record LoadTestSettings(int rate, Duration duration, Duration warmup, Duration timeout, int names,
+                               Map<Endpoint, Integer> mix, String baseUrl, Path report) {
+
+    private static final String DEFAULT_MIX = "post=20,get=50,list=5,put=10,delete=15";
+
+    public static LoadTestSettings fromSystemProperties() {
+        String report = System.getProperty("loadtest.report");
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.rate", 200),
+                Duration.parse(System.getProperty("loadtest.duration", "PT60S")),
+                Duration.parse(System.getProperty("loadtest.warmup", "PT10S")),
+                Duration.parse(System.getProperty("loadtest.timeout", "PT5S")),
+                Integer.getInteger("loadtest.names", 500),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                System.getProperty("loadtest.url"),
+                report == null ? null : Path.of(report));
+    }
+
+    /**
+     * Parses a mix such as {@code post=20,get=50,delete=30}. Endpoints left out are not called.
+     */
+    static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid load test mix entry: " + entry);
+            }
+            weights.put(Endpoint.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Load test mix has no positive weight: " + mix);
+        }
+        return weights;
+    }
+
+    public enum Endpoint {
+        POST("POST /api/v1/products"),
+        GET("GET /api/v1/products/{id}"),
+        LIST("GET /api/v1/products"),
+        PUT("PUT /api/v1/products/{id}"),
+        DELETE("DELETE /api/v1/products/{id}");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+}
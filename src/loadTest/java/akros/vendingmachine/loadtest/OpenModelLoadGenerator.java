@@ -0,0 +1,244 @@
+package akros.vendingmachine.loadtest;
+
+import akros.vendingmachine.loadtest.LoadTestSettings.Endpoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-model load generator: requests are started at a fixed arrival rate, each on its own
+ * virtual thread, whether or not earlier requests have been answered. A slow server therefore
+ * builds up concurrent requests instead of slowing the generator down, and each latency is
+ * measured from the time its request was scheduled to start.
+ * <p>
+ * The generator keeps the products it created or seeded, so GET, PUT and DELETE target
+ * existing products and DELETE removes them again.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public class OpenModelLoadGenerator {
+
+    private static final Pattern PRODUCT_ID = Pattern.compile("\"productId\"\\s*:\\s*(\\d+)");
+    private static final Pattern STATUS_CODE = Pattern.compile("\"statusCode\"\\s*:\\s*(\\d+)");
+
+    private final LoadTestSettings settings;
+    private final URI productsUri;
+    private final HttpClient httpClient;
+    private final Endpoint[] schedule;
+    private final List<KnownProduct> knownProducts = new ArrayList<>();
+
+    public OpenModelLoadGenerator(LoadTestSettings settings, String baseUrl, ExecutorService executor) {
+        this.settings = settings;
+        this.productsUri = URI.create(baseUrl + "/api/v1/products");
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.timeout())
+                .executor(executor)
+                .build();
+        this.schedule = weightedSchedule(settings.mix());
+    }
+
+    /**
+     * Creates one product per product name through the batch endpoint, or one by one when the
+     * application has none, like the reactive service.
+     *
+     * @return the number of created products.
+     */
+    public int seed() throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int name = 0; name < settings.names(); name++) {
+            body.append(name == 0 ? "" : ",").append(productJson(productName(name), price()));
+        }
+        body.append(']');
+        HttpResponse<String> response = httpClient.send(jsonRequest(productsUri.resolve("products/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 404 || response.statusCode() == 405) {
+            return seedOneByOne();
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+        }
+        Matcher matcher = PRODUCT_ID.matcher(response.body());
+        int seeded = 0;
+        while (matcher.find()) {
+            remember(new KnownProduct(Integer.valueOf(matcher.group(1)), productName(seeded++ % settings.names())));
+        }
+        return seeded;
+    }
+
+    private int seedOneByOne() throws IOException, InterruptedException {
+        for (int name = 0; name < settings.names(); name++) {
+            HttpResponse<String> response = httpClient.send(jsonRequest(productsUri)
+                    .POST(HttpRequest.BodyPublishers.ofString(productJson(productName(name), price())))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = PRODUCT_ID.matcher(response.body());
+            if (response.statusCode() != 200 || !matcher.find()) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+            }
+            remember(new KnownProduct(Integer.valueOf(matcher.group(1)), productName(name)));
+        }
+        return settings.names();
+    }
+
+    /**
+     * Starts requests at the configured rate for the given duration, then waits for the
+     * requests still in flight.
+     */
+    public void run(Duration duration, LatencyReport report) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long requests = duration.toNanos() / intervalNanos;
+        long start = System.nanoTime();
+        try (ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long request = 0; request < requests; request++) {
+                long intendedStart = start + request * intervalNanos;
+                long delay;
+                while ((delay = intendedStart - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                Endpoint endpoint = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+                requestExecutor.execute(() -> send(endpoint, intendedStart, report));
+            }
+        }
+    }
+
+    private void send(Endpoint endpoint, long intendedStart, LatencyReport report) {
+        KnownProduct target = null;
+        String postedName = null;
+        HttpRequest request;
+        switch (endpoint) {
+            case POST -> {
+                postedName = productName(randomName());
+                request = jsonRequest(productsUri)
+                        .POST(HttpRequest.BodyPublishers.ofString(productJson(postedName, price())))
+                        .build();
+            }
+            case LIST -> request = HttpRequest.newBuilder(productsUri)
+                    .timeout(settings.timeout())
+                    .header("Accept-Encoding", "gzip")
+                    .GET()
+                    .build();
+            default -> {
+                target = endpoint == Endpoint.DELETE ? takeKnownProduct() : anyKnownProduct();
+                if (target == null) {
+                    report.recordDropped(endpoint);
+                    return;
+                }
+                HttpRequest.Builder builder = jsonRequest(productsUri.resolve("products/" + target.id()));
+                request = switch (endpoint) {
+                    case GET -> builder.GET().build();
+                    case PUT -> builder.PUT(HttpRequest.BodyPublishers.ofString(productJson(target.name(), price()))).build();
+                    default -> builder.DELETE().build();
+                };
+            }
+        }
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            long latency = System.nanoTime() - intendedStart;
+            int status = envelopeStatus(response);
+            if (status >= 500) {
+                report.recordError(endpoint, latency);
+            } else if (status >= 400) {
+                report.recordRejection(endpoint, latency);
+            } else {
+                report.recordSuccess(endpoint, latency);
+                if (endpoint == Endpoint.POST) {
+                    Matcher matcher = PRODUCT_ID.matcher(response.body());
+                    if (matcher.find()) {
+                        remember(new KnownProduct(Integer.valueOf(matcher.group(1)), postedName));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            report.recordError(endpoint, System.nanoTime() - intendedStart);
+            if (endpoint == Endpoint.DELETE) {
+                remember(target);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The status of the response envelope if there is one, the HTTP status otherwise.
+     */
+    private static int envelopeStatus(HttpResponse<String> response) {
+        if (response.statusCode() != 200 || response.body() == null) {
+            return response.statusCode();
+        }
+        Matcher matcher = STATUS_CODE.matcher(response.body());
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : response.statusCode();
+    }
+
+    private HttpRequest.Builder jsonRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(settings.timeout())
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+    }
+
+    private synchronized void remember(KnownProduct product) {
+        knownProducts.add(product);
+    }
+
+    private synchronized KnownProduct anyKnownProduct() {
+        return knownProducts.isEmpty() ? null : knownProducts.get(ThreadLocalRandom.current().nextInt(knownProducts.size()));
+    }
+
+    private synchronized KnownProduct takeKnownProduct() {
+        if (knownProducts.isEmpty()) {
+            return null;
+        }
+        int index = ThreadLocalRandom.current().nextInt(knownProducts.size());
+        KnownProduct last = knownProducts.removeLast();
+        return index == knownProducts.size() ? last : knownProducts.set(index, last);
+    }
+
+    private int randomName() {
+        return ThreadLocalRandom.current().nextInt(settings.names());
+    }
+
+    private static String productName(int name) {
+        return "load-product-" + name;
+    }
+
+    private static int price() {
+        return 5 * ThreadLocalRandom.current().nextInt(1, 41);
+    }
+
+    private static String productJson(String productName, int price) {
+        return "{\"productName\":\"" + productName + "\",\"productPrice\":" + price + "}";
+    }
+
+    /**
+     * Spreads each endpoint over the schedule slots according to its weight.
+     */
+    private static Endpoint[] weightedSchedule(Map<Endpoint, Integer> mix) {
+        List<Endpoint> slots = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            for (int slot = 0; slot < weight; slot++) {
+                slots.add(endpoint);
+            }
+        });
+        return slots.toArray(Endpoint[]::new);
+    }
+
+    private record KnownProduct(Integer id, String name) {
+    }
+}
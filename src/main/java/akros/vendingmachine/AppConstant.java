@@ -2,5 +2,29 @@ package akros.vendingmachine;
 
 public final class AppConstant {
     public static final String PRODUCT_API_PATH = "/api/v1/products/";
+    public static final String MACHINE_API_PATH = "/api/v1/machines/";
+    public static final String DEFAULT_MACHINE_ID = "default";
+    public static final String MACHINE_ID_PATTERN = "[A-Za-z0-9_-]{1,64}";
     public static final String PRODUCT_KEY = "product";
+    public static final String PRODUCTS_KEY = "products";
+    public static final String IMPORT_KEY = "import";
+    public static final String RESERVATION_KEY = "reservation";
+    public static final String STATS_KEY = "stats";
+    public static final int MAX_PRODUCT_QUANTITY = 10;
+    public static final int PRODUCT_ID_ALLOCATION_SIZE = 50;
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Returns the API path of the products of a machine, used in the response envelope.
+     * Products of the default machine keep the unscoped path.
+     *
+     * @param machineId The ID of the machine.
+     * @return The path, ending with a slash.
+     */
+    public static String productApiPath(String machineId) {
+        return DEFAULT_MACHINE_ID.equals(machineId) ? PRODUCT_API_PATH : MACHINE_API_PATH + machineId + "/products/";
+    }
 }
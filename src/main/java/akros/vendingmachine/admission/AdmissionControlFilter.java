@@ -0,0 +1,208 @@
+package akros.vendingmachine.admission;
+
+import akros.vendingmachine.config.AdmissionProperties;
+import akros.vendingmachine.dto.ProductResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Limits the number of concurrent product API requests, with separate adaptive limits for
+ * reads ({@code GET} and {@code HEAD}) and writes, so a slow database sheds excess requests
+ * quickly instead of tying up every server thread.
+ * <p>
+ * A request over the limit waits up to {@code app.admission.queue-timeout} for a slot, and is
+ * otherwise answered at once with {@code 503 Service Unavailable} and a {@code Retry-After} header.
+ * Asynchronous requests, such as NDJSON streams, hold their slot until they complete, but their
+ * duration does not adapt the limit, and neither does the duration of bulk imports. Event streams
+ * are not limited at all: they stay open for as long as the client listens, mostly idle.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(prefix = "app.admission", name = "enabled", havingValue = "true")
+public class AdmissionControlFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final String PRODUCTS_PATH = PRODUCT_API_PATH.substring(0, PRODUCT_API_PATH.length() - 1);
+    private static final String BULK_IMPORT_PATH = "/products/import";
+    private static final String EVENTS_PATH = "/products/events";
+
+    private final AimdLimiter reads;
+    private final AimdLimiter writes;
+    private final AdmissionProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public AdmissionControlFilter(AdmissionProperties properties, ObjectMapper objectMapper) {
+        this.reads = new AimdLimiter(properties.getRead());
+        this.writes = new AimdLimiter(properties.getWrite());
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the limiter applied to requests of the given method.
+     *
+     * @param method The HTTP method.
+     * @return The read limiter for {@code GET} and {@code HEAD}, the write limiter otherwise.
+     */
+    public AimdLimiter limiter(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) ? reads : writes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals(PRODUCTS_PATH) || path.startsWith(PRODUCT_API_PATH) || path.startsWith(MACHINE_API_PATH))
+                || path.endsWith(EVENTS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AimdLimiter limiter = limiter(request.getMethod());
+        boolean admitted;
+        try {
+            admitted = limiter.acquire(properties.getQueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            shed(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            limiter.release(System.nanoTime() - start, AimdLimiter.Outcome.DROPPED);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new ReleasingListener(limiter, start));
+        } else {
+            limiter.release(System.nanoTime() - start, isBulkImport(request) ? AimdLimiter.Outcome.IGNORED : outcome(response));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "read", reads);
+        bind(registry, "write", writes);
+    }
+
+    private static void bind(MeterRegistry registry, String kind, AimdLimiter limiter) {
+        Gauge.builder("admission.limit", limiter, AimdLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("kind", kind)
+                .register(registry);
+        Gauge.builder("admission.in.flight", limiter, AimdLimiter::getInFlight)
+                .description("Admitted requests not completed yet")
+                .tag("kind", kind)
+                .register(registry);
+        Gauge.builder("admission.queued", limiter, AimdLimiter::getQueued)
+                .description("Requests waiting for a free slot")
+                .tag("kind", kind)
+                .register(registry);
+        FunctionCounter.builder("admission.shed", limiter, AimdLimiter::getShed)
+                .description("Requests answered with 503 because the limit was reached")
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private void shed(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long retryAfter = Math.max(1, (properties.getRetryAfter().toMillis() + 999) / 1000);
+        ProductResponseDto body = ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(SERVICE_UNAVAILABLE)
+                .message("Too many concurrent requests, retry after " + retryAfter + " s")
+                .error("Request shed by admission control")
+                .path(request.getRequestURI())
+                .statusCode(SERVICE_UNAVAILABLE.value())
+                .data(Map.of())
+                .build();
+        response.setStatus(SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private static boolean isBulkImport(HttpServletRequest request) {
+        return request.getRequestURI().endsWith(BULK_IMPORT_PATH);
+    }
+
+    private static AimdLimiter.Outcome outcome(HttpServletResponse response) {
+        return response.getStatus() >= 500 ? AimdLimiter.Outcome.DROPPED : AimdLimiter.Outcome.SUCCESS;
+    }
+
+    /**
+     * Releases the slot of an asynchronous request exactly once, whichever way it ends.
+     */
+    private static final class ReleasingListener implements AsyncListener {
+
+        private final AimdLimiter limiter;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingListener(AimdLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(AimdLimiter.Outcome.IGNORED);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(AimdLimiter.Outcome.IGNORED);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(AimdLimiter.Outcome.DROPPED);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release(AimdLimiter.Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - start, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package akros.vendingmachine.admission;
+
+import akros.vendingmachine.config.AdmissionProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit adapted to the observed latency by additive increase, multiplicative decrease.
+ * <p>
+ * A request within the latency target, while at least half of the limit is in use, raises the
+ * limit by {@code 1 / limit}, so about one unit per limit's worth of requests. A request slower
+ * than the target, or one that failed, multiplies the limit by the backoff ratio, at most once
+ * per latency target, so a burst of slow requests counts as one congestion signal.
+ * <p>
+ * Requests above the limit wait for a free slot in a bounded queue, up to a timeout, and are
+ * shed when the queue is full or the timeout expires.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public class AimdLimiter {
+
+    private final AdmissionProperties.Limit settings;
+    private final long latencyTargetNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final LongAdder shed = new LongAdder();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long lastDecrease;
+
+    public AimdLimiter(AdmissionProperties.Limit settings) {
+        this.settings = settings;
+        this.latencyTargetNanos = settings.getLatencyTarget().toNanos();
+        this.limit = Math.clamp(settings.getInitialLimit(), settings.getMinLimit(), settings.getMaxLimit());
+        this.lastDecrease = System.nanoTime() - latencyTargetNanos;
+    }
+
+    /**
+     * Takes a slot, waiting for one up to the given timeout if the limit is reached.
+     *
+     * @param timeout The maximum time to wait in the queue.
+     * @param unit    The unit of the timeout.
+     * @return true if a slot was taken and must be released, false if the request was shed.
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            if (timeout <= 0 || queued >= settings.getQueueCapacity()) {
+                shed.increment();
+                return false;
+            }
+            queued++;
+            try {
+                long remaining = unit.toNanos(timeout);
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        shed.increment();
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a slot and adapts the limit to the outcome of its request.
+     *
+     * @param latencyNanos The time the request held the slot.
+     * @param outcome      The outcome of the request.
+     */
+    public void release(long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (outcome == Outcome.DROPPED || outcome == Outcome.SUCCESS && latencyNanos > latencyTargetNanos) {
+                long now = System.nanoTime();
+                if (now - lastDecrease >= latencyTargetNanos) {
+                    limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+                    lastDecrease = now;
+                }
+            } else if (outcome == Outcome.SUCCESS && inFlight + 1 >= limit / 2) {
+                limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public enum Outcome {
+        /**
+         * Answered; its latency adapts the limit.
+         */
+        SUCCESS,
+        /**
+         * Failed with a server error; lowers the limit.
+         */
+        DROPPED,
+        /**
+         * Held the slot for reasons other than load, such as a long stream; leaves the limit as is.
+         */
+        IGNORED
+    }
+}
@@ -0,0 +1,43 @@
+package akros.vendingmachine.bulkimport;
+
+import java.util.Locale;
+
+/**
+ * File formats of a bulk import, one product unit per line.
+ */
+public enum ProductImportFormat {
+    /**
+     * Comma-separated {@code productName,productPrice}, with an optional header line naming the columns.
+     */
+    CSV,
+    /**
+     * One JSON object per line with the {@code productName} and {@code productPrice} of a product.
+     */
+    NDJSON;
+
+    /**
+     * Detects the format of an import file from its content type, then from its file name extension.
+     *
+     * @param fileName    The name of the file, or null.
+     * @param contentType The content type of the file, or null.
+     * @return The format.
+     * @throws IllegalArgumentException if neither names a supported format.
+     */
+    public static ProductImportFormat of(String fileName, String contentType) {
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("text/csv")) {
+            return CSV;
+        }
+        if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+            return NDJSON;
+        }
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported import format, expected a .csv or .ndjson file");
+    }
+}
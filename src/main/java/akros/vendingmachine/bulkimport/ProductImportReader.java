@@ -0,0 +1,217 @@
+package akros.vendingmachine.bulkimport;
+
+import akros.vendingmachine.dto.ProductDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the product units of an import file one line at a time, so memory stays flat whatever
+ * the size of the file: no line is kept once it was handed over, and lines longer than
+ * {@link #MAX_LINE_LENGTH} are rejected without being buffered.
+ * <p>
+ * Each valid line is passed to the {@link RowHandler}; invalid lines are reported to the
+ * {@link ErrorHandler} with their line number and skipped.
+ */
+class ProductImportReader {
+
+    static final int MAX_LINE_LENGTH = 8 * 1024;
+    static final int MAX_PRODUCT_NAME_LENGTH = 255;
+
+    private static final int NO_COLUMN = -1;
+
+    private final ObjectMapper objectMapper;
+    private final ProductImportFormat format;
+
+    ProductImportReader(ObjectMapper objectMapper, ProductImportFormat format) {
+        this.objectMapper = objectMapper;
+        this.format = format;
+    }
+
+    /**
+     * Reads all lines of the input. Blank lines are skipped.
+     *
+     * @param input  The import file, UTF-8 encoded.
+     * @param rows   Receives every valid product unit.
+     * @param errors Receives every invalid line.
+     */
+    void read(InputStream input, RowHandler rows, ErrorHandler errors) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        int nameColumn = NO_COLUMN;
+        int priceColumn = NO_COLUMN;
+        boolean first = true;
+        long lineNumber = 0;
+        while (readLine(reader, line)) {
+            lineNumber++;
+            if (line.length() > MAX_LINE_LENGTH) {
+                errors.error(lineNumber, "line is longer than " + MAX_LINE_LENGTH + " characters");
+                continue;
+            }
+            if (line.toString().isBlank()) {
+                continue;
+            }
+            if (format == ProductImportFormat.NDJSON) {
+                readJson(lineNumber, line.toString(), rows, errors);
+                continue;
+            }
+            List<String> fields = splitCsv(line);
+            if (first && isHeader(fields)) {
+                nameColumn = column(fields, "productname", "product_name", "name");
+                priceColumn = column(fields, "productprice", "product_price", "price");
+                first = false;
+                continue;
+            }
+            first = false;
+            int name = nameColumn == NO_COLUMN ? 0 : nameColumn;
+            int price = nameColumn == NO_COLUMN ? 1 : priceColumn;
+            validate(lineNumber,
+                    name < fields.size() ? fields.get(name).trim() : null,
+                    price != NO_COLUMN && price < fields.size() ? fields.get(price) : null,
+                    rows, errors);
+        }
+    }
+
+    private void readJson(long lineNumber, String line, RowHandler rows, ErrorHandler errors) throws IOException {
+        ProductDTO product;
+        try {
+            product = objectMapper.readValue(line, ProductDTO.class);
+        } catch (JsonProcessingException e) {
+            errors.error(lineNumber, "invalid JSON: " + e.getOriginalMessage());
+            return;
+        }
+        if (product.getProductPrice() != null && product.getProductPrice() < 0) {
+            errors.error(lineNumber, "productPrice shall not be negative");
+            return;
+        }
+        if (isInvalidName(lineNumber, product.getProductName(), errors)) {
+            return;
+        }
+        rows.row(lineNumber, product.getProductName(), product.getProductPrice());
+    }
+
+    private static void validate(long lineNumber, String productName, String productPrice,
+                                 RowHandler rows, ErrorHandler errors) throws IOException {
+        if (isInvalidName(lineNumber, productName, errors)) {
+            return;
+        }
+        Integer price = null;
+        if (productPrice != null && !productPrice.isBlank()) {
+            try {
+                price = Integer.valueOf(productPrice.trim());
+            } catch (NumberFormatException e) {
+                errors.error(lineNumber, "productPrice is not an integer: " + productPrice);
+                return;
+            }
+            if (price < 0) {
+                errors.error(lineNumber, "productPrice shall not be negative");
+                return;
+            }
+        }
+        rows.row(lineNumber, productName, price);
+    }
+
+    private static boolean isInvalidName(long lineNumber, String productName, ErrorHandler errors) {
+        if (productName == null || productName.isBlank()) {
+            errors.error(lineNumber, "productName is missing");
+            return true;
+        }
+        if (productName.indexOf('\0') >= 0) {
+            errors.error(lineNumber, "productName contains a NUL character");
+            return true;
+        }
+        if (productName.length() > MAX_PRODUCT_NAME_LENGTH) {
+            errors.error(lineNumber, "productName is longer than " + MAX_PRODUCT_NAME_LENGTH + " characters");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next line into the given builder, without its line terminator. Characters past
+     * {@link #MAX_LINE_LENGTH} are dropped, leaving a line one character longer than allowed.
+     *
+     * @return false at the end of the input.
+     */
+    private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1 && c != '\n') {
+            if (c != '\r' && line.length() <= MAX_LINE_LENGTH) {
+                line.append((char) c);
+            }
+            c = reader.read();
+        }
+        return true;
+    }
+
+    /**
+     * Splits a CSV line into its fields. Fields may be quoted with double quotes, and a quote
+     * inside a quoted field is written twice.
+     */
+    static List<String> splitCsv(CharSequence line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return column(fields, "productname", "product_name", "name") != NO_COLUMN;
+    }
+
+    private static int column(List<String> fields, String... names) {
+        for (int index = 0; index < fields.size(); index++) {
+            String field = fields.get(index).trim().toLowerCase(Locale.ROOT);
+            for (String name : names) {
+                if (field.equals(name)) {
+                    return index;
+                }
+            }
+        }
+        return NO_COLUMN;
+    }
+
+    @FunctionalInterface
+    interface RowHandler {
+        void row(long line, String productName, Integer productPrice) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface ErrorHandler {
+        void error(long line, String message);
+    }
+}
@@ -0,0 +1,54 @@
+package akros.vendingmachine.bulkimport;
+
+import akros.vendingmachine.config.ImportProperties;
+import akros.vendingmachine.dto.ProductImportResultDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Command line import of a product file, started with {@code --app.import.file=units.csv}
+ * and optionally {@code --app.import.machine-id=site-7}; add
+ * {@code --spring.main.web-application-type=none} to skip the web server. The application
+ * imports the file, logs the result and exits with status 0 if any unit was imported, 1 otherwise.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@Profile("!edge")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.import", name = "file")
+public class ProductImportRunner implements ApplicationRunner {
+
+    private final ImportProperties importProperties;
+    private final ProductImporter productImporter;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        var file = importProperties.getFile();
+        ProductImportResultDTO result;
+        try (InputStream input = Files.newInputStream(file)) {
+            result = productImporter.importProducts(importProperties.getMachineId(), input,
+                    ProductImportFormat.of(file.getFileName().toString(), null));
+        }
+        log.info("Import of {}: {} rows, {} imported, {} invalid, {} over the quantity cap", file,
+                result.getRows(), result.getImported(), result.getRejectedInvalid(), result.getRejectedOverCap());
+        result.getErrors().forEach(error -> log.warn("Import of {}: {}", file, error));
+        int exitCode = result.getImported() > 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
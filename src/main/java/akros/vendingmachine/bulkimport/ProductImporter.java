@@ -0,0 +1,237 @@
+package akros.vendingmachine.bulkimport;
+
+import akros.vendingmachine.dto.ProductImportResultDTO;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.service.InventoryStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_ID_ALLOCATION_SIZE;
+
+/**
+ * Imports the product units of a CSV or NDJSON file into one machine in a single transaction,
+ * without a round trip per unit.
+ * <p>
+ * The file is parsed line by line and its valid units are streamed with Postgres {@code COPY}
+ * into a temporary staging table. The units per product name are then counted in the database
+ * and granted by the {@link InventoryStore} at once, so the quantity cap applies to the whole
+ * file together with the units already in stock. Finally, the granted units are inserted into
+ * {@code product} with one {@code INSERT ... SELECT}, in file order, taking their IDs from
+ * {@code product_seq} in the same pooled blocks as Hibernate. Units over the cap are reported,
+ * not imported.
+ * <p>
+ * Caches, search indexes and vend statistics learn about the import from one
+ * {@link ChangeType#IMPORTED} event per product name, which carries the granted units.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Service
+@Profile("!edge")
+@RequiredArgsConstructor
+public class ProductImporter {
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String CREATE_STAGING_TABLE = """
+            CREATE TEMPORARY TABLE product_import (
+                line          bigint       NOT NULL,
+                product_name  varchar(255) NOT NULL,
+                product_price integer
+            ) ON COMMIT DROP
+            """;
+    private static final String COPY_STAGING_TABLE = "COPY product_import (line, product_name, product_price) FROM STDIN";
+    private static final String COUNT_UNITS = """
+            SELECT product_name, count(*) AS units FROM product_import GROUP BY product_name ORDER BY product_name
+            """;
+    /**
+     * Numbers the units of every product name in file order and keeps the granted ones, numbers
+     * the IDs of enough pooled blocks of {@code product_seq}, and joins both on their number.
+     */
+    private static final String INSERT_PRODUCTS = """
+            WITH granted AS (
+                SELECT * FROM unnest(cast(? AS varchar[]), cast(? AS varchar[]), cast(? AS integer[]))
+                    AS g(product_name, inventar_id, units)
+            ), accepted AS (
+                SELECT s.product_name, s.product_price, g.inventar_id, row_number() OVER (ORDER BY s.line) AS n
+                FROM (SELECT line, product_name, product_price,
+                             row_number() OVER (PARTITION BY product_name ORDER BY line) AS unit
+                      FROM product_import) s
+                JOIN granted g ON g.product_name = s.product_name AND s.unit <= g.units
+            ), ids AS (
+                SELECT product_id, row_number() OVER (ORDER BY product_id) AS n
+                FROM (SELECT DISTINCT greatest(1, block.hi - ? + offsets.o) AS product_id
+                      FROM (SELECT nextval('product_seq') AS hi FROM generate_series(1, ?)) block
+                      CROSS JOIN generate_series(1, ?) AS offsets(o)) candidates
+            )
+            INSERT INTO product (machine_id, product_id, product_name, product_price, inventar_id)
+            SELECT ?, ids.product_id, accepted.product_name, accepted.product_price, accepted.inventar_id
+            FROM accepted JOIN ids ON ids.n = accepted.n
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryStore inventoryStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Imports the product units of a file into a machine.
+     *
+     * @param machineId The ID of the machine.
+     * @param input     The file, UTF-8 encoded, read to its end but not closed.
+     * @param format    The format of the file.
+     * @return The number of read, imported and rejected units, and the first errors.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    @Transactional
+    public ProductImportResultDTO importProducts(String machineId, InputStream input, ProductImportFormat format) {
+        long start = System.nanoTime();
+        List<String> errors = new ArrayList<>();
+        long[] invalid = new long[1];
+        ProductImportReader reader = new ProductImportReader(objectMapper, format);
+
+        jdbcTemplate.execute(CREATE_STAGING_TABLE);
+        long staged = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_TABLE);
+            try (CopyWriter writer = new CopyWriter(copyIn)) {
+                reader.read(input, writer::write, (line, message) -> {
+                    invalid[0]++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("line " + line + ": " + message);
+                    }
+                });
+                return writer.finish();
+            } catch (IOException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        SortedMap<String, Integer> units = new TreeMap<>();
+        jdbcTemplate.query(COUNT_UNITS, resultSet -> {
+            units.put(resultSet.getString("product_name"), resultSet.getInt("units"));
+        });
+        Map<String, InventoryStore.Grant> grants = units.isEmpty()
+                ? Map.of()
+                : inventoryStore.increment(machineId, units, MAX_PRODUCT_QUANTITY);
+
+        long granted = grants.values().stream().mapToLong(InventoryStore.Grant::granted).sum();
+        int imported = granted == 0 ? 0 : insertProducts(machineId, grants, granted);
+        grants.forEach((productName, grant) -> {
+            if (grant.granted() > 0) {
+                eventPublisher.publishEvent(ProductChangedEvent.imported(machineId, productName, grant.quantity(), grant.granted()));
+            }
+        });
+
+        log.info("Imported {} of {} product units into machine {} in {} ms", imported, staged + invalid[0], machineId,
+                (System.nanoTime() - start) / 1_000_000);
+        return ProductImportResultDTO.builder()
+                .rows(staged + invalid[0])
+                .imported((long) imported)
+                .rejectedInvalid(invalid[0])
+                .rejectedOverCap(staged - imported)
+                .errors(errors)
+                .build();
+    }
+
+    private int insertProducts(String machineId, Map<String, InventoryStore.Grant> grants, long granted) {
+        String[] productNames = grants.keySet().toArray(String[]::new);
+        String[] inventarIds = grants.values().stream().map(InventoryStore.Grant::inventarId).toArray(String[]::new);
+        Integer[] grantedUnits = grants.values().stream().map(InventoryStore.Grant::granted).toArray(Integer[]::new);
+        // one block more than needed, the first block of the sequence only holds ID 1
+        long blocks = (granted + PRODUCT_ID_ALLOCATION_SIZE - 1) / PRODUCT_ID_ALLOCATION_SIZE + 1;
+        return jdbcTemplate.update(INSERT_PRODUCTS, productNames, inventarIds, grantedUnits,
+                PRODUCT_ID_ALLOCATION_SIZE, blocks, PRODUCT_ID_ALLOCATION_SIZE, machineId);
+    }
+
+    /**
+     * Encodes units in the text format of {@code COPY} and sends them in chunks of about
+     * {@link #BUFFER_SIZE} characters. Closing a writer that was not finished cancels the copy.
+     */
+    private static final class CopyWriter implements AutoCloseable {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 512);
+        private boolean finished;
+
+        private CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        void write(long line, String productName, Integer productPrice) throws IOException {
+            buffer.append(line).append('\t');
+            escape(productName);
+            buffer.append('\t').append(productPrice == null ? "\\N" : productPrice.toString()).append('\n');
+            if (buffer.length() >= BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        long finish() throws IOException, SQLException {
+            flush();
+            finished = true;
+            return copyIn.endCopy();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!finished && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        private void escape(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            } catch (SQLException e) {
+                throw new IOException("Cannot copy the import rows", e);
+            }
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.config.CacheProperties;
+import akros.vendingmachine.event.ProductChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+
+/**
+ * Listens for cache invalidation notifications of other application nodes on a dedicated
+ * connection and republishes them as remote {@link ProductChangedEvent}s.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationListener implements SmartLifecycle {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final CacheProperties cacheProperties;
+    private final CacheNode cacheNode;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = Thread.ofPlatform().daemon().name("cache-invalidation-listener").start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        var invalidation = cacheProperties.getInvalidation();
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + invalidation.getChannel());
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) invalidation.getPollTimeout().toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Cache invalidation listener failed, reconnecting", e);
+                    sleepBeforeReconnect();
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            var message = objectMapper.readValue(payload, CacheInvalidationMessage.class);
+            if (!cacheNode.getId().equals(message.getNodeId())) {
+                message.getChanges().forEach(change -> eventPublisher.publishEvent(
+                        new ProductChangedEvent(change.getType(), machineId(change), change.getProductId(), change.getProductName(),
+                                change.getQuantity(), change.getUnits(), true, true)));
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring malformed cache invalidation message: {}", payload, e);
+        }
+    }
+
+    /**
+     * Nodes released before machines were introduced send changes without a machine ID,
+     * which all belong to the default machine.
+     */
+    private static String machineId(CacheInvalidationMessage.Change change) {
+        return change.getMachineId() == null ? DEFAULT_MACHINE_ID : change.getMachineId();
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
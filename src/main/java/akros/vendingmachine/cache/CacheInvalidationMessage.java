@@ -0,0 +1,28 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.event.ChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidationMessage {
+    private String nodeId;
+    private List<Change> changes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Change {
+        private ChangeType type;
+        private String machineId;
+        private Integer productId;
+        private String productName;
+        private Integer quantity;
+        private Integer units;
+    }
+}
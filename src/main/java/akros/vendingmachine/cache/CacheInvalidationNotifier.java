@@ -0,0 +1,114 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.config.CacheProperties;
+import akros.vendingmachine.event.ProductChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards local product changes to the other application nodes through Postgres {@code NOTIFY}.
+ * Changes are collected per transaction and notified right before it commits, so Postgres
+ * delivers them exactly when, and only if, the transaction commits. Large transactions are
+ * split into several notifications to stay below the Postgres payload limit.
+ * The reactive service sends the same notifications on its own R2DBC connection, see {@link #payloads}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationNotifier {
+
+    private static final int MAX_CHANGES_PER_NOTIFICATION = 25;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CacheProperties cacheProperties;
+    private final CacheNode cacheNode;
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isNotified()) {
+            return;
+        }
+        var change = toChange(event);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingChanges().add(change);
+        } else {
+            notify(List.of(change));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CacheInvalidationMessage.Change> pendingChanges() {
+        var changes = (List<CacheInvalidationMessage.Change>) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            List<CacheInvalidationMessage.Change> newChanges = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, newChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    CacheInvalidationNotifier.this.notify(newChanges);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationNotifier.this);
+                }
+            });
+            changes = newChanges;
+        }
+        return changes;
+    }
+
+    /**
+     * Builds the notification payloads of local changes, for a writer that sends them with
+     * {@code pg_notify} on the channel of {@link #channel()} inside its own transaction.
+     *
+     * @param events The changes of the transaction.
+     * @return The payloads, each below the Postgres payload limit.
+     */
+    public List<String> payloads(List<ProductChangedEvent> events) {
+        return chunks(events.stream().map(CacheInvalidationNotifier::toChange).toList());
+    }
+
+    public String channel() {
+        return cacheProperties.getInvalidation().getChannel();
+    }
+
+    private void notify(List<CacheInvalidationMessage.Change> changes) {
+        for (String payload : chunks(changes)) {
+            jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", String.class, channel(), payload);
+        }
+    }
+
+    private List<String> chunks(List<CacheInvalidationMessage.Change> changes) {
+        List<String> payloads = new ArrayList<>();
+        for (int from = 0; from < changes.size(); from += MAX_CHANGES_PER_NOTIFICATION) {
+            payloads.add(toPayload(changes.subList(from, Math.min(from + MAX_CHANGES_PER_NOTIFICATION, changes.size()))));
+        }
+        return payloads;
+    }
+
+    private static CacheInvalidationMessage.Change toChange(ProductChangedEvent event) {
+        return new CacheInvalidationMessage.Change(event.getType(), event.getMachineId(), event.getProductId(), event.getProductName(),
+                event.getQuantity(), event.getUnits());
+    }
+
+    private String toPayload(List<CacheInvalidationMessage.Change> changes) {
+        try {
+            return objectMapper.writeValueAsString(new CacheInvalidationMessage(cacheNode.getId(), changes));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package akros.vendingmachine.cache;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Identifies this application node in cache invalidation messages, so a node
+ * ignores the notifications it sent itself.
+ */
+@Getter
+@Component
+public class CacheNode {
+    private final String id = UUID.randomUUID().toString();
+}
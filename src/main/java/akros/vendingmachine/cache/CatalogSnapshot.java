@@ -0,0 +1,243 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.config.CacheProperties;
+import akros.vendingmachine.datasource.ReplicaRouting;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.mapper.ProductMapper;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized product list per machine, rebuilt only after the catalog of the machine has changed.
+ * Every committed product change, local or remote, bumps the catalog version of its machine; the next
+ * read serializes the list once and every read until the following change is served
+ * from the same bytes, optionally gzip'd, or from the same trimmed CBOR bytes. Changes of
+ * one machine never invalidate the snapshot of another.
+ * <p>
+ * ETags combine the node ID, the machine ID and the catalog version, so a tag issued by
+ * another node or before a restart never matches.
+ * <p>
+ * A machine is tracked once it has products or a change; reading the catalog of an unknown
+ * machine builds its empty snapshot without keeping it, at version 0.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+public class CatalogSnapshot {
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final CacheProperties cacheProperties;
+    private final String nodeId;
+    private final Map<String, MachineCatalog> catalogs = new ConcurrentHashMap<>();
+
+    public CatalogSnapshot(ProductRepository productRepository, ProductMapper productMapper, ObjectMapper objectMapper,
+                           MappingJackson2CborHttpMessageConverter cborConverter,
+                           CacheProperties cacheProperties, CacheNode cacheNode) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborConverter.getObjectMapper();
+        this.cacheProperties = cacheProperties;
+        this.nodeId = cacheNode.getId();
+    }
+
+    /**
+     * Returns the current catalog version of a machine, bumped after every committed product change.
+     *
+     * @param machineId The ID of the machine.
+     * @return The catalog version.
+     */
+    public long version(String machineId) {
+        MachineCatalog catalog = catalogs.get(machineId);
+        return catalog == null ? 0 : catalog.version.get();
+    }
+
+    /**
+     * Returns the ETag of a single product at the current catalog version of its machine.
+     *
+     * @param machineId The ID of the machine.
+     * @param productId The ID of the product.
+     * @return A strong, quoted ETag.
+     */
+    public String productETag(String machineId, Integer productId) {
+        return "\"" + nodeId + "-" + machineId + "-" + version(machineId) + "-" + productId + "\"";
+    }
+
+    /**
+     * Returns the ETag of the trimmed CBOR representation of a single product, which differs
+     * from the JSON one as required for strong validators.
+     *
+     * @param machineId The ID of the machine.
+     * @param productId The ID of the product.
+     * @return A strong, quoted ETag.
+     */
+    public String productCborETag(String machineId, Integer productId) {
+        String eTag = productETag(machineId, productId);
+        return eTag.substring(0, eTag.length() - 1) + "-cbor\"";
+    }
+
+    /**
+     * Returns the snapshot of the current catalog version of a machine, building it if needed.
+     * The version is read before the products, so a snapshot never carries a version
+     * newer than its content.
+     *
+     * @param machineId The ID of the machine.
+     * @return The current snapshot.
+     */
+    public Snapshot current(String machineId) {
+        MachineCatalog catalog = catalogs.get(machineId);
+        if (catalog == null) {
+            return untracked(machineId);
+        }
+        Snapshot current = catalog.snapshot;
+        if (isFresh(catalog, current)) {
+            return current;
+        }
+        synchronized (catalog) {
+            current = catalog.snapshot;
+            if (!isFresh(catalog, current)) {
+                long catalogVersion = catalog.version.get();
+                current = build(machineId, catalogVersion, read(machineId));
+                catalog.snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Returns the IDs of the machines whose catalog version is tracked.
+     *
+     * @return An immutable copy of the tracked machine IDs.
+     */
+    public Set<String> trackedMachineIds() {
+        return Set.copyOf(catalogs.keySet());
+    }
+
+    /**
+     * Bumps the catalog version of the changed machine after the product cache has evicted the changed entries.
+     *
+     * @param event The committed product change.
+     */
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        catalogs.computeIfAbsent(event.getMachineId(), id -> new MachineCatalog()).version.incrementAndGet();
+    }
+
+    /**
+     * Builds the snapshot of a machine that is not tracked yet at version 0, and only starts
+     * tracking it if it has products. A change committed in the meantime is tracked already
+     * and keeps its own, newer snapshot.
+     */
+    private Snapshot untracked(String machineId) {
+        List<ProductDTO> products = read(machineId);
+        Snapshot snapshot = build(machineId, 0, products);
+        if (!products.isEmpty()) {
+            MachineCatalog catalog = catalogs.computeIfAbsent(machineId, id -> new MachineCatalog());
+            synchronized (catalog) {
+                if (catalog.snapshot == null && catalog.version.get() == 0) {
+                    catalog.snapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean isFresh(MachineCatalog catalog, Snapshot current) {
+        return current != null
+                && current.version() == catalog.version.get()
+                && current.builtAt().plus(cacheProperties.getTtl()).isAfter(Instant.now());
+    }
+
+    private List<ProductDTO> read(String machineId) {
+        return ReplicaRouting.onPrimary(() -> productRepository.findAllRows(machineId)).stream()
+                .map(productMapper::mapToProductDTO)
+                .toList();
+    }
+
+    private Snapshot build(String machineId, long catalogVersion, List<ProductDTO> products) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(products);
+            byte[] gzip = cacheProperties.getCatalog().isGzip() ? gzip(json) : null;
+            byte[] cbor = cborMapper.writeValueAsBytes(products);
+            log.debug("Built catalog snapshot of machine {} version {} with {} products ({} bytes)",
+                    machineId, catalogVersion, products.size(), json.length);
+            return new Snapshot(catalogVersion, "\"" + nodeId + "-" + machineId + "-" + catalogVersion + "\"", json, gzip, cbor, Instant.now());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Catalog version and latest snapshot of one machine.
+     */
+    private static final class MachineCatalog {
+        private final AtomicLong version = new AtomicLong();
+        private volatile Snapshot snapshot;
+    }
+
+    /**
+     * Serialized product list of one catalog version.
+     *
+     * @param version The catalog version the products were read at.
+     * @param eTag    The strong, quoted ETag of the identity encoding.
+     * @param json    The JSON array of products.
+     * @param gzip    The gzip'd JSON array, or null if compression is disabled.
+     * @param builtAt The time the snapshot was built.
+     */
+    public record Snapshot(long version, String eTag, byte[] json, byte[] gzip, byte[] cbor, Instant builtAt) {
+
+        /**
+         * Returns the ETag of the gzip encoding, which differs from the identity one
+         * as required for strong validators.
+         *
+         * @return The strong, quoted ETag of the gzip encoding.
+         */
+        public String gzipETag() {
+            return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+        }
+
+        /**
+         * Returns the ETag of the CBOR representation.
+         *
+         * @return The strong, quoted ETag of the CBOR representation.
+         */
+        public String cborETag() {
+            return eTag.substring(0, eTag.length() - 1) + "-cbor\"";
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.config.CacheProperties;
+import akros.vendingmachine.datasource.ReplicaRouting;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.dto.mapper.ProductMapper;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.service.InventoryStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded, TTL-aware read-through cache in front of {@link ProductRepository#findRowById},
+ * {@link ProductRepository#findRowsByIds} and {@link InventoryStore#find}.
+ * Entries are evicted after a product change has been committed, whether the change
+ * happened on this node or was received from another node.
+ * <p>
+ * Products are keyed by their ID, which is unique across machines, and only returned
+ * for the machine they belong to; inventories are keyed by machine and product name.
+ * Cached products hold no quantity: every read joins them with the cached inventory, so a
+ * change of one unit is visible through all products sharing the inventory once its entry is evicted.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+public class ProductCache implements MeterBinder {
+
+    private final ProductRepository productRepository;
+    private final InventoryStore inventoryStore;
+    private final ProductMapper productMapper;
+    private final CacheProperties cacheProperties;
+    private final Cache<Integer, ProductDTO> products;
+    private final Cache<InventarKey, Inventar> inventars;
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProductCache(ProductRepository productRepository, InventoryStore inventoryStore, ProductMapper productMapper,
+                        CacheProperties cacheProperties) {
+        this.productRepository = productRepository;
+        this.inventoryStore = inventoryStore;
+        this.productMapper = productMapper;
+        this.cacheProperties = cacheProperties;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getProductMaxSize())
+                .expireAfterWrite(cacheProperties.getTtl())
+                .recordStats()
+                .build();
+        this.inventars = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getInventarMaxSize())
+                .expireAfterWrite(cacheProperties.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Finds a product of a machine by its ID, loading it from the repository on a cache miss.
+     * Misses are read from the primary database, never from a replica that may not have seen
+     * the change the entry was evicted for. The inventory of the returned DTO is shared between callers and must not be modified.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to find.
+     * @return ProductDTO if found in the machine, or null if not found.
+     */
+    public ProductDTO findProduct(String machineId, Integer id) {
+        long seen = generation.get();
+        ProductDTO product = products.get(id, key -> ReplicaRouting.onPrimary(() -> productRepository.findRowById(machineId, key))
+                .map(row -> withoutQuantity(row, seen))
+                .orElse(null));
+        return product != null && machineId.equals(product.getMachineId()) ? withInventar(product) : null;
+    }
+
+    /**
+     * Finds several products of a machine by their ID. Cached entries are reused and all misses
+     * are loaded from the primary database with a single {@link ProductRepository#findRowsByIds} query.
+     * The inventories of the returned DTOs are shared between callers and must not be modified.
+     *
+     * @param machineId The ID of the machine.
+     * @param ids       The IDs of the products to find.
+     * @return Map of product ID to ProductDTO; IDs not found in the machine are missing.
+     */
+    public Map<Integer, ProductDTO> findProducts(String machineId, Set<Integer> ids) {
+        long seen = generation.get();
+        Map<Integer, ProductDTO> found = new HashMap<>();
+        products.getAll(ids, missing -> {
+            Map<Integer, ProductDTO> loaded = new HashMap<>();
+            ReplicaRouting.onPrimary(() -> productRepository.findRowsByIds(machineId, List.copyOf(missing)))
+                    .forEach(row -> loaded.put(row.getProductId(), withoutQuantity(row, seen)));
+            return loaded;
+        }).forEach((id, product) -> {
+            if (machineId.equals(product.getMachineId())) {
+                found.put(id, withInventar(product));
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Finds the inventory of a product name, loading it from the repository on a cache miss.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name of the inventory.
+     * @return Inventar if found, or null if not found.
+     */
+    public Inventar findInventar(String machineId, String productName) {
+        return inventars.get(new InventarKey(machineId, productName), key -> ReplicaRouting.onPrimary(() -> inventoryStore.find(key.machineId(), key.productName())));
+    }
+
+    /**
+     * Returns the cached inventory of a product name without loading it.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name of the inventory.
+     * @return Inventar if cached, or null otherwise.
+     */
+    public Inventar getCachedInventar(String machineId, String productName) {
+        return inventars.getIfPresent(new InventarKey(machineId, productName));
+    }
+
+    /**
+     * Evicts the changed product and inventory. Runs before the catalog version is bumped,
+     * so a detail read tagged with the new version never comes from an evicted entry.
+     *
+     * @param event The committed product change.
+     */
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidations.increment();
+        generation.incrementAndGet();
+        if (event.getProductId() != null) {
+            products.invalidate(event.getProductId());
+        }
+        if (event.getProductName() != null) {
+            inventars.invalidate(new InventarKey(event.getMachineId(), event.getProductName()));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!cacheProperties.isPreload()) {
+            return;
+        }
+        long seen = generation.get();
+        productRepository.findRows(Limit.of((int) cacheProperties.getProductMaxSize()))
+                .forEach(product -> products.put(product.getProductId(), withoutQuantity(product, seen)));
+        inventoryStore.findAll().stream()
+                .limit(cacheProperties.getInventarMaxSize())
+                .forEach(inventar -> inventars.put(new InventarKey(inventar.getMachineId(), inventar.getProductName()), inventar));
+        log.info("Preloaded {} products and {} inventories", products.estimatedSize(), inventars.estimatedSize());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "products");
+        CaffeineCacheMetrics.monitor(registry, inventars, "inventars");
+        FunctionCounter.builder("cache.invalidations", invalidations, LongAdder::sum)
+                .description("Entries invalidated after product changes")
+                .register(registry);
+    }
+
+    /**
+     * Returns hit, miss and eviction counters of both caches.
+     *
+     * @return Map of cache name to its counters.
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("products", toMap(products.stats(), products.estimatedSize()));
+        stats.put("inventars", toMap(inventars.stats(), inventars.estimatedSize()));
+        stats.put("invalidations", Map.of("count", invalidations.sum()));
+        return stats;
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("loadCount", stats.loadCount());
+        return map;
+    }
+
+    /**
+     * Maps a loaded row to the cached form of its product, which keeps the ID and product name of
+     * its inventory but not the quantity. The quantity read with the row seeds the inventory cache,
+     * unless a change was committed since {@code seen}: its eviction may already have run, and the
+     * row may predate it.
+     */
+    private ProductDTO withoutQuantity(ProductRow row, long seen) {
+        ProductDTO product = productMapper.mapToProductDTO(row);
+        Inventar inventar = product.getInventar();
+        if (inventar == null) {
+            return product;
+        }
+        inventars.asMap().computeIfAbsent(new InventarKey(inventar.getMachineId(), inventar.getProductName()),
+                key -> generation.get() == seen ? inventar : null);
+        product.setInventar(new Inventar(inventar.getId(), inventar.getMachineId(), inventar.getProductName(), null));
+        return product;
+    }
+
+    /**
+     * Joins a cached product with the current inventory of its product name.
+     */
+    private ProductDTO withInventar(ProductDTO product) {
+        Inventar inventar = product.getInventar();
+        return inventar == null ? product : new ProductDTO(product.getProductId(), product.getMachineId(), product.getProductName(),
+                product.getProductPrice(), findInventar(inventar.getMachineId(), inventar.getProductName()));
+    }
+
+    private record InventarKey(String machineId, String productName) {
+    }
+}
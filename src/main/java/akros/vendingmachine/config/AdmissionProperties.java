@@ -0,0 +1,38 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = false;
+    private Duration queueTimeout = Duration.ofMillis(50);
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private Limit read = new Limit(200, 20, 1_000, 200, Duration.ofMillis(200));
+    private Limit write = new Limit(100, 10, 500, 100, Duration.ofMillis(500));
+
+    @Data
+    public static class Limit {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        private int queueCapacity;
+        private Duration latencyTarget;
+        private double backoffRatio = 0.9;
+
+        public Limit() {
+        }
+
+        public Limit(int initialLimit, int minLimit, int maxLimit, int queueCapacity, Duration latencyTarget) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.queueCapacity = queueCapacity;
+            this.latencyTarget = latencyTarget;
+        }
+    }
+}
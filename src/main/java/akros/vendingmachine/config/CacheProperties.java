@@ -0,0 +1,30 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    private long productMaxSize = 10_000;
+    private long inventarMaxSize = 1_000;
+    private Duration ttl = Duration.ofMinutes(5);
+    private boolean preload = false;
+    private Invalidation invalidation = new Invalidation();
+    private Catalog catalog = new Catalog();
+
+    @Data
+    public static class Invalidation {
+        private boolean enabled = true;
+        private String channel = "product_cache";
+        private Duration pollTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Catalog {
+        private boolean gzip = true;
+    }
+}
@@ -0,0 +1,57 @@
+package akros.vendingmachine.config;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * CBOR representation of the product API for machine clients on metered links, selected with
+ * {@code Accept: application/cbor} (and {@code Content-Type: application/cbor} for request bodies).
+ * JSON stays the default.
+ * <p>
+ * Besides being binary, the CBOR representation trims what a machine does not need: the envelope
+ * keeps only {@code statusCode}, {@code error} and {@code data}, products leave out the machine ID
+ * of the request path, inventories keep only their quantity, and null fields are omitted.
+ */
+@Configuration(proxyBeanMethods = false)
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(trimmed(builder.factory(new CBORFactory()).build()));
+    }
+
+    /**
+     * Configures an object mapper for the trimmed representation.
+     *
+     * @param objectMapper The object mapper, usually for CBOR.
+     * @return The same object mapper.
+     */
+    public static <T extends ObjectMapper> T trimmed(T objectMapper) {
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.addMixIn(ProductResponseDto.class, TrimmedResponse.class);
+        objectMapper.addMixIn(ProductDTO.class, TrimmedProduct.class);
+        objectMapper.addMixIn(Inventar.class, TrimmedInventar.class);
+        return objectMapper;
+    }
+
+    @JsonIgnoreProperties(value = {"timestamp", "status", "path", "message"}, ignoreUnknown = true)
+    private abstract static class TrimmedResponse {
+    }
+
+    @JsonIgnoreProperties(value = "machineId", ignoreUnknown = true)
+    private abstract static class TrimmedProduct {
+    }
+
+    @JsonIgnoreProperties(value = {"id", "machineId", "productName"}, ignoreUnknown = true)
+    private abstract static class TrimmedInventar {
+    }
+}
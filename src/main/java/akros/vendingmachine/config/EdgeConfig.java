@@ -0,0 +1,23 @@
+package akros.vendingmachine.config;
+
+import akros.vendingmachine.edge.EdgeTransactionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Infrastructure of the {@code edge} profile, which serves the product API from the
+ * {@link akros.vendingmachine.edge.EdgeCatalog} instead of Postgres. The data source, JPA and
+ * Flyway are left out by {@code application-edge.properties}; the {@code @Transactional} service
+ * methods run with the {@link EdgeTransactionManager}.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("edge")
+public class EdgeConfig {
+
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return new EdgeTransactionManager();
+    }
+}
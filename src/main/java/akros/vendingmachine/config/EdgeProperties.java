@@ -0,0 +1,18 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.edge")
+public class EdgeProperties {
+
+    private Path dataDir = Path.of("data");
+    private DataSize journalSize = DataSize.ofMegabytes(4);
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+    private boolean forceWrites = true;
+}
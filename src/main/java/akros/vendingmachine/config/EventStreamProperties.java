@@ -0,0 +1,16 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.events")
+public class EventStreamProperties {
+
+    private int bufferSize = 1_024;
+    private int subscriberQueueCapacity = 256;
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+    private Duration timeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,16 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+
+@Data
+@ConfigurationProperties(prefix = "app.import")
+public class ImportProperties {
+
+    private Path file;
+    private String machineId = DEFAULT_MACHINE_ID;
+}
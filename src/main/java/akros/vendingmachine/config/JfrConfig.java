@@ -0,0 +1,20 @@
+package akros.vendingmachine.config;
+
+import akros.vendingmachine.jfr.RecordingJackson2HttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Replaces the JSON converter of Spring Boot with one recording the serialization phase of the
+ * product service flight recorder events. It uses the same object mapper.
+ */
+@Configuration(proxyBeanMethods = false)
+public class JfrConfig {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new RecordingJackson2HttpMessageConverter(objectMapper);
+    }
+}
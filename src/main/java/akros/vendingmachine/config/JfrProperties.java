@@ -0,0 +1,18 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.jfr")
+public class JfrProperties {
+
+    private boolean continuous = false;
+    private String settings = "default";
+    private Duration maxAge = Duration.ofMinutes(15);
+    private DataSize maxSize = DataSize.ofMegabytes(100);
+    private Duration threshold = Duration.ZERO;
+}
@@ -0,0 +1,66 @@
+package akros.vendingmachine.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcConnectionDetails;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * R2DBC infrastructure of the {@code reactive} profile.
+ * <p>
+ * The connection pool is deliberately not exposed as a {@code ConnectionFactory} bean: Spring Boot
+ * backs off the JDBC {@code DataSource} as soon as one exists, and the JPA repositories must keep
+ * working next to the reactive service. For the same reason the R2DBC transaction manager is only
+ * used through the {@link TransactionalOperator}, so it cannot replace the JPA transaction manager.
+ * <p>
+ * The reactive service updates {@code inventar.quantity} in place and reads it without the pending
+ * ledger deltas, so startup fails when it is combined with {@code app.inventory.mode=ledger}.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveConfig(Environment environment, ObjectProvider<R2dbcConnectionDetails> connectionDetails) {
+        if ("ledger".equals(environment.getProperty("app.inventory.mode"))) {
+            throw new IllegalStateException("The reactive profile does not support app.inventory.mode=ledger");
+        }
+        var details = connectionDetails.getIfAvailable();
+        var options = details != null ? details.getConnectionFactoryOptions() : ConnectionFactoryOptions
+                .parse(environment.getRequiredProperty("spring.r2dbc.url"))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, environment.getRequiredProperty("spring.r2dbc.username"))
+                .option(ConnectionFactoryOptions.PASSWORD, environment.getProperty("spring.r2dbc.password", ""))
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(environment.getProperty("spring.r2dbc.pool.initial-size", Integer.class, 10))
+                .maxSize(environment.getProperty("spring.r2dbc.pool.max-size", Integer.class, 20))
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    @PreDestroy
+    public void closeConnectionPool() {
+        connectionPool.dispose();
+    }
+}
@@ -0,0 +1,15 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.reservations")
+public class ReservationProperties {
+
+    private Duration ttl = Duration.ofSeconds(30);
+    private Duration tick = Duration.ofMillis(100);
+    private int wheelSize = 512;
+}
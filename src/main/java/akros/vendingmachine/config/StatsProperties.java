@@ -0,0 +1,14 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.stats")
+public class StatsProperties {
+
+    private int stripes = 64;
+    private Duration flushInterval = Duration.ofMinutes(1);
+}
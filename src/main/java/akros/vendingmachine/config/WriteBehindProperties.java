@@ -0,0 +1,17 @@
+package akros.vendingmachine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.write-behind")
+public class WriteBehindProperties {
+
+    private boolean enabled = false;
+    private int queueCapacity = 10_000;
+    private int maxBatchSize = 500;
+    private Duration offerTimeout = Duration.ofMillis(100);
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
@@ -1,45 +1,271 @@
 package akros.vendingmachine.controller;
 
+import akros.vendingmachine.cache.CatalogSnapshot;
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
 import akros.vendingmachine.dto.ProductResponseDto;
 import akros.vendingmachine.service.ProductService;
+import akros.vendingmachine.sse.ProductEventStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MACHINE_ID_PATTERN;
+
+/**
+ * Product API of one machine under {@code /api/v1/machines/{machineId}/products}.
+ * The unscoped {@code /api/v1/products} serves the default machine.
+ * Many products are fetched by ID with {@code GET ?ids=1,2,3}, or {@code POST /lookup} with the IDs as body for long lists.
+ * Responses are JSON unless the client accepts the trimmed CBOR representation of {@link akros.vendingmachine.config.CborConfig}.
+ * A vend is either one {@code DELETE /{id}}, or two-phase: {@code POST /{id}/reservations} holds the unit,
+ * then {@code POST /reservations/{reservationId}/confirm} vends it or {@code DELETE /reservations/{reservationId}} releases it.
+ */
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
-@RequestMapping("/api/v1/products")
+@RequestMapping({"/api/v1/products", "/api/v1/machines/{machineId:" + MACHINE_ID_PATTERN + "}/products"})
 public class ProductController {
 
+    private static final byte NEW_LINE = '\n';
+    private static final String GZIP = "gzip";
+    private static final String MACHINE_ID = "machineId";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ProductEventStream productEventStream;
 
     @PostMapping
-    public ResponseEntity<ProductResponseDto> addProduct(@RequestBody ProductDTO productDTO) {
-        var save = productService.createProduct(productDTO);
+    public ResponseEntity<ProductResponseDto> addProduct(@PathVariable(value = MACHINE_ID, required = false) String machineId, @RequestBody ProductDTO productDTO) {
+        var save = productService.createProduct(machine(machineId), productDTO);
         return ResponseEntity.ok(save);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<ProductResponseDto> addProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId, @RequestBody List<ProductDTO> productDTOs) {
+        return ResponseEntity.ok(productService.createProducts(machine(machineId), productDTOs));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ProductResponseDto> importProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                             @RequestPart("file") MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return ResponseEntity.ok(productService.importProducts(machine(machineId), input, file.getOriginalFilename(), file.getContentType()));
+        }
+    }
+
     @GetMapping
-    public ResponseEntity<List<ProductDTO>> getAllProducts() {
-        return ResponseEntity.ok(productService.getProducts());
+    public ResponseEntity<byte[]> getAllProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        var snapshot = catalogSnapshot.current(machine(machineId));
+        if (matches(ifNoneMatch, snapshot.eTag()) || matches(ifNoneMatch, snapshot.gzipETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.gzip() != null && acceptsGzip(acceptEncoding) ? snapshot.gzipETag() : snapshot.eTag())
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        var response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (snapshot.gzip() != null && acceptsGzip(acceptEncoding)) {
+            return response.eTag(snapshot.gzipETag())
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                    .body(snapshot.gzip());
+        }
+        return response.eTag(snapshot.eTag()).body(snapshot.json());
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_CBOR_VALUE)
+    public ResponseEntity<byte[]> getAllProductsCbor(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var snapshot = catalogSnapshot.current(machine(machineId));
+        if (matches(ifNoneMatch, snapshot.cborETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.cborETag())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .eTag(snapshot.cborETag())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(snapshot.cbor());
+    }
+
+    @GetMapping(params = "size")
+    public ResponseEntity<ProductPageDTO> getProductPage(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                         @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                         @RequestParam("size") Integer size) {
+        return ResponseEntity.ok(productService.getProducts(machine(machineId), cursor, size));
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<ProductResponseDto> getProductsById(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                              @RequestParam("ids") List<Integer> ids) {
+        return ResponseEntity.ok(productService.getProductsById(machine(machineId), ids));
+    }
+
+    @PostMapping("/lookup")
+    public ResponseEntity<ProductResponseDto> lookupProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                             @RequestBody List<Integer> ids) {
+        return ResponseEntity.ok(productService.getProductsById(machine(machineId), ids));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId) {
+        StreamingResponseBody body = outputStream -> {
+            productService.streamProducts(machine(machineId), productDTO -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(productDTO));
+                    outputStream.write(NEW_LINE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                   @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        return productEventStream.subscribe(machine(machineId), lastEventId);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<ProductResponseDto> searchProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                             @RequestParam(value = "prefix", required = false) String prefix,
+                                                             @RequestParam(value = "minPrice", required = false) Integer minPrice,
+                                                             @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
+                                                             @RequestParam(value = "sort", required = false) String sort,
+                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(productService.searchProducts(machine(machineId), prefix, minPrice, maxPrice, sort, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponseDto> getProductById(@PathVariable("id") Integer id) {
-        return  ResponseEntity.ok(productService.getProduct(id));
+    public ResponseEntity<ProductResponseDto> getProductById(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        var eTag = prefersCbor(accept)
+                ? catalogSnapshot.productCborETag(machine(machineId), id)
+                : catalogSnapshot.productETag(machine(machineId), id);
+        if (matches(ifNoneMatch, eTag, false)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        var product = productService.getProduct(machine(machineId), id);
+        if (product.getStatus() != HttpStatus.OK) {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(product);
+        }
+        if (matches(ifNoneMatch, eTag, true)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(product);
+    }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ProductResponseDto> getProductStats(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id) {
+        return ResponseEntity.ok(productService.getProductStats(machine(machineId), id));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<ProductResponseDto> deleteProductById(@PathVariable("id") Integer id) {
-        return  ResponseEntity.ok(productService.deleteProduct(id));
+    public ResponseEntity<ProductResponseDto> deleteProductById(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id) {
+        return  ResponseEntity.ok(productService.deleteProduct(machine(machineId), id));
+    }
+
+    @PostMapping("/{id}/reservations")
+    public ResponseEntity<ProductResponseDto> reserveProduct(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id) {
+        return ResponseEntity.ok(productService.reserveProduct(machine(machineId), id));
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public ResponseEntity<ProductResponseDto> confirmReservation(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                                 @PathVariable("reservationId") String reservationId) {
+        return ResponseEntity.ok(productService.confirmReservation(machine(machineId), reservationId));
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<ProductResponseDto> releaseReservation(@PathVariable(value = MACHINE_ID, required = false) String machineId,
+                                                                 @PathVariable("reservationId") String reservationId) {
+        return ResponseEntity.ok(productService.releaseReservation(machine(machineId), reservationId));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ProductResponseDto> updateProduct(@RequestBody ProductDTO productDTO, @PathVariable("id")Integer id) {
-        return  ResponseEntity.ok(productService.updateProduct(productDTO, id));
+    public ResponseEntity<ProductResponseDto> updateProduct(@PathVariable(value = MACHINE_ID, required = false) String machineId, @RequestBody ProductDTO productDTO,
+                                                            @PathVariable("id")Integer id) {
+        return  ResponseEntity.ok(productService.updateProduct(machine(machineId), productDTO, id));
     }
 
+    private static String machine(String machineId) {
+        return machineId == null ? DEFAULT_MACHINE_ID : machineId;
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        return matches(ifNoneMatch, eTag, true);
+    }
+
+    /**
+     * Checks an If-None-Match header against an ETag. The wildcard only matches an existing resource:
+     * the product list always exists, a single product only once it was found.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag, boolean exists) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ((exists && tag.equals("*")) || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether content negotiation picks the trimmed CBOR representation for an Accept header,
+     * that is whether CBOR is acceptable before any JSON type. JSON stays the default.
+     */
+    private static boolean prefersCbor(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        MimeTypeUtils.sortBySpecificity(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+    }
 }
@@ -0,0 +1,63 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.service.ReactiveProductService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MACHINE_ID_PATTERN;
+
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@RequestMapping({"/api/v1/products", "/api/v1/machines/{machineId:" + MACHINE_ID_PATTERN + "}/products"})
+public class ReactiveProductController {
+
+    private static final String MACHINE_ID = "machineId";
+
+    private final ReactiveProductService productService;
+
+    @PostMapping
+    public Mono<ProductResponseDto> addProduct(@PathVariable(value = MACHINE_ID, required = false) String machineId, @RequestBody ProductDTO productDTO) {
+        return productService.createProduct(machine(machineId), productDTO);
+    }
+
+    @GetMapping
+    public Mono<List<ProductDTO>> getAllProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId) {
+        return productService.getProducts(machine(machineId)).collectList();
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductDTO> streamAllProducts(@PathVariable(value = MACHINE_ID, required = false) String machineId) {
+        return productService.getProducts(machine(machineId));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ProductResponseDto> getProductById(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id) {
+        return productService.getProduct(machine(machineId), id);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ProductResponseDto> deleteProductById(@PathVariable(value = MACHINE_ID, required = false) String machineId, @PathVariable("id") Integer id) {
+        return productService.deleteProduct(machine(machineId), id);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ProductResponseDto> updateProduct(@PathVariable(value = MACHINE_ID, required = false) String machineId, @RequestBody ProductDTO productDTO,
+                                                  @PathVariable("id") Integer id) {
+        return productService.updateProduct(machine(machineId), productDTO, id);
+    }
+
+    private static String machine(String machineId) {
+        return machineId == null ? DEFAULT_MACHINE_ID : machineId;
+    }
+
+}
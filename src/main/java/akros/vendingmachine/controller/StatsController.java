@@ -0,0 +1,51 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.dto.VendStatsDTO;
+import akros.vendingmachine.stats.StatsWindow;
+import akros.vendingmachine.stats.VendStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Locale;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_PAGE_SIZE;
+import static akros.vendingmachine.AppConstant.MAX_PAGE_SIZE;
+
+/**
+ * Fleet-wide vend statistics: the product names of all machines ranked by their vends or restocks
+ * in the last {@code minute}, {@code hour} or {@code day}.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/stats")
+public class StatsController {
+
+    private final VendStats vendStats;
+
+    @GetMapping("/top")
+    public ResponseEntity<List<VendStatsDTO>> getTopProducts(@RequestParam(value = "window", defaultValue = "hour") String window,
+                                                             @RequestParam(value = "kind", defaultValue = "vend") String kind,
+                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        StatsWindow statsWindow = StatsWindow.parse(window);
+        VendStats.Kind statsKind = kind(kind);
+        if (statsWindow == null || statsKind == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        int size = limit == null || limit < 1 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        return ResponseEntity.ok(vendStats.top(statsWindow, statsKind, size));
+    }
+
+    private static VendStats.Kind kind(String kind) {
+        for (VendStats.Kind candidate : VendStats.Kind.values()) {
+            if (candidate.name().equals(kind.toUpperCase(Locale.ROOT))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package akros.vendingmachine.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Pins the queries of the current thread to the primary database, whatever the read-only flag
+ * of their transaction. Used for reads whose result is kept until the next change, such as
+ * caches and snapshots, which must not be loaded from a replica that has not seen that change
+ * yet, and for the requests of sessions that have just written.
+ * <p>
+ * Without replicas every query goes to the primary anyway, and pinning has no effect.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    /**
+     * Runs the given query with the current thread pinned to the primary database.
+     *
+     * @param query The query to run.
+     * @return The result of the query.
+     */
+    public static <T> T onPrimary(Supplier<T> query) {
+        try (Pin ignored = pinPrimary()) {
+            return query.get();
+        }
+    }
+
+    /**
+     * Pins the current thread to the primary database until the returned pin is closed.
+     * Pins may be nested; closing one restores the state before it.
+     *
+     * @return The pin, to be closed in the same thread.
+     */
+    public static Pin pinPrimary() {
+        Boolean previous = PRIMARY_PINNED.get();
+        PRIMARY_PINNED.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                PRIMARY_PINNED.remove();
+            } else {
+                PRIMARY_PINNED.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return true if the current thread is pinned to the primary database.
+     */
+    public static boolean isPrimaryPinned() {
+        return PRIMARY_PINNED.get() != null;
+    }
+
+    @FunctionalInterface
+    public interface Pin extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
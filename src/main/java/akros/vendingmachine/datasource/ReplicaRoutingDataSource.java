@@ -0,0 +1,238 @@
+package akros.vendingmachine.datasource;
+
+import akros.vendingmachine.config.ReplicaProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes the connections of read-only transactions to a replica database and every other
+ * connection to the primary.
+ * <p>
+ * A replica is chosen round-robin or by the fewest active connections among the replicas
+ * that are available: reachable at their last health check and at most
+ * {@code app.datasource.replicas.max-lag} behind the primary. Without an available replica,
+ * or when the chosen one refuses the connection, the primary serves the read instead, so a
+ * replica outage costs latency, never errors.
+ * <p>
+ * The read-only flag of a transaction is only known once it has begun, after JPA fetched its
+ * connection, so this data source has to be used behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which fetches the
+ * connection on the first statement.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    /**
+     * The replay lag of a replica, zero once it has replayed all the WAL it received, so an idle
+     * primary does not make its replicas look late, and whether its WAL receiver is disconnected,
+     * in which case everything received is replayed but the primary may be far ahead. The status
+     * of the WAL receiver is only visible to roles with {@code pg_read_all_stats}, so the replica
+     * user needs it, or {@code pg_monitor}. A database that is not in recovery, such as a stand-in
+     * for a replica, has no lag and no receiver.
+     */
+    private static final String REPLICATION_LAG = """
+            SELECT CASE
+                    WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                    ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                END,
+                pg_is_in_recovery() AND NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming')
+            """;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaProperties.Selection selection;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, ReplicaProperties properties) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.selection = properties.getSelection();
+        this.maxLag = properties.getMaxLag();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        this.replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Replica replica = route();
+        return replica == null ? PRIMARY : replica.name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            replica.unavailable(e);
+            fallbacks.incrementAndGet();
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Measures the lag of every replica, making it available again when it is reachable, streaming
+     * from the primary and within the maximum lag, and unavailable otherwise.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-check-interval:2s}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLICATION_LAG)) {
+                resultSet.next();
+                Duration lag = Duration.ofMillis(resultSet.getLong(1));
+                replica.lagMillis = lag.toMillis();
+                if (resultSet.getBoolean(2)) {
+                    replica.unavailable("is not streaming WAL from the primary");
+                } else if (lag.compareTo(maxLag) > 0) {
+                    replica.unavailable("lags " + lag.toMillis() + " ms behind the primary");
+                } else {
+                    replica.available();
+                }
+            } catch (SQLException e) {
+                replica.unavailable(e);
+            }
+        }
+    }
+
+    /**
+     * @return The name, availability and last measured lag of every replica.
+     */
+    public List<ReplicaStatus> replicas() {
+        return replicas.stream()
+                .map(replica -> new ReplicaStatus(replica.name, replica.available, Duration.ofMillis(replica.lagMillis)))
+                .toList();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.available", replica, r -> r.available ? 1 : 0)
+                    .description("Whether the replica serves read-only transactions")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagMillis / 1000.0)
+                    .description("Replay lag of the replica at its last health check")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+        FunctionCounter.builder("datasource.replica.fallbacks", fallbacks, AtomicLong::get)
+                .description("Read-only connections served by the primary because the chosen replica refused them")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    /**
+     * @return The replica serving the current connection, or null for the primary.
+     */
+    private Replica route() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReplicaRouting.isPrimaryPinned()) {
+            return null;
+        }
+        return selection == ReplicaProperties.Selection.LEAST_CONNECTIONS ? leastConnections() : roundRobin();
+    }
+
+    private Replica roundRobin() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica leastConnections() {
+        Replica least = null;
+        int leastActive = Integer.MAX_VALUE;
+        for (Replica replica : replicas) {
+            if (replica.available) {
+                HikariPoolMXBean pool = replica.dataSource.getHikariPoolMXBean();
+                int active = pool == null ? 0 : pool.getActiveConnections();
+                if (active < leastActive) {
+                    least = replica;
+                    leastActive = active;
+                }
+            }
+        }
+        return least;
+    }
+
+    public record ReplicaStatus(String name, boolean available, Duration lag) {
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final HikariDataSource dataSource;
+        private volatile boolean available = true;
+        private volatile long lagMillis;
+
+        private Replica(HikariDataSource dataSource) {
+            this.name = dataSource.getPoolName();
+            this.dataSource = dataSource;
+        }
+
+        private void available() {
+            if (!available) {
+                log.info("Replica {} is available again", name);
+                available = true;
+            }
+        }
+
+        private void unavailable(SQLException e) {
+            unavailable(e.getMessage());
+        }
+
+        private void unavailable(String reason) {
+            if (available) {
+                log.warn("Replica {} is unavailable, reads go to the primary: {}", name, reason);
+                available = false;
+            }
+        }
+    }
+}
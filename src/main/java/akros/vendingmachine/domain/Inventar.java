@@ -3,6 +3,8 @@ package akros.vendingmachine.domain;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,11 +13,14 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "inventar_machine_product_name_uk", columnNames = {"machine_id", "product_name"}))
 public class Inventar {
 
     @Id
     private String id;
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false, length = 64)
+    private String machineId;
+    @Column(nullable = false)
     private String productName;
     private Integer quantity;
 
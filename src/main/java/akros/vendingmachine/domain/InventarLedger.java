@@ -0,0 +1,36 @@
+package akros.vendingmachine.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Immutable stock change of a product name of a machine, appended in ledger inventory mode.
+ * The current quantity is {@link Inventar#getQuantity()} plus the deltas not compacted yet.
+ * Each delta is booked on a stripe, so concurrent writers of the same product lock
+ * different stripes instead of the same row.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "inventar_ledger", indexes = @Index(name = "inventar_ledger_machine_product_name_stripe_idx", columnList = "machine_id, product_name, stripe"))
+public class InventarLedger {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, length = 64)
+    private String machineId;
+    @Column(nullable = false)
+    private String productName;
+    @Column(nullable = false)
+    private Integer stripe;
+    @Column(nullable = false)
+    private Integer delta;
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -5,6 +5,12 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import static akros.vendingmachine.AppConstant.PRODUCT_ID_ALLOCATION_SIZE;
+
+/**
+ * Product unit stocked in a machine. Product IDs are unique across machines,
+ * the table is partitioned by {@code machine_id}.
+ */
 @Entity
 @Data
 @NoArgsConstructor
@@ -12,12 +18,15 @@ import lombok.NoArgsConstructor;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = PRODUCT_ID_ALLOCATION_SIZE)
     private Integer productId;
+    @Column(nullable = false, length = 64)
+    private String machineId;
     private String productName;
     private Integer productPrice;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "inventar_id")
     private Inventar inventar;
 }
@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 public class InventarDTO {
 
     private String id;
+    private String machineId;
     private String productName;
     private Integer quantity;
     //private List<Product> product;
@@ -0,0 +1,27 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBatchItemDTO {
+    private Integer index;
+    private HttpStatus status;
+    private Integer statusCode;
+    private String message;
+    private Rejection rejection;
+    private ProductDTO product;
+
+    /**
+     * Why a product of a batch was not added.
+     */
+    public enum Rejection {
+        NAME_MISSING, INVENTORY_CAP
+    }
+}
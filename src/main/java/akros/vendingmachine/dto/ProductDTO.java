@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 @Builder
 public class ProductDTO {
     private Integer productId;
+    private String machineId;
     private String productName;
     private Integer productPrice;
     private Inventar inventar;
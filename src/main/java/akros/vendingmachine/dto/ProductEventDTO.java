@@ -0,0 +1,19 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductEventDTO {
+    private String id;
+    private String type;
+    private String machineId;
+    private Integer productId;
+    private String productName;
+    private Integer quantity;
+}
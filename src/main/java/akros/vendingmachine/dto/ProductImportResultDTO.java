@@ -0,0 +1,20 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImportResultDTO {
+    private Long rows;
+    private Long imported;
+    private Long rejectedInvalid;
+    private Long rejectedOverCap;
+    private List<String> errors;
+}
@@ -0,0 +1,18 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPageDTO {
+    private List<ProductDTO> products;
+    private Integer size;
+    private Integer nextCursor;
+}
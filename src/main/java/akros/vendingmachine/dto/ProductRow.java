@@ -0,0 +1,22 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flat, read-only view of a product joined with its inventory,
+ * selected with a JPQL constructor expression.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductRow {
+    private Integer productId;
+    private String machineId;
+    private String productName;
+    private Integer productPrice;
+    private String inventarId;
+    private String inventarProductName;
+    private Integer inventarQuantity;
+}
@@ -0,0 +1,23 @@
+package akros.vendingmachine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VendStatsDTO {
+    private String machineId;
+    private String productName;
+    private Long vendsLastMinute;
+    private Long vendsLastHour;
+    private Long vendsLastDay;
+    private Long restocksLastMinute;
+    private Long restocksLastHour;
+    private Long restocksLastDay;
+    private Integer quantity;
+    private Double hoursUntilEmpty;
+}
@@ -1,11 +1,13 @@
 package akros.vendingmachine.dto.mapper;
 
+import akros.vendingmachine.domain.Inventar;
 import akros.vendingmachine.domain.Product;
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductRow;
 import org.mapstruct.Mapper;
 import org.mapstruct.factory.Mappers;
 
-@Mapper
+@Mapper(componentModel = "spring")
 public interface ProductMapper {
 
     ProductMapper PRODUCT_MAPPER = Mappers.getMapper(ProductMapper.class);
@@ -13,4 +15,10 @@ public interface ProductMapper {
     Product mapToProduct(ProductDTO productDTO);
 
     ProductDTO mapToProductDTO(Product product);
+
+    default ProductDTO mapToProductDTO(ProductRow row) {
+        Inventar inventar = row.getInventarId() == null ? null
+                : new Inventar(row.getInventarId(), row.getMachineId(), row.getInventarProductName(), row.getInventarQuantity());
+        return new ProductDTO(row.getProductId(), row.getMachineId(), row.getProductName(), row.getProductPrice(), inventar);
+    }
 }
@@ -0,0 +1,865 @@
+package akros.vendingmachine.edge;
+
+import akros.vendingmachine.config.EdgeProperties;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+import akros.vendingmachine.repository.ProductRepository.DeletedProduct;
+import akros.vendingmachine.service.InventoryStore.Grant;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Products and inventories of the {@code edge} profile, for a service running on the vending
+ * machine itself, without Postgres.
+ * <p>
+ * The data is held as struct-of-arrays: one {@code int} array per column, with product names,
+ * machine IDs and inventory IDs interned into a string table and stored as codes, so a catalog
+ * of thousands of products takes a few hundred kilobytes of heap. Products are found by ID and
+ * inventories by machine and product name through primitive hash indexes.
+ * <p>
+ * Every change is first appended to an {@link EdgeJournal} as the new state of the changed
+ * product or inventory, then applied; startup replays the same records. A snapshot of all
+ * arrays is written every {@code app.edge.snapshot-interval}, when the journal is full and on
+ * shutdown, after which the journal starts over. Recovery is loading the last snapshot and
+ * replaying the journal up to its first torn record.
+ * <p>
+ * All reads share a read lock and all changes take the write lock. There are no transactions:
+ * a change is durable once its method returns and is not rolled back with the surrounding
+ * {@code @Transactional} method.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@Profile("edge")
+public class EdgeCatalog {
+
+    private static final int SNAPSHOT_MAGIC = 0x45444745;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int NONE = -1;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    private static final byte PUT_PRODUCT = 1;
+    private static final byte DELETE_PRODUCT = 2;
+    private static final byte CLEAR_PRODUCTS = 3;
+    private static final byte PUT_INVENTAR = 4;
+    private static final byte DELETE_INVENTAR = 5;
+    private static final byte CLEAR_INVENTARS = 6;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path snapshotFile;
+    private final EdgeJournal journal;
+    private long epoch;
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+
+    private String[] strings = new String[256];
+    private int stringCount;
+    private final Map<String, Integer> stringCodes = new HashMap<>();
+
+    private int productCount;
+    private int nextProductId = 1;
+    private int[] productIds = new int[256];
+    private int[] productMachines = new int[256];
+    private int[] productNames = new int[256];
+    private int[] productPrices = new int[256];
+    private int[] productInventars = new int[256];
+    private long[] reservedUntil = new long[256];
+    private long[] reservationHigh = new long[256];
+    private long[] reservationLow = new long[256];
+    private final LongIntIndex productSlots = new LongIntIndex();
+
+    private int inventarCount;
+    private int[] inventarIds = new int[64];
+    private int[] inventarMachines = new int[64];
+    private int[] inventarNames = new int[64];
+    private int[] inventarQuantities = new int[64];
+    private final LongIntIndex inventarSlots = new LongIntIndex();
+    private final LongIntIndex inventarSlotsById = new LongIntIndex();
+
+    public EdgeCatalog(EdgeProperties properties) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(properties.getDataDir());
+        this.snapshotFile = properties.getDataDir().resolve("catalog.snapshot");
+        if (Files.exists(snapshotFile)) {
+            loadSnapshot();
+        }
+        this.journal = new EdgeJournal(properties.getDataDir().resolve("catalog.journal"),
+                (int) properties.getJournalSize().toBytes(), properties.isForceWrites());
+        int replayed = journal.replay(epoch, this::apply);
+        log.info("Recovered {} products and {} inventories from {} with {} journal records in {} ms", productCount, inventarCount,
+                properties.getDataDir(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ---------------------------------------------------------------- products
+
+    public ProductRow findRow(String machineId, int id) {
+        return read(() -> {
+            int slot = productSlot(machineId, id);
+            return slot == NONE ? null : row(slot);
+        });
+    }
+
+    /**
+     * Reads several products of a machine under one read lock, one index lookup per ID.
+     *
+     * @param machineId The ID of the machine.
+     * @param ids       The IDs of the products.
+     * @return List of ProductRow; IDs not found in the machine are missing.
+     */
+    public List<ProductRow> findRows(String machineId, Collection<Integer> ids) {
+        return read(() -> {
+            List<ProductRow> rows = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                int slot = id == null ? NONE : productSlot(machineId, id);
+                if (slot != NONE) {
+                    rows.add(row(slot));
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Reads the products of a machine, or of all machines, ordered by machine and product ID.
+     *
+     * @param machineId The ID of the machine, or null for all machines.
+     * @param afterId   The ID after which products are read.
+     * @param limit     The maximum number of products.
+     * @return List of ProductRow.
+     */
+    public List<ProductRow> findRows(String machineId, int afterId, int limit) {
+        return read(() -> {
+            int machine = machineId == null ? NONE : stringCodes.getOrDefault(machineId, NONE);
+            if (machineId != null && machine == NONE) {
+                return List.of();
+            }
+            List<Integer> slots = new ArrayList<>();
+            for (int slot = 0; slot < productCount; slot++) {
+                if ((machineId == null || productMachines[slot] == machine) && productIds[slot] > afterId) {
+                    slots.add(slot);
+                }
+            }
+            Comparator<Integer> byId = Comparator.comparingInt(slot -> productIds[slot]);
+            Comparator<Integer> byMachine = Comparator.comparing(slot -> string(productMachines[slot]),
+                    Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            slots.sort(machineId == null ? byMachine.thenComparing(byId) : byId);
+            return slots.stream().limit(limit).map(this::row).toList();
+        });
+    }
+
+    public List<String> findMachineIds() {
+        return read(() -> {
+            TreeSet<String> machineIds = new TreeSet<>();
+            for (int slot = 0; slot < productCount; slot++) {
+                if (productMachines[slot] != NONE) {
+                    machineIds.add(strings[productMachines[slot]]);
+                }
+            }
+            return List.copyOf(machineIds);
+        });
+    }
+
+    public Product findProduct(int id) {
+        return read(() -> {
+            int slot = productSlots.get(id);
+            return slot == NONE ? null : product(slot);
+        });
+    }
+
+    public List<Product> findProducts() {
+        return read(() -> {
+            List<Product> products = new ArrayList<>(productCount);
+            for (int slot = 0; slot < productCount; slot++) {
+                products.add(product(slot));
+            }
+            return products;
+        });
+    }
+
+    public int countProducts() {
+        return read(() -> productCount);
+    }
+
+    /**
+     * Inserts or replaces a product, allocating the next product ID if it has none.
+     *
+     * @param product The product, which gets its ID.
+     * @return The same product.
+     */
+    public Product saveProduct(Product product) {
+        return write(() -> {
+            if (product.getProductId() == null) {
+                product.setProductId(nextProductId);
+            }
+            int slot = productSlots.get(product.getProductId());
+            putProduct(product.getProductId(), product.getMachineId(), product.getProductName(), product.getProductPrice(),
+                    product.getInventar() == null ? null : product.getInventar().getId(),
+                    slot == NONE ? 0 : reservedUntil[slot], slot == NONE ? 0 : reservationHigh[slot], slot == NONE ? 0 : reservationLow[slot]);
+            return product;
+        });
+    }
+
+    public int updateProduct(String machineId, int id, String productName, Integer productPrice) {
+        return write(() -> {
+            int slot = productSlot(machineId, id);
+            if (slot == NONE) {
+                return 0;
+            }
+            putProduct(id, machineId, productName, productPrice, string(productInventars[slot]),
+                    reservedUntil[slot], reservationHigh[slot], reservationLow[slot]);
+            return 1;
+        });
+    }
+
+    /**
+     * Deletes a product of a machine.
+     *
+     * @param unlessReserved Whether a product held by an unexpired reservation is kept.
+     * @return The deleted product, or null if it does not exist or is reserved.
+     */
+    public DeletedProduct deleteProduct(String machineId, int id, boolean unlessReserved) {
+        return write(() -> {
+            int slot = productSlot(machineId, id);
+            if (slot == NONE || unlessReserved && isReserved(slot, System.currentTimeMillis())) {
+                return null;
+            }
+            var deleted = new Deleted(id, string(productNames[slot]));
+            deleteProduct(id);
+            return deleted;
+        });
+    }
+
+    public void deleteProduct(int id) {
+        write(() -> {
+            if (productSlots.get(id) != NONE) {
+                commit(begin(DELETE_PRODUCT).putInt(id));
+            }
+            return null;
+        });
+    }
+
+    public void deleteProducts() {
+        write(() -> commit(begin(CLEAR_PRODUCTS)));
+    }
+
+    public boolean isReserved(String machineId, int id) {
+        return read(() -> {
+            int slot = productSlot(machineId, id);
+            return slot != NONE && isReserved(slot, System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * Holds a product for a reservation, unless it is already held by an unexpired one.
+     *
+     * @return The end of the hold in epoch milliseconds, or {@code -1} if the product does not exist or is reserved.
+     */
+    public long reserve(String machineId, int id, UUID reservationId, long ttlMillis) {
+        return write(() -> {
+            int slot = productSlot(machineId, id);
+            long now = System.currentTimeMillis();
+            if (slot == NONE || isReserved(slot, now)) {
+                return -1L;
+            }
+            putProduct(id, machineId, string(productNames[slot]), nullable(productPrices[slot]), string(productInventars[slot]),
+                    now + ttlMillis, reservationId.getMostSignificantBits(), reservationId.getLeastSignificantBits());
+            return now + ttlMillis;
+        });
+    }
+
+    /**
+     * Deletes the product held by an unexpired reservation.
+     *
+     * @return The deleted product, or null if the reservation does not exist or has expired.
+     */
+    public DeletedProduct deleteReserved(String machineId, UUID reservationId) {
+        return write(() -> {
+            int slot = reservedSlot(machineId, reservationId);
+            if (slot == NONE || reservedUntil[slot] <= System.currentTimeMillis()) {
+                return null;
+            }
+            var deleted = new Deleted(productIds[slot], string(productNames[slot]));
+            deleteProduct(productIds[slot]);
+            return deleted;
+        });
+    }
+
+    /**
+     * Releases the holds of reservations of a machine.
+     *
+     * @param expiredOnly Whether only holds that have expired are released.
+     * @return The number of released products.
+     */
+    public int release(String machineId, Collection<UUID> reservationIds, boolean expiredOnly) {
+        return write(() -> {
+            long now = System.currentTimeMillis();
+            int released = 0;
+            for (UUID reservationId : reservationIds) {
+                int slot = reservedSlot(machineId, reservationId);
+                if (slot != NONE && (!expiredOnly || reservedUntil[slot] <= now)) {
+                    putProduct(productIds[slot], machineId, string(productNames[slot]), nullable(productPrices[slot]),
+                            string(productInventars[slot]), 0, 0, 0);
+                    released++;
+                }
+            }
+            return released;
+        });
+    }
+
+    // ---------------------------------------------------------------- inventories
+
+    public Inventar findInventar(String machineId, String productName) {
+        return read(() -> {
+            int slot = inventarSlot(machineId, productName);
+            return slot == NONE ? null : inventar(slot);
+        });
+    }
+
+    public Inventar findInventar(String id) {
+        return read(() -> {
+            Integer code = stringCodes.get(id);
+            int slot = code == null ? NONE : inventarSlotsById.get(code);
+            return slot == NONE ? null : inventar(slot);
+        });
+    }
+
+    public List<Inventar> findInventars() {
+        return read(() -> {
+            List<Inventar> inventars = new ArrayList<>(inventarCount);
+            for (int slot = 0; slot < inventarCount; slot++) {
+                inventars.add(inventar(slot));
+            }
+            return inventars;
+        });
+    }
+
+    public int countInventars() {
+        return read(() -> inventarCount);
+    }
+
+    public Inventar saveInventar(Inventar inventar) {
+        return write(() -> {
+            putInventar(inventar.getId(), inventar.getMachineId(), inventar.getProductName(), inventar.getQuantity());
+            return inventar;
+        });
+    }
+
+    public void deleteInventar(String id) {
+        write(() -> {
+            Integer code = stringCodes.get(id);
+            if (code != null && inventarSlotsById.get(code) != NONE) {
+                commit(putString(begin(DELETE_INVENTAR), id));
+            }
+            return null;
+        });
+    }
+
+    public void deleteInventars() {
+        write(() -> commit(begin(CLEAR_INVENTARS)));
+    }
+
+    /**
+     * Adds one unit to an inventory, creating it with the given ID for the first unit.
+     *
+     * @return The inventory ID and the new quantity, or null if the maximum is reached.
+     */
+    public InventarQuantity increment(String machineId, String productName, String newId, int maxQuantity) {
+        return write(() -> {
+            int slot = inventarSlot(machineId, productName);
+            if (slot == NONE) {
+                putInventar(newId, machineId, productName, 1);
+                return new Quantity(newId, 1);
+            }
+            int quantity = nullable(inventarQuantities[slot]) == null ? 0 : inventarQuantities[slot];
+            if (quantity >= maxQuantity) {
+                return null;
+            }
+            putInventar(string(inventarIds[slot]), machineId, productName, quantity + 1);
+            return new Quantity(string(inventarIds[slot]), quantity + 1);
+        });
+    }
+
+    /**
+     * Adds up to the requested number of units to the inventories of several product names,
+     * creating the inventories with a random ID if needed.
+     *
+     * @return The granted units per product name, in the order of the product names.
+     */
+    public Map<String, Grant> increment(String machineId, SortedMap<String, Integer> units, int maxQuantity) {
+        return write(() -> {
+            Map<String, Grant> grants = new LinkedHashMap<>();
+            units.forEach((productName, requested) -> {
+                int slot = inventarSlot(machineId, productName);
+                String id = slot == NONE ? UUID.randomUUID().toString() : string(inventarIds[slot]);
+                int quantity = slot == NONE || nullable(inventarQuantities[slot]) == null ? 0 : inventarQuantities[slot];
+                int granted = Math.max(0, Math.min(requested, maxQuantity - quantity));
+                putInventar(id, machineId, productName, quantity + granted);
+                grants.put(productName, new Grant(id, granted, quantity + granted));
+            });
+            return grants;
+        });
+    }
+
+    public int insertMissing(String machineId, String[] productNames) {
+        return write(() -> {
+            int inserted = 0;
+            for (String productName : productNames) {
+                if (inventarSlot(machineId, productName) == NONE) {
+                    putInventar(UUID.randomUUID().toString(), machineId, productName, 0);
+                    inserted++;
+                }
+            }
+            return inserted;
+        });
+    }
+
+    /**
+     * Removes units from an inventory, never going below zero.
+     *
+     * @return The number of updated inventories, zero if the inventory does not exist or is empty.
+     */
+    public int decrement(String machineId, String productName, int units) {
+        return write(() -> {
+            int slot = inventarSlot(machineId, productName);
+            Integer quantity = slot == NONE ? null : nullable(inventarQuantities[slot]);
+            if (quantity == null || quantity == 0) {
+                return 0;
+            }
+            putInventar(string(inventarIds[slot]), machineId, productName, Math.max(quantity - units, 0));
+            return 1;
+        });
+    }
+
+    // ---------------------------------------------------------------- persistence
+
+    /**
+     * Writes all products and inventories to a new snapshot and starts the journal over.
+     * Does nothing if nothing changed since the last snapshot.
+     */
+    @Scheduled(fixedDelayString = "${app.edge.snapshot-interval:5m}", initialDelayString = "${app.edge.snapshot-interval:5m}")
+    public void snapshot() {
+        write(() -> {
+            if (!journal.isEmpty()) {
+                writeSnapshot();
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        try {
+            snapshot();
+        } catch (UncheckedIOException e) {
+            log.warn("Failed to write the catalog snapshot on shutdown, the journal is replayed on the next start", e);
+        }
+        journal.close();
+    }
+
+    private void writeSnapshot() {
+        long nextEpoch = epoch + 1;
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (var file = new FileOutputStream(temporary.toFile())) {
+            var checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32C());
+            var out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(nextEpoch);
+            out.writeInt(nextProductId);
+            out.writeInt(stringCount);
+            for (int code = 0; code < stringCount; code++) {
+                byte[] bytes = strings[code].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(inventarCount);
+            for (int slot = 0; slot < inventarCount; slot++) {
+                out.writeInt(inventarIds[slot]);
+                out.writeInt(inventarMachines[slot]);
+                out.writeInt(inventarNames[slot]);
+                out.writeInt(inventarQuantities[slot]);
+            }
+            out.writeInt(productCount);
+            for (int slot = 0; slot < productCount; slot++) {
+                out.writeInt(productIds[slot]);
+                out.writeInt(productMachines[slot]);
+                out.writeInt(productNames[slot]);
+                out.writeInt(productPrices[slot]);
+                out.writeInt(productInventars[slot]);
+                out.writeLong(reservedUntil[slot]);
+                out.writeLong(reservationHigh[slot]);
+                out.writeLong(reservationLow[slot]);
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the catalog snapshot " + temporary, e);
+        }
+        try {
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replace the catalog snapshot " + snapshotFile, e);
+        }
+        log.debug("Wrote a snapshot of {} products and {} inventories, replacing {} bytes of journal", productCount, inventarCount, journal.size());
+        epoch = nextEpoch;
+        journal.reset(epoch);
+    }
+
+    private void loadSnapshot() throws IOException {
+        try (var checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 64 * 1024), new CRC32C())) {
+            var in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a catalog snapshot: " + snapshotFile);
+            }
+            epoch = in.readLong();
+            nextProductId = in.readInt();
+            int strings = in.readInt();
+            for (int code = 0; code < strings; code++) {
+                intern(new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+            }
+            int inventars = in.readInt();
+            for (int slot = 0; slot < inventars; slot++) {
+                applyInventar(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            }
+            int products = in.readInt();
+            for (int slot = 0; slot < products; slot++) {
+                applyProduct(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupted catalog snapshot: " + snapshotFile);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- journal records
+
+    private void putProduct(int id, String machineId, String productName, Integer productPrice, String inventarId,
+                            long until, long high, long low) {
+        ByteBuffer buffer = begin(PUT_PRODUCT).putInt(id);
+        buffer = putString(buffer, machineId);
+        buffer = putString(buffer, productName);
+        buffer = putString(buffer.putInt(productPrice == null ? NULL_INT : productPrice), inventarId);
+        commit(buffer.putLong(until).putLong(high).putLong(low));
+    }
+
+    private void putInventar(String id, String machineId, String productName, Integer quantity) {
+        ByteBuffer buffer = putString(begin(PUT_INVENTAR), id);
+        buffer = putString(buffer, machineId);
+        buffer = putString(buffer, productName);
+        commit(buffer.putInt(quantity == null ? NULL_INT : quantity));
+    }
+
+    private ByteBuffer begin(byte type) {
+        return record.clear().put(type);
+    }
+
+    private ByteBuffer putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            return buffer.putInt(NONE);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < Integer.BYTES + bytes.length + 64) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, buffer.position() + bytes.length + 1024));
+            larger.put(buffer.flip());
+            record = larger;
+            buffer = larger;
+        }
+        return buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Appends a record to the journal, taking a snapshot first if the journal is full, and applies it.
+     */
+    private Void commit(ByteBuffer buffer) {
+        buffer.flip();
+        if (!journal.append(buffer)) {
+            writeSnapshot();
+            if (!journal.append(buffer)) {
+                throw new IllegalStateException("A journal record of " + buffer.remaining() + " bytes does not fit the journal");
+            }
+        }
+        apply(buffer.rewind());
+        return null;
+    }
+
+    private void apply(ByteBuffer buffer) {
+        switch (buffer.get()) {
+            case PUT_PRODUCT -> applyProduct(buffer.getInt(), intern(getString(buffer)), intern(getString(buffer)), buffer.getInt(),
+                    intern(getString(buffer)), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            case DELETE_PRODUCT -> removeProduct(buffer.getInt());
+            case CLEAR_PRODUCTS -> {
+                productCount = 0;
+                productSlots.clear();
+            }
+            case PUT_INVENTAR -> applyInventar(intern(getString(buffer)), intern(getString(buffer)), intern(getString(buffer)), buffer.getInt());
+            case DELETE_INVENTAR -> removeInventar(intern(getString(buffer)));
+            case CLEAR_INVENTARS -> {
+                inventarCount = 0;
+                inventarSlots.clear();
+                inventarSlotsById.clear();
+            }
+            default -> throw new IllegalStateException("Unknown journal record type");
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NONE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------------- arrays
+
+    private void applyProduct(int id, int machine, int name, int price, int inventar, long until, long high, long low) {
+        int slot = productSlots.get(id);
+        if (slot == NONE) {
+            slot = productCount++;
+            if (slot == productIds.length) {
+                int capacity = productIds.length * 2;
+                productIds = Arrays.copyOf(productIds, capacity);
+                productMachines = Arrays.copyOf(productMachines, capacity);
+                productNames = Arrays.copyOf(productNames, capacity);
+                productPrices = Arrays.copyOf(productPrices, capacity);
+                productInventars = Arrays.copyOf(productInventars, capacity);
+                reservedUntil = Arrays.copyOf(reservedUntil, capacity);
+                reservationHigh = Arrays.copyOf(reservationHigh, capacity);
+                reservationLow = Arrays.copyOf(reservationLow, capacity);
+            }
+            productSlots.put(id, slot);
+        }
+        productIds[slot] = id;
+        productMachines[slot] = machine;
+        productNames[slot] = name;
+        productPrices[slot] = price;
+        productInventars[slot] = inventar;
+        reservedUntil[slot] = until;
+        reservationHigh[slot] = high;
+        reservationLow[slot] = low;
+        nextProductId = Math.max(nextProductId, id + 1);
+    }
+
+    /**
+     * Removes a product by moving the last product into its slot.
+     */
+    private void removeProduct(int id) {
+        int slot = productSlots.get(id);
+        if (slot == NONE) {
+            return;
+        }
+        productSlots.remove(id);
+        int last = --productCount;
+        if (slot != last) {
+            productIds[slot] = productIds[last];
+            productMachines[slot] = productMachines[last];
+            productNames[slot] = productNames[last];
+            productPrices[slot] = productPrices[last];
+            productInventars[slot] = productInventars[last];
+            reservedUntil[slot] = reservedUntil[last];
+            reservationHigh[slot] = reservationHigh[last];
+            reservationLow[slot] = reservationLow[last];
+            productSlots.put(productIds[slot], slot);
+        }
+    }
+
+    private void applyInventar(int id, int machine, int name, int quantity) {
+        int slot = inventarSlotsById.get(id);
+        if (slot == NONE) {
+            slot = inventarCount++;
+            if (slot == inventarIds.length) {
+                int capacity = inventarIds.length * 2;
+                inventarIds = Arrays.copyOf(inventarIds, capacity);
+                inventarMachines = Arrays.copyOf(inventarMachines, capacity);
+                inventarNames = Arrays.copyOf(inventarNames, capacity);
+                inventarQuantities = Arrays.copyOf(inventarQuantities, capacity);
+            }
+            inventarSlotsById.put(id, slot);
+        } else {
+            inventarSlots.remove(key(inventarMachines[slot], inventarNames[slot]));
+        }
+        inventarIds[slot] = id;
+        inventarMachines[slot] = machine;
+        inventarNames[slot] = name;
+        inventarQuantities[slot] = quantity;
+        inventarSlots.put(key(machine, name), slot);
+    }
+
+    private void removeInventar(int id) {
+        int slot = inventarSlotsById.get(id);
+        if (slot == NONE) {
+            return;
+        }
+        inventarSlotsById.remove(id);
+        inventarSlots.remove(key(inventarMachines[slot], inventarNames[slot]));
+        int last = --inventarCount;
+        if (slot != last) {
+            inventarIds[slot] = inventarIds[last];
+            inventarMachines[slot] = inventarMachines[last];
+            inventarNames[slot] = inventarNames[last];
+            inventarQuantities[slot] = inventarQuantities[last];
+            inventarSlotsById.put(inventarIds[slot], slot);
+            inventarSlots.put(key(inventarMachines[slot], inventarNames[slot]), slot);
+        }
+    }
+
+    private int productSlot(String machineId, int id) {
+        int slot = productSlots.get(id);
+        return slot != NONE && Objects.equals(string(productMachines[slot]), machineId) ? slot : NONE;
+    }
+
+    private int reservedSlot(String machineId, UUID reservationId) {
+        for (int slot = 0; slot < productCount; slot++) {
+            if (reservationLow[slot] == reservationId.getLeastSignificantBits() && reservationHigh[slot] == reservationId.getMostSignificantBits()
+                    && reservedUntil[slot] != 0 && Objects.equals(string(productMachines[slot]), machineId)) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean isReserved(int slot, long now) {
+        return reservedUntil[slot] > now;
+    }
+
+    private int inventarSlot(String machineId, String productName) {
+        Integer machine = stringCodes.get(machineId);
+        Integer name = stringCodes.get(productName);
+        return machine == null || name == null ? NONE : inventarSlots.get(key(machine, name));
+    }
+
+    private static long key(int machine, int name) {
+        return (long) machine << 32 | name & 0xFFFFFFFFL;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = stringCodes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+        }
+        strings[stringCount] = value;
+        stringCodes.put(value, stringCount);
+        return stringCount++;
+    }
+
+    private String string(int code) {
+        return code == NONE ? null : strings[code];
+    }
+
+    private static Integer nullable(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    private ProductRow row(int slot) {
+        int inventar = productInventars[slot] == NONE ? NONE : inventarSlotsById.get(productInventars[slot]);
+        // like the left join of the product row query, an inventory of another machine is not joined
+        boolean joined = inventar != NONE && inventarMachines[inventar] == productMachines[slot];
+        return new ProductRow(productIds[slot], string(productMachines[slot]), string(productNames[slot]), nullable(productPrices[slot]),
+                joined ? string(inventarIds[inventar]) : null, joined ? string(inventarNames[inventar]) : null,
+                joined ? nullable(inventarQuantities[inventar]) : null);
+    }
+
+    private Product product(int slot) {
+        int inventar = productInventars[slot] == NONE ? NONE : inventarSlotsById.get(productInventars[slot]);
+        return new Product(productIds[slot], string(productMachines[slot]), string(productNames[slot]), nullable(productPrices[slot]),
+                inventar == NONE ? null : inventar(inventar));
+    }
+
+    private Inventar inventar(int slot) {
+        return new Inventar(string(inventarIds[slot]), string(inventarMachines[slot]), string(inventarNames[slot]),
+                nullable(inventarQuantities[slot]));
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> writer) {
+        lock.writeLock().lock();
+        try {
+            return writer.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Deleted(Integer productId, String productName) implements DeletedProduct {
+
+        @Override
+        public Integer getProductId() {
+            return productId;
+        }
+
+        @Override
+        public String getProductName() {
+            return productName;
+        }
+    }
+
+    private record Quantity(String id, Integer quantity) implements InventarQuantity {
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package akros.vendingmachine.edge;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.repository.InventarRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link InventarRepository} of the {@code edge} profile, backed by the {@link EdgeCatalog}.
+ * Inventories are returned as copies: changing one does not change the catalog until it is saved.
+ */
+@Component
+@Profile("edge")
+@RequiredArgsConstructor
+public class EdgeInventarRepository extends EdgeJpaRepository<Inventar, String> implements InventarRepository {
+
+    private final EdgeCatalog catalog;
+
+    @Override
+    public Inventar findByMachineIdAndProductName(String machineId, String productName) {
+        return catalog.findInventar(machineId, productName);
+    }
+
+    @Override
+    public Inventar findCurrent(String machineId, String productName) {
+        return catalog.findInventar(machineId, productName);
+    }
+
+    @Override
+    public List<Inventar> findByMachineIdAndProductNameInOrderByProductName(String machineId, Collection<String> productNames) {
+        return productNames.stream()
+                .sorted()
+                .distinct()
+                .map(productName -> catalog.findInventar(machineId, productName))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public int insertMissing(String machineId, String[] productNames) {
+        return catalog.insertMissing(machineId, productNames);
+    }
+
+    @Override
+    public Optional<InventarQuantity> incrementQuantity(String id, String machineId, String productName, int maxQuantity) {
+        return Optional.ofNullable(catalog.increment(machineId, productName, id, maxQuantity));
+    }
+
+    @Override
+    public Optional<Integer> decrementQuantity(String machineId, String productName) {
+        if (catalog.decrement(machineId, productName, 1) == 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(catalog.findInventar(machineId, productName)).map(Inventar::getQuantity);
+    }
+
+    @Override
+    public int decrementQuantities(String machineId, String[] productNames, Integer[] units) {
+        int updated = 0;
+        for (int i = 0; i < productNames.length; i++) {
+            updated += catalog.decrement(machineId, productNames[i], units[i]);
+        }
+        return updated;
+    }
+
+    @Override
+    public <S extends Inventar> S save(S inventar) {
+        catalog.saveInventar(inventar);
+        return inventar;
+    }
+
+    @Override
+    public Optional<Inventar> findById(String id) {
+        return Optional.ofNullable(catalog.findInventar(id));
+    }
+
+    @Override
+    public List<Inventar> findAll() {
+        return catalog.findInventars();
+    }
+
+    @Override
+    public long count() {
+        return catalog.countInventars();
+    }
+
+    /**
+     * Unlike a JPA reference, the inventory is read at once; an unknown ID gives an inventory with only its ID.
+     */
+    @Override
+    public Inventar getReferenceById(String id) {
+        return findById(id).orElseGet(() -> new Inventar(id, null, null, null));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        catalog.deleteInventar(id);
+    }
+
+    @Override
+    public void deleteAll() {
+        catalog.deleteInventars();
+    }
+
+    @Override
+    protected String idOf(Inventar inventar) {
+        return inventar.getId();
+    }
+}
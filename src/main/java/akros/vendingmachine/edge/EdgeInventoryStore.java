@@ -0,0 +1,65 @@
+package akros.vendingmachine.edge;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+import akros.vendingmachine.service.InventoryStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.UUID;
+
+/**
+ * Inventory store of the {@code edge} profile, {@code app.inventory.mode=edge}: every change is
+ * one update of the {@link EdgeCatalog} under its write lock, which also enforces the quantity
+ * cap under concurrent requests.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Service
+@Profile("edge")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "edge")
+public class EdgeInventoryStore implements InventoryStore {
+
+    private final EdgeCatalog catalog;
+
+    @Override
+    public Optional<InventarQuantity> increment(String machineId, String productName, int maxQuantity) {
+        return Optional.ofNullable(catalog.increment(machineId, productName, UUID.randomUUID().toString(), maxQuantity));
+    }
+
+    @Override
+    public Map<String, Grant> increment(String machineId, SortedMap<String, Integer> units, int maxQuantity) {
+        return catalog.increment(machineId, units, maxQuantity);
+    }
+
+    @Override
+    public int decrement(String machineId, String productName) {
+        catalog.decrement(machineId, productName, 1);
+        Inventar inventar = catalog.findInventar(machineId, productName);
+        return inventar == null || inventar.getQuantity() == null ? 0 : inventar.getQuantity();
+    }
+
+    @Override
+    public void decrement(String machineId, SortedMap<String, Integer> units) {
+        units.forEach((productName, count) -> catalog.decrement(machineId, productName, count));
+    }
+
+    @Override
+    public Inventar find(String machineId, String productName) {
+        return catalog.findInventar(machineId, productName);
+    }
+
+    @Override
+    public List<Inventar> findAll() {
+        return catalog.findInventars();
+    }
+}
@@ -0,0 +1,121 @@
+package akros.vendingmachine.edge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped append-only journal of the {@link EdgeCatalog} changes since its last snapshot.
+ * <p>
+ * A record is its payload length, a CRC32C of its epoch and payload, the epoch and the payload.
+ * The epoch is the one of the snapshot the record follows: after a snapshot the journal is reused
+ * from the start with the next epoch, so records left over from before the snapshot are never
+ * replayed. Replay stops at the first empty, torn or foreign record, which is where appending
+ * resumes.
+ */
+final class EdgeJournal implements AutoCloseable {
+
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean force;
+    private final CRC32C crc = new CRC32C();
+    private long epoch;
+
+    EdgeJournal(Path file, int capacity, boolean force) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.force = force;
+    }
+
+    /**
+     * Hands the payload of every record of an epoch to a consumer, in order, and positions the
+     * journal after the last valid record.
+     *
+     * @param epoch    The epoch of the snapshot the journal follows.
+     * @param consumer The consumer, reading the payload from its position to its limit.
+     * @return The number of replayed records.
+     */
+    int replay(long epoch, Consumer<ByteBuffer> consumer) {
+        this.epoch = epoch;
+        int records = 0;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getLong(position + 8) != epoch || buffer.getInt(position + 4) != checksum(position + 8, length)) {
+                break;
+            }
+            consumer.accept(buffer.slice(position + HEADER_SIZE, length));
+            position += HEADER_SIZE + length;
+            records++;
+        }
+        buffer.position(position);
+        return records;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param payload The payload, read from its position to its limit.
+     * @return false if the journal has no room left for the record.
+     */
+    boolean append(ByteBuffer payload) {
+        int length = payload.remaining();
+        int position = buffer.position();
+        if (position + HEADER_SIZE + length + Integer.BYTES > buffer.capacity()) {
+            return false;
+        }
+        buffer.putLong(position + 8, epoch);
+        buffer.put(position + HEADER_SIZE, payload, payload.position(), length);
+        buffer.putInt(position + 4, checksum(position + 8, length));
+        // the end marker is written before the length, so a torn append ends the replay either way
+        buffer.putInt(position + HEADER_SIZE + length, 0);
+        buffer.putInt(position, length);
+        buffer.position(position + HEADER_SIZE + length);
+        if (force) {
+            buffer.force(position, HEADER_SIZE + length + Integer.BYTES);
+        }
+        return true;
+    }
+
+    /**
+     * Starts over after a snapshot.
+     *
+     * @param epoch The epoch of the snapshot.
+     */
+    void reset(long epoch) {
+        this.epoch = epoch;
+        buffer.putInt(0, 0);
+        buffer.position(0);
+        if (force) {
+            buffer.force(0, Integer.BYTES);
+        }
+    }
+
+    boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, Long.BYTES + length));
+        return (int) crc.getValue();
+    }
+}
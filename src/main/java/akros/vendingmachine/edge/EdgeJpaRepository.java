@@ -0,0 +1,338 @@
+package akros.vendingmachine.edge;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The generic {@link JpaRepository} methods of the {@link EdgeCatalog} repositories, derived from a
+ * handful of methods per entity. Writes go straight to the catalog, so flushing does nothing.
+ * Sorting, paging and queries by example run in memory over {@link #findAll()}, which is fine for
+ * the catalog of a single machine.
+ */
+abstract class EdgeJpaRepository<T, ID> implements JpaRepository<T, ID> {
+
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
+
+    protected abstract ID idOf(T entity);
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        List<T> entities = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(entities::add));
+        return entities;
+    }
+
+    @Override
+    @Deprecated
+    public T getOne(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public T getById(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        deleteById(idOf(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<ID> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return sorted(findAll(), sort);
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        return page(findAll(pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        return Optional.ofNullable(findBy(example, FluentQuery.FetchableFluentQuery::oneValue));
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        return findAll(example, Sort.unsorted());
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        List<S> matching = new ArrayList<>();
+        for (T entity : findAll()) {
+            if (example.getProbeType().isInstance(entity) && matches(example, entity)) {
+                matching.add(example.getProbeType().cast(entity));
+            }
+        }
+        return sorted(matching, sort);
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(findAll(example, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        return findAll(example).size();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        return !findAll(example).isEmpty();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        return queryFunction.apply(new ExampleQuery<>(example, Sort.unsorted(), Integer.MAX_VALUE, example.getProbeType()));
+    }
+
+    private static <E> List<E> sorted(List<E> entities, Sort sort) {
+        Comparator<E> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<E> next = comparator(order);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        if (comparator == null) {
+            return entities;
+        }
+        List<E> sorted = new ArrayList<>(entities);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Comparator<E> comparator(Sort.Order order) {
+        Comparator<Comparable> values = Comparator.naturalOrder();
+        if (order.isIgnoreCase()) {
+            values = Comparator.comparing(value -> value instanceof String string ? string.toLowerCase(Locale.ROOT) : value, values);
+        }
+        if (order.isDescending()) {
+            values = values.reversed();
+        }
+        values = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+        return Comparator.comparing(entity -> (Comparable) new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()), values);
+    }
+
+    private static <E> Page<E> page(List<E> entities, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(entities, pageable, entities.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), entities.size());
+        int to = Math.min(from + pageable.getPageSize(), entities.size());
+        return new PageImpl<>(entities.subList(from, to), pageable, entities.size());
+    }
+
+    /**
+     * Matches the top-level properties of an entity against the probe like a JPA query by example,
+     * including ignored paths, the null handler and the string matchers of the matcher.
+     */
+    private static boolean matches(Example<?> example, Object entity) {
+        ExampleMatcher matcher = example.getMatcher();
+        BeanWrapper probe = new BeanWrapperImpl(example.getProbe());
+        BeanWrapper candidate = new BeanWrapperImpl(entity);
+        boolean any = false;
+        boolean all = true;
+        for (PropertyDescriptor property : probe.getPropertyDescriptors()) {
+            String path = property.getName();
+            if (property.getReadMethod() == null || "class".equals(path) || matcher.isIgnoredPath(path)) {
+                continue;
+            }
+            ExampleMatcher.PropertySpecifier specifier = matcher.getPropertySpecifiers().getForPath(path);
+            Optional<Object> expected = Optional.ofNullable(probe.getPropertyValue(path));
+            if (specifier != null) {
+                expected = specifier.transformValue(expected);
+            }
+            if (expected.isEmpty() && matcher.getNullHandler() == ExampleMatcher.NullHandler.IGNORE) {
+                continue;
+            }
+            boolean match = matches(matcher, specifier, expected.orElse(null), candidate.getPropertyValue(path));
+            any |= match;
+            all &= match;
+        }
+        return matcher.isAllMatching() ? all : any;
+    }
+
+    private static boolean matches(ExampleMatcher matcher, ExampleMatcher.PropertySpecifier specifier, Object expected, Object actual) {
+        if (!(expected instanceof String pattern) || !(actual instanceof String value)) {
+            return Objects.equals(expected, actual);
+        }
+        ExampleMatcher.StringMatcher stringMatcher = specifier != null && specifier.getStringMatcher() != null
+                ? specifier.getStringMatcher()
+                : matcher.getDefaultStringMatcher();
+        boolean ignoreCase = specifier != null && specifier.getIgnoreCase() != null ? specifier.getIgnoreCase() : matcher.isIgnoreCaseEnabled();
+        if (ignoreCase) {
+            pattern = pattern.toLowerCase(Locale.ROOT);
+            value = value.toLowerCase(Locale.ROOT);
+        }
+        return switch (stringMatcher) {
+            case DEFAULT, EXACT -> value.equals(pattern);
+            case STARTING -> value.startsWith(pattern);
+            case ENDING -> value.endsWith(pattern);
+            case CONTAINING -> value.contains(pattern);
+            case REGEX -> value.matches(pattern);
+        };
+    }
+
+    /**
+     * Fluent query by example over the entities of the catalog. All properties are in memory,
+     * so projections to a subset of them change nothing.
+     */
+    private final class ExampleQuery<S extends T, R> implements FluentQuery.FetchableFluentQuery<R> {
+
+        private final Example<S> example;
+        private final Sort sort;
+        private final int limit;
+        private final Class<R> resultType;
+
+        private ExampleQuery(Example<S> example, Sort sort, int limit, Class<R> resultType) {
+            this.example = example;
+            this.sort = sort;
+            this.limit = limit;
+            this.resultType = resultType;
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> sortBy(Sort sort) {
+            return new ExampleQuery<>(example, this.sort.and(sort), limit, resultType);
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> limit(int limit) {
+            return new ExampleQuery<>(example, sort, limit, resultType);
+        }
+
+        @Override
+        public <P> FluentQuery.FetchableFluentQuery<P> as(Class<P> resultType) {
+            if (!resultType.isInterface() && !resultType.isAssignableFrom(example.getProbeType())) {
+                throw new IllegalArgumentException("Entities of the edge catalog can only be projected to interfaces, not to " + resultType.getName());
+            }
+            return new ExampleQuery<>(example, sort, limit, resultType);
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> project(Collection<String> properties) {
+            return this;
+        }
+
+        @Override
+        public R oneValue() {
+            List<R> results = all();
+            if (results.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1, results.size());
+            }
+            return results.isEmpty() ? null : results.getFirst();
+        }
+
+        @Override
+        public R firstValue() {
+            return stream().findFirst().orElse(null);
+        }
+
+        @Override
+        public List<R> all() {
+            return stream().toList();
+        }
+
+        @Override
+        public Page<R> page(Pageable pageable) {
+            List<S> entities = findAll(example, sort.and(pageable.getSort()));
+            return EdgeJpaRepository.page(entities.subList(0, Math.min(limit, entities.size())), pageable).map(this::convert);
+        }
+
+        @Override
+        public Stream<R> stream() {
+            return findAll(example, sort).stream().limit(limit).map(this::convert);
+        }
+
+        @Override
+        public long count() {
+            return Math.min(limit, EdgeJpaRepository.this.count(example));
+        }
+
+        @Override
+        public boolean exists() {
+            return EdgeJpaRepository.this.exists(example);
+        }
+
+        private R convert(S entity) {
+            return resultType.isInstance(entity) ? resultType.cast(entity) : PROJECTIONS.createProjection(resultType, entity);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package akros.vendingmachine.edge;
+
+import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.repository.ProductRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * {@link ProductRepository} of the {@code edge} profile, backed by the {@link EdgeCatalog}.
+ */
+@Component
+@Profile("edge")
+@RequiredArgsConstructor
+public class EdgeProductRepository extends EdgeJpaRepository<Product, Integer> implements ProductRepository {
+
+    private final EdgeCatalog catalog;
+
+    @Override
+    public List<ProductRow> findAllRows(String machineId) {
+        return catalog.findRows(machineId, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ProductRow> findRowsAfter(String machineId, Integer productId, Limit limit) {
+        return catalog.findRows(machineId, productId, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ProductRow> findRows(Limit limit) {
+        return catalog.findRows(null, Integer.MIN_VALUE, limit.isLimited() ? limit.max() : Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<String> findMachineIds() {
+        return catalog.findMachineIds();
+    }
+
+    @Override
+    public Optional<ProductRow> findRowById(String machineId, Integer productId) {
+        return Optional.ofNullable(catalog.findRow(machineId, productId));
+    }
+
+    @Override
+    public List<ProductRow> findRowsByIds(String machineId, Collection<Integer> ids) {
+        return catalog.findRows(machineId, ids);
+    }
+
+    @Override
+    public Stream<ProductRow> streamAllRows(String machineId) {
+        return findAllRows(machineId).stream();
+    }
+
+    @Override
+    public int updateProduct(String machineId, Integer id, String productName, Integer productPrice) {
+        return catalog.updateProduct(machineId, id, productName, productPrice);
+    }
+
+    @Override
+    public int deleteByProductId(String machineId, Integer id) {
+        return catalog.deleteProduct(machineId, id, true) == null ? 0 : 1;
+    }
+
+    @Override
+    public List<DeletedProduct> deleteByProductIds(String machineId, Integer[] ids) {
+        List<DeletedProduct> deleted = new ArrayList<>();
+        for (Integer id : ids) {
+            DeletedProduct product = catalog.deleteProduct(machineId, id, true);
+            if (product != null) {
+                deleted.add(product);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean isReserved(String machineId, Integer id) {
+        return catalog.isReserved(machineId, id);
+    }
+
+    @Override
+    public Optional<Long> reserve(String machineId, Integer id, UUID reservationId, long ttlMillis) {
+        long reservedUntil = catalog.reserve(machineId, id, reservationId, ttlMillis);
+        return reservedUntil < 0 ? Optional.empty() : Optional.of(reservedUntil);
+    }
+
+    @Override
+    public Optional<DeletedProduct> deleteReserved(String machineId, UUID reservationId) {
+        return Optional.ofNullable(catalog.deleteReserved(machineId, reservationId));
+    }
+
+    @Override
+    public int release(String machineId, UUID reservationId) {
+        return catalog.release(machineId, List.of(reservationId), false);
+    }
+
+    @Override
+    public int releaseExpired(String machineId, String[] reservationIds) {
+        return catalog.release(machineId, Arrays.stream(reservationIds).map(UUID::fromString).toList(), true);
+    }
+
+    @Override
+    public <S extends Product> S save(S product) {
+        catalog.saveProduct(product);
+        return product;
+    }
+
+    @Override
+    public Optional<Product> findById(Integer id) {
+        return Optional.ofNullable(catalog.findProduct(id));
+    }
+
+    @Override
+    public List<Product> findAll() {
+        return catalog.findProducts();
+    }
+
+    @Override
+    public long count() {
+        return catalog.countProducts();
+    }
+
+    @Override
+    public Product getReferenceById(Integer id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("Product " + id + " not found"));
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        catalog.deleteProduct(id);
+    }
+
+    @Override
+    public void deleteAll() {
+        catalog.deleteProducts();
+    }
+
+    @Override
+    protected Integer idOf(Product product) {
+        return product.getProductId();
+    }
+}
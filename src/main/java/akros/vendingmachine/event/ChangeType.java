@@ -0,0 +1,11 @@
+package akros.vendingmachine.event;
+
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    /**
+     * Units of a product name were bulk imported; the event carries no product ID.
+     */
+    IMPORTED
+}
@@ -0,0 +1,49 @@
+package akros.vendingmachine.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published whenever a product of a machine, and with it the inventory of its product name, changes.
+ * Local events are published inside the mutating transaction; remote events are
+ * republished from notifications of other application nodes. The reactive service notifies the
+ * other nodes inside its own R2DBC transaction and publishes its events once it has committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    private final ChangeType type;
+    private final String machineId;
+    private final Integer productId;
+    private final String productName;
+    /**
+     * The quantity of the inventory of the product name after the change, or null if the writer
+     * does not know it, like a batch of removals or a node released before it was carried.
+     */
+    private final Integer quantity;
+    /**
+     * The number of units an import granted, or null for the other changes, which add or remove a single unit.
+     */
+    private final Integer units;
+    private final boolean remote;
+    /**
+     * Whether the other application nodes have already been notified of the change,
+     * true for remote changes and for committed changes of the reactive service.
+     */
+    private final boolean notified;
+
+    public static ProductChangedEvent local(ChangeType type, String machineId, Integer productId, String productName, Integer quantity) {
+        return new ProductChangedEvent(type, machineId, productId, productName, quantity, null, false, false);
+    }
+
+    public static ProductChangedEvent imported(String machineId, String productName, Integer quantity, Integer units) {
+        return new ProductChangedEvent(ChangeType.IMPORTED, machineId, null, productName, quantity, units, false, false);
+    }
+
+    public static ProductChangedEvent notified(ChangeType type, String machineId, Integer productId, String productName, Integer quantity) {
+        return new ProductChangedEvent(type, machineId, productId, productName, quantity, null, false, true);
+    }
+}
@@ -0,0 +1,59 @@
+package akros.vendingmachine.jfr;
+
+import akros.vendingmachine.config.JfrProperties;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * A flight recording running as long as the application, enabled with {@code app.jfr.continuous=true}.
+ * <p>
+ * The recording keeps at most {@code max-age} and {@code max-size} of events on disk, dropping the
+ * oldest chunks first, so it can run indefinitely and still hold the minutes before a latency alert
+ * when it is dumped from {@code /actuator/jfr}. Besides the JVM events of the configured
+ * {@code settings}, it records the product service and phase events above {@code threshold}.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.jfr.continuous", havingValue = "true")
+public class ContinuousRecording {
+
+    private final Recording recording;
+
+    public ContinuousRecording(JfrProperties properties) throws IOException, ParseException {
+        this.recording = new Recording(Configuration.getConfiguration(properties.getSettings()));
+        recording.setName("vending-machine");
+        recording.setToDisk(true);
+        recording.setMaxAge(properties.getMaxAge());
+        recording.setMaxSize(properties.getMaxSize().toBytes());
+        recording.enable(ProductServiceEvent.class).withThreshold(properties.getThreshold());
+        recording.enable(ProductPhaseEvent.class).withThreshold(properties.getThreshold());
+        recording.start();
+        log.info("Started continuous flight recording, keeping at most {} and {}", properties.getMaxAge(), properties.getMaxSize());
+    }
+
+    /**
+     * Writes the events currently held by the recording to a file.
+     *
+     * @param file The file.
+     */
+    public void dump(Path file) throws IOException {
+        recording.dump(file);
+    }
+
+    @PreDestroy
+    public void close() {
+        recording.close();
+    }
+}
@@ -0,0 +1,53 @@
+package akros.vendingmachine.jfr;
+
+/**
+ * The {@code ProductService} call running on the current thread, shared by the events of its phases.
+ * The call is also kept as a request attribute, so the serialization of its response, which runs
+ * after the call has returned, is attributed to it.
+ */
+final class ProductCall {
+
+    static final String ATTRIBUTE = ProductCall.class.getName();
+
+    private static final ThreadLocal<ProductCall> CURRENT = new ThreadLocal<>();
+
+    final String method;
+    final String machineId;
+    int productId;
+    String outcome;
+    int status;
+    boolean inRepository;
+    /**
+     * The response phase, from the call returning its envelope to the serialization of the envelope.
+     */
+    ProductPhaseEvent response;
+
+    ProductCall(String method, String machineId, int productId) {
+        this.method = method;
+        this.machineId = machineId;
+        this.productId = productId;
+    }
+
+    static ProductCall current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a call the current call of the thread.
+     *
+     * @return The previous current call, to be given back to {@link #exit(ProductCall)}.
+     */
+    static ProductCall enter(ProductCall call) {
+        ProductCall previous = CURRENT.get();
+        CURRENT.set(call);
+        return previous;
+    }
+
+    static void exit(ProductCall previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package akros.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The time one {@code ProductService} call spent in one {@link Phase}: repository calls,
+ * mapping, validation, turning the returned envelope into the HTTP response or serializing it.
+ * <p>
+ * Phases are only recorded inside a product service call. While no recording enables the event,
+ * {@link #begin(Phase, String)} costs one check of a flag and allocates nothing.
+ */
+@Name("akros.vendingmachine.ProductPhase")
+@Label("Product Service Phase")
+@Category({"Vending Machine", "Product Service"})
+@Description("Time a product service call spent in one phase")
+@StackTrace(false)
+public class ProductPhaseEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(ProductPhaseEvent.class);
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Method")
+    String method;
+
+    @Label("Machine ID")
+    String machineId;
+
+    @Label("Product ID")
+    @Description("The ID of the product, 0 if the call is not about a single product")
+    int productId;
+
+    @Label("Outcome")
+    @Description("SUCCESS, or the simple name of the exception that ended the phase")
+    String outcome;
+
+    /**
+     * Starts a phase of the product service call running on the current thread.
+     *
+     * @param phase     The phase.
+     * @param operation The operation of the phase, e.g. the repository method.
+     * @return The started event, or null if the event is not recorded or no call is running.
+     */
+    public static ProductPhaseEvent begin(Phase phase, String operation) {
+        return TYPE.isEnabled() ? begin(phase, operation, ProductCall.current()) : null;
+    }
+
+    /**
+     * Tells whether a recording enables the event, so callers can skip allocating the work of a phase.
+     *
+     * @return true if the event is recorded.
+     */
+    public static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static ProductPhaseEvent begin(Phase phase, String operation, ProductCall call) {
+        if (call == null || !TYPE.isEnabled()) {
+            return null;
+        }
+        ProductPhaseEvent event = new ProductPhaseEvent();
+        event.phase = phase.label;
+        event.operation = operation;
+        event.method = call.method;
+        event.machineId = call.machineId;
+        event.productId = call.productId;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a successful phase.
+     *
+     * @param event The event returned by {@link #begin(Phase, String)}, may be null.
+     */
+    public static void end(ProductPhaseEvent event) {
+        end(event, null);
+    }
+
+    /**
+     * Ends a phase.
+     *
+     * @param event The event returned by {@link #begin(Phase, String)}, may be null.
+     * @param error The exception that ended the phase, null on success.
+     */
+    public static void end(ProductPhaseEvent event, Throwable error) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = error == null ? "SUCCESS" : error.getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs a phase.
+     *
+     * @param phase     The phase.
+     * @param operation The operation of the phase.
+     * @param supplier  The work of the phase.
+     * @return The result of the supplier.
+     */
+    public static <T> T record(Phase phase, String operation, Supplier<T> supplier) {
+        ProductPhaseEvent event = begin(phase, operation);
+        if (event == null) {
+            return supplier.get();
+        }
+        try {
+            T result = supplier.get();
+            end(event);
+            return result;
+        } catch (RuntimeException | Error e) {
+            end(event, e);
+            throw e;
+        }
+    }
+
+    public enum Phase {
+        REPOSITORY, MAPPING, VALIDATION, RESPONSE, SERIALIZATION;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,36 @@
+package akros.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One {@code ProductService} call, with the product ID and the outcome derived from the
+ * {@code ProductResponseDto} envelope. The {@link ProductPhaseEvent}s of the call on the same
+ * thread tell where its time went.
+ */
+@Name("akros.vendingmachine.ProductService")
+@Label("Product Service Call")
+@Category({"Vending Machine", "Product Service"})
+@Description("A call of the product service")
+@StackTrace(false)
+class ProductServiceEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Machine ID")
+    String machineId;
+
+    @Label("Product ID")
+    @Description("The ID of the product, 0 if the call is not about a single product")
+    int productId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,169 @@
+package akros.vendingmachine.jfr;
+
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import jdk.jfr.EventType;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.jfr.ProductPhaseEvent.Phase.MAPPING;
+import static akros.vendingmachine.jfr.ProductPhaseEvent.Phase.REPOSITORY;
+import static akros.vendingmachine.jfr.ProductPhaseEvent.Phase.RESPONSE;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Emits a {@link ProductServiceEvent} for every {@code ProductService} call and a
+ * {@link ProductPhaseEvent} for the repository, inventory store and mapper calls it makes. Nested
+ * repository calls, e.g. of the inventory store, count once, as part of the outermost one.
+ * The response phase of a call made by a request starts when the call returns its envelope and
+ * ends when {@link RecordingJackson2HttpMessageConverter} starts to serialize it.
+ * <p>
+ * While no recording enables the events, a call costs two checks of a flag.
+ */
+@Aspect
+@Component
+public class ProductServiceRecorder {
+
+    private static final EventType SERVICE = EventType.getEventType(ProductServiceEvent.class);
+    private static final EventType PHASE = EventType.getEventType(ProductPhaseEvent.class);
+
+    private final Map<Method, Arguments> arguments = new ConcurrentHashMap<>();
+
+    @Around("execution(* akros.vendingmachine.service.ProductService.*(..))")
+    public Object recordCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!SERVICE.isEnabled() && !PHASE.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Arguments positions = arguments.computeIfAbsent(signature.getMethod(), method -> Arguments.of(signature));
+        Object[] args = joinPoint.getArgs();
+        ProductCall call = new ProductCall(signature.getName(),
+                positions.machineId() < 0 ? null : (String) args[positions.machineId()],
+                positions.productId() < 0 || args[positions.productId()] == null ? 0 : (Integer) args[positions.productId()]);
+        ProductCall previous = ProductCall.enter(call);
+        ProductServiceEvent event = new ProductServiceEvent();
+        event.begin();
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            event.end();
+            ProductCall.exit(previous);
+            complete(call, result, error, signature.getReturnType());
+            RequestAttributes request = RequestContextHolder.getRequestAttributes();
+            if (request != null) {
+                call.response = error == null ? ProductPhaseEvent.begin(RESPONSE, signature.getReturnType().getSimpleName(), call) : null;
+                request.setAttribute(ProductCall.ATTRIBUTE, call, RequestAttributes.SCOPE_REQUEST);
+            }
+            if (event.shouldCommit()) {
+                event.method = call.method;
+                event.machineId = call.machineId;
+                event.productId = call.productId;
+                event.outcome = call.outcome;
+                event.status = call.status;
+                event.commit();
+            }
+        }
+    }
+
+    @Around("target(org.springframework.data.repository.Repository) || target(akros.vendingmachine.service.InventoryStore)")
+    public Object recordRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        ProductCall call = PHASE.isEnabled() ? ProductCall.current() : null;
+        if (call == null || call.inRepository) {
+            return joinPoint.proceed();
+        }
+        call.inRepository = true;
+        ProductPhaseEvent event = ProductPhaseEvent.begin(REPOSITORY, joinPoint.getSignature().toShortString(), call);
+        try {
+            Object result = joinPoint.proceed();
+            ProductPhaseEvent.end(event);
+            return result;
+        } catch (Throwable e) {
+            ProductPhaseEvent.end(event, e);
+            throw e;
+        } finally {
+            call.inRepository = false;
+        }
+    }
+
+    @Around("target(akros.vendingmachine.dto.mapper.ProductMapper)")
+    public Object recordMapping(ProceedingJoinPoint joinPoint) throws Throwable {
+        ProductCall call = PHASE.isEnabled() ? ProductCall.current() : null;
+        if (call == null) {
+            return joinPoint.proceed();
+        }
+        ProductPhaseEvent event = ProductPhaseEvent.begin(MAPPING, joinPoint.getSignature().toShortString(), call);
+        try {
+            Object result = joinPoint.proceed();
+            ProductPhaseEvent.end(event);
+            return result;
+        } catch (Throwable e) {
+            ProductPhaseEvent.end(event, e);
+            throw e;
+        }
+    }
+
+    private static void complete(ProductCall call, Object result, Throwable error, Class<?> returnType) {
+        HttpStatus status;
+        if (error != null) {
+            status = INTERNAL_SERVER_ERROR;
+        } else if (result instanceof ProductResponseDto response && response.getStatus() != null) {
+            status = response.getStatus();
+            // a created product gets its ID in the call
+            if (call.productId == 0 && response.getData() != null && response.getData().get(PRODUCT_KEY) instanceof ProductDTO product
+                    && product.getProductId() != null) {
+                call.productId = product.getProductId();
+            }
+        } else {
+            // updateProduct returns no envelope when the product does not exist
+            status = result == null && returnType != void.class ? NOT_FOUND : OK;
+        }
+        call.status = status.value();
+        call.outcome = error != null ? error.getClass().getSimpleName() : switch (status.series()) {
+            case INFORMATIONAL -> "INFORMATIONAL";
+            case SUCCESSFUL -> "SUCCESS";
+            case REDIRECTION -> "REDIRECTION";
+            case CLIENT_ERROR -> "CLIENT_ERROR";
+            case SERVER_ERROR -> "SERVER_ERROR";
+        };
+    }
+
+    /**
+     * The positions of the machine ID and product ID parameters of a service method, -1 if absent.
+     */
+    private record Arguments(int machineId, int productId) {
+
+        static Arguments of(MethodSignature signature) {
+            String[] names = signature.getParameterNames();
+            Class<?>[] types = signature.getParameterTypes();
+            int machineId = -1;
+            int productId = -1;
+            for (int i = 0; names != null && i < names.length; i++) {
+                if (names[i].equals("machineId") && types[i] == String.class) {
+                    machineId = i;
+                } else if (names[i].equals("id") && types[i] == Integer.class) {
+                    productId = i;
+                }
+            }
+            return new Arguments(machineId, productId);
+        }
+    }
+}
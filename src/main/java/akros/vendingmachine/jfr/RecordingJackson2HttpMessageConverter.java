@@ -0,0 +1,47 @@
+package akros.vendingmachine.jfr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import static akros.vendingmachine.jfr.ProductPhaseEvent.Phase.SERIALIZATION;
+
+/**
+ * The JSON converter of the application, recording the serialization of the response of a
+ * {@code ProductService} call as its {@link ProductPhaseEvent.Phase#SERIALIZATION} phase, which
+ * ends the {@link ProductPhaseEvent.Phase#RESPONSE} phase of the call.
+ */
+public class RecordingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public RecordingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+        ProductCall call = ProductPhaseEvent.enabled() ? call() : null;
+        if (call != null && call.response != null) {
+            ProductPhaseEvent.end(call.response);
+            call.response = null;
+        }
+        ProductPhaseEvent event = call == null ? null : ProductPhaseEvent.begin(SERIALIZATION, object.getClass().getSimpleName(), call);
+        try {
+            super.writeInternal(object, type, outputMessage);
+            ProductPhaseEvent.end(event);
+        } catch (IOException | RuntimeException e) {
+            ProductPhaseEvent.end(event, e);
+            throw e;
+        }
+    }
+
+    private static ProductCall call() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request == null ? null : (ProductCall) request.getAttribute(ProductCall.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+}
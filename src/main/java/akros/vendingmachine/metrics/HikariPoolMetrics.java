@@ -0,0 +1,53 @@
+package akros.vendingmachine.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Publishes the saturation of the Hikari pool, active connections divided by the maximum pool size.
+ * Spring Boot already publishes the raw {@code hikaricp.connections.*} gauges; the ratio makes
+ * pool exhaustion alertable without knowing the configured size.
+ */
+@Component
+@Profile("!edge")
+@RequiredArgsConstructor
+public class HikariPoolMetrics implements MeterBinder {
+
+    private final DataSource dataSource;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        HikariDataSource hikariDataSource = unwrap();
+        if (hikariDataSource == null) {
+            return;
+        }
+        Gauge.builder("hikaricp.connections.saturation", hikariDataSource, HikariPoolMetrics::saturation)
+                .description("Active connections divided by the maximum pool size")
+                .tag("pool", String.valueOf(hikariDataSource.getPoolName()))
+                .register(registry);
+    }
+
+    private HikariDataSource unwrap() {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static double saturation(HikariDataSource dataSource) {
+        var pool = dataSource.getHikariPoolMXBean();
+        if (pool == null || dataSource.getMaximumPoolSize() == 0) {
+            return 0;
+        }
+        return (double) pool.getActiveConnections() / dataSource.getMaximumPoolSize();
+    }
+}
@@ -0,0 +1,33 @@
+package akros.vendingmachine.metrics;
+
+import akros.vendingmachine.service.InventoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the current quantity of every product name of every machine as a gauge.
+ * Quantities are refreshed periodically with one query instead of on every scrape.
+ */
+@Component
+public class InventoryMetrics {
+
+    private final InventoryStore inventoryStore;
+    private final MultiGauge quantities;
+
+    public InventoryMetrics(InventoryStore inventoryStore, MeterRegistry meterRegistry) {
+        this.inventoryStore = inventoryStore;
+        this.quantities = MultiGauge.builder("product.inventory.quantity")
+                .description("Units in stock per machine and product name")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.inventory-refresh-interval:30s}", initialDelayString = "${app.metrics.inventory-refresh-interval:30s}")
+    public void refresh() {
+        quantities.register(inventoryStore.findAll().stream()
+                .map(inventar -> MultiGauge.Row.of(Tags.of("machine", inventar.getMachineId(), "product", inventar.getProductName()), inventar.getQuantity()))
+                .toList(), true);
+    }
+}
@@ -0,0 +1,107 @@
+package akros.vendingmachine.metrics;
+
+import akros.vendingmachine.dto.ProductBatchItemDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+import static akros.vendingmachine.AppConstant.PRODUCTS_KEY;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Records a timer for every {@code ProductService} call, tagged by method, outcome and the HTTP
+ * status carried by the response, plus counters for inventory cap rejections, not-found results
+ * and inventory decrements of direct and confirmed vends. The status is derived from the {@link ProductResponseDto} envelope,
+ * so the service itself stays free of metrics code.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ProductServiceMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(* akros.vendingmachine.service.ProductService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            HttpStatus status = statusOf(result, error, ((MethodSignature) joinPoint.getSignature()).getReturnType());
+            sample.stop(Timer.builder("product.service")
+                    .description("Duration of product service calls")
+                    .tag("method", method)
+                    .tag("outcome", outcomeOf(status))
+                    .tag("status", String.valueOf(status.value()))
+                    .register(meterRegistry));
+            countOutcome(method, status, result);
+        }
+    }
+
+    private void countOutcome(String method, HttpStatus status, Object result) {
+        if (status == NOT_FOUND) {
+            counter("product.not.found", "Product lookups that found no product", method).increment();
+        }
+        if ((method.equals("deleteProduct") || method.equals("confirmReservation")) && status == OK) {
+            counter("product.inventory.decrements", "Inventory units removed by deleted products", method).increment();
+        }
+        if (method.equals("createProduct") && status == BAD_REQUEST) {
+            counter("product.inventory.cap.rejections", "Products rejected by the inventory quantity cap", method).increment();
+        }
+        if (method.equals("createProducts") && result instanceof ProductResponseDto response
+                && response.getData() != null && response.getData().get(PRODUCTS_KEY) instanceof Collection<?> items) {
+            long rejected = items.stream()
+                    .filter(item -> item instanceof ProductBatchItemDTO batchItem && batchItem.getRejection() == ProductBatchItemDTO.Rejection.INVENTORY_CAP)
+                    .count();
+            counter("product.inventory.cap.rejections", "Products rejected by the inventory quantity cap", method).increment(rejected);
+        }
+    }
+
+    private Counter counter(String name, String description, String method) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+
+    private static HttpStatus statusOf(Object result, Throwable error, Class<?> returnType) {
+        if (error != null) {
+            return INTERNAL_SERVER_ERROR;
+        }
+        if (result instanceof ProductResponseDto response && response.getStatus() != null) {
+            return response.getStatus();
+        }
+        // updateProduct returns no envelope when the product does not exist
+        return result == null && returnType != void.class ? NOT_FOUND : OK;
+    }
+
+    private static String outcomeOf(HttpStatus status) {
+        return switch (status.series()) {
+            case INFORMATIONAL -> "INFORMATIONAL";
+            case SUCCESSFUL -> "SUCCESS";
+            case REDIRECTION -> "REDIRECTION";
+            case CLIENT_ERROR -> "CLIENT_ERROR";
+            case SERVER_ERROR -> "SERVER_ERROR";
+        };
+    }
+}
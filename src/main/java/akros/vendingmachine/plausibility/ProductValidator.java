@@ -1,15 +1,23 @@
 package akros.vendingmachine.plausibility;
 
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.jfr.ProductPhaseEvent;
 
 import java.util.function.Function;
 
+import static akros.vendingmachine.jfr.ProductPhaseEvent.Phase.VALIDATION;
 import static akros.vendingmachine.plausibility.ProductValidation.PRODUCT_NOT_FOUND_BY_ID;
 import static akros.vendingmachine.plausibility.ProductValidation.VALID;
 
 public interface ProductValidator extends Function<ProductDTO, ProductValidation> {
 
     static ProductValidator findProductById(Integer productId) {
-        return productDTO -> productDTO!=null && productDTO.getProductId().equals(productId) ? VALID : PRODUCT_NOT_FOUND_BY_ID;
+        return productDTO -> ProductPhaseEvent.enabled()
+                ? ProductPhaseEvent.record(VALIDATION, "findProductById", () -> isProduct(productDTO, productId))
+                : isProduct(productDTO, productId);
+    }
+
+    private static ProductValidation isProduct(ProductDTO productDTO, Integer productId) {
+        return productDTO!=null && productDTO.getProductId().equals(productId) ? VALID : PRODUCT_NOT_FOUND_BY_ID;
     }
 }
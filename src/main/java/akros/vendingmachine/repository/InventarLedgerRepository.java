@@ -0,0 +1,205 @@
+package akros.vendingmachine.repository;
+
+import akros.vendingmachine.domain.InventarLedger;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Append-only inventory ledger. A product name of a machine has one stripe per unit of the quantity cap;
+ * a stripe accepts a unit while its booked units are below its share of the capacity left
+ * by the compacted quantity, so the sum over all stripes never exceeds the cap.
+ * Units are only booked on a stripe while holding its transaction-scoped advisory lock,
+ * keyed by the machine and product name.
+ */
+@Repository
+public interface InventarLedgerRepository extends JpaRepository<InventarLedger, Long> {
+
+    String STRIPE_CAPACITY = """
+            SELECT s.stripe,
+                   CASE WHEN s.stripe < :maxQuantity - i.quantity THEN 1 ELSE 0 END - coalesce(l.units, 0) AS capacity
+            FROM inventar i
+            CROSS JOIN generate_series(0, :maxQuantity - 1) AS s(stripe)
+            LEFT JOIN (SELECT stripe, sum(delta) AS units
+                       FROM inventar_ledger
+                       WHERE machine_id = :machineId AND product_name = :productName
+                       GROUP BY stripe) l ON l.stripe = s.stripe
+            WHERE i.machine_id = :machineId AND i.product_name = :productName
+            """;
+
+    String INVENTAR_VIEW = """
+            SELECT i.id AS id, i.machine_id AS "machineId", i.product_name AS "productName",
+                   cast(i.quantity + coalesce((SELECT sum(l.delta)
+                                               FROM inventar_ledger l
+                                               WHERE l.machine_id = i.machine_id
+                                                 AND l.product_name = i.product_name), 0) AS integer) AS quantity
+            FROM inventar i
+            """;
+
+    String STRIPE_LOCK_KEY = "hashtext(:machineId || '/' || :productName)";
+
+    /**
+     * Locks one stripe of the product that had capacity left, trying the stripes in random
+     * order without waiting. The capacity has to be checked again once the lock is held.
+     * {@code OFFSET 0} keeps the candidates from being flattened into the outer query, which
+     * would try to lock every stripe, with or without capacity, before the limit applies.
+     *
+     * @return the locked stripe, or empty if no stripe with capacity could be locked.
+     */
+    @Query(value = "SELECT candidate.stripe FROM (" + STRIPE_CAPACITY + """
+                AND CASE WHEN s.stripe < :maxQuantity - i.quantity THEN 1 ELSE 0 END - coalesce(l.units, 0) > 0
+            ORDER BY random()
+            OFFSET 0) candidate
+            WHERE pg_try_advisory_xact_lock(""" + STRIPE_LOCK_KEY + """
+            , candidate.stripe)
+            LIMIT 1
+            """, nativeQuery = true)
+    Optional<Integer> tryLockStripe(@Param("machineId") String machineId, @Param("productName") String productName,
+                                    @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Marks the savepoint before a single stripe is locked, so the lock can be released again by
+     * {@link #rollbackStripeAttempt()} if the stripe turns out to be full.
+     */
+    @Modifying
+    @Query(value = "SAVEPOINT stripe_attempt", nativeQuery = true)
+    void beginStripeAttempt();
+
+    /**
+     * Keeps the stripe lock and the unit booked since {@link #beginStripeAttempt()}.
+     */
+    @Modifying
+    @Query(value = "RELEASE SAVEPOINT stripe_attempt", nativeQuery = true)
+    void releaseStripeAttempt();
+
+    /**
+     * Releases the stripe lock taken since {@link #beginStripeAttempt()}; rolling back to a
+     * savepoint also releases the transaction-scoped advisory locks taken after it.
+     */
+    @Modifying
+    @Query(value = "ROLLBACK TO SAVEPOINT stripe_attempt", nativeQuery = true)
+    void rollbackStripeAttempt();
+
+    /**
+     * Locks all stripes of the product in ascending order, waiting for concurrent writers.
+     *
+     * @return the number of locked stripes.
+     */
+    @Query(value = "SELECT count(pg_advisory_xact_lock(" + STRIPE_LOCK_KEY + """
+            , s))
+            FROM generate_series(0, :maxQuantity - 1) AS s
+            """, nativeQuery = true)
+    long lockStripes(@Param("machineId") String machineId, @Param("productName") String productName,
+                     @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Locks all stripes of the product if none is held by another transaction.
+     * Stripes locked before a failure stay locked until the transaction ends.
+     *
+     * @return true if all stripes are locked.
+     */
+    @Query(value = "SELECT bool_and(pg_try_advisory_xact_lock(" + STRIPE_LOCK_KEY + """
+            , s))
+            FROM generate_series(0, :maxQuantity - 1) AS s
+            """, nativeQuery = true)
+    boolean tryLockStripes(@Param("machineId") String machineId, @Param("productName") String productName,
+                           @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Books one unit on a locked stripe if the stripe still has capacity.
+     *
+     * @return the number of booked units, zero or one.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO inventar_ledger (machine_id, product_name, stripe, delta, created_at) "
+            + "SELECT :machineId, :productName, free.stripe, 1, now() FROM (" + STRIPE_CAPACITY + """
+                AND s.stripe = :stripe) free
+            WHERE free.capacity > 0
+            """, nativeQuery = true)
+    int bookUnit(@Param("machineId") String machineId, @Param("productName") String productName,
+                 @Param("stripe") int stripe, @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Books up to the given number of units, filling the stripes in ascending order.
+     * All stripes of the product must be locked.
+     *
+     * @return the number of booked units.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO inventar_ledger (machine_id, product_name, stripe, delta, created_at) "
+            + "SELECT :machineId, :productName, free.stripe, 1, now() FROM (" + STRIPE_CAPACITY + """
+            ) free
+            CROSS JOIN generate_series(1, free.capacity) AS unit
+            ORDER BY free.stripe
+            LIMIT :units
+            """, nativeQuery = true)
+    int bookUnits(@Param("machineId") String machineId, @Param("productName") String productName,
+                  @Param("units") int units, @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Books the removal of one unit on a random stripe, never going below zero.
+     * Removals only add capacity, so they need no stripe lock.
+     *
+     * @return the number of booked removals, zero or one.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO inventar_ledger (machine_id, product_name, stripe, delta, created_at) "
+            + "SELECT current_inventar.\"machineId\", current_inventar.\"productName\", "
+            + "cast(floor(random() * :maxQuantity) AS integer), -1, now() FROM ("
+            + INVENTAR_VIEW + """
+                WHERE i.machine_id = :machineId AND i.product_name = :productName) current_inventar
+            WHERE current_inventar.quantity > 0
+            """, nativeQuery = true)
+    int bookRemoval(@Param("machineId") String machineId, @Param("productName") String productName,
+                    @Param("maxQuantity") int maxQuantity);
+
+    @Query(value = INVENTAR_VIEW + "WHERE i.machine_id = :machineId AND i.product_name = :productName", nativeQuery = true)
+    Optional<InventarView> findView(@Param("machineId") String machineId, @Param("productName") String productName);
+
+    @Query(value = INVENTAR_VIEW, nativeQuery = true)
+    List<InventarView> findAllViews();
+
+    @Query(value = """
+            SELECT DISTINCT machine_id AS "machineId", product_name AS "productName"
+            FROM inventar_ledger
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<LedgerKey> findProductNamesWithDeltas(@Param("limit") int limit);
+
+    /**
+     * Folds the committed deltas of the product into {@code Inventar.quantity} and removes them,
+     * in a single statement. Deltas committed after the statement started are left for the next run.
+     *
+     * @return the number of updated inventories.
+     */
+    @Modifying
+    @Query(value = """
+            WITH folded AS (
+                DELETE FROM inventar_ledger WHERE machine_id = :machineId AND product_name = :productName RETURNING delta
+            )
+            UPDATE inventar SET quantity = quantity + (SELECT coalesce(sum(delta), 0) FROM folded)
+            WHERE machine_id = :machineId AND product_name = :productName
+            """, nativeQuery = true)
+    int compact(@Param("machineId") String machineId, @Param("productName") String productName);
+
+    /**
+     * Inventory with its current quantity, the compacted quantity plus the pending deltas.
+     */
+    interface InventarView extends InventarRepository.InventarQuantity {
+        String getMachineId();
+        String getProductName();
+    }
+
+    /**
+     * Machine and product name with deltas waiting to be compacted.
+     */
+    interface LedgerKey {
+        String getMachineId();
+        String getProductName();
+    }
+}
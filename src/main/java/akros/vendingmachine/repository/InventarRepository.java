@@ -1,12 +1,107 @@
 package akros.vendingmachine.repository;
 
 import akros.vendingmachine.domain.Inventar;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Inventories of all machines, one per machine and product name.
+ * Every query is scoped to one machine, so Postgres only reads the {@code inventar} partition of that machine.
+ */
 @Repository
 public interface InventarRepository extends JpaRepository<Inventar, String> {
 
-    Inventar findByProductName(String productName);
+    Inventar findByMachineIdAndProductName(String machineId, String productName);
+
+    /**
+     * Reads the inventory of a product name as a new, unmanaged instance, so the quantity is the
+     * committed one even if the persistence context already holds an older copy of the entity.
+     *
+     * @return Inventar if found, or null if not found.
+     */
+    @Query("select new akros.vendingmachine.domain.Inventar(i.id, i.machineId, i.productName, i.quantity) "
+            + "from Inventar i where i.machineId = :machineId and i.productName = :productName")
+    Inventar findCurrent(@Param("machineId") String machineId, @Param("productName") String productName);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Inventar> findByMachineIdAndProductNameInOrderByProductName(String machineId, Collection<String> productNames);
+
+    /**
+     * Creates an empty inventory in the machine for each of the given product names that has none yet.
+     * The names should be sorted, so concurrent callers lock rows in the same order.
+     *
+     * @return the number of created inventories.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO inventar (machine_id, id, product_name, quantity)
+            SELECT :machineId, cast(gen_random_uuid() AS text), product_name, 0
+            FROM unnest(cast(:productNames AS text[])) AS product_name
+            ON CONFLICT (machine_id, product_name) DO NOTHING
+            """, nativeQuery = true)
+    int insertMissing(@Param("machineId") String machineId, @Param("productNames") String[] productNames);
+
+    /**
+     * Adds one unit to the inventory of the given product in a single statement.
+     * The inventory row is created with a quantity of one for the first unit, and
+     * incremented only while it is below the given maximum otherwise.
+     *
+     * @return the inventory ID and the new quantity, or empty if the maximum is reached.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO inventar (machine_id, id, product_name, quantity) VALUES (:machineId, :id, :productName, 1)
+            ON CONFLICT (machine_id, product_name) DO UPDATE SET quantity = inventar.quantity + 1
+            WHERE inventar.quantity < :maxQuantity
+            RETURNING id, quantity
+            """, nativeQuery = true)
+    Optional<InventarQuantity> incrementQuantity(@Param("id") String id,
+                                                 @Param("machineId") String machineId,
+                                                 @Param("productName") String productName,
+                                                 @Param("maxQuantity") int maxQuantity);
+
+    /**
+     * Removes one unit from the inventory of the given product, never going below zero.
+     *
+     * @return the new quantity, or empty if the inventory was empty or does not exist.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE inventar SET quantity = quantity - 1
+            WHERE machine_id = :machineId AND product_name = :productName AND quantity > 0
+            RETURNING quantity
+            """, nativeQuery = true)
+    Optional<Integer> decrementQuantity(@Param("machineId") String machineId, @Param("productName") String productName);
+
+    /**
+     * Removes the given number of units from the inventories of several product names
+     * of a machine in a single statement, never going below zero.
+     *
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE inventar i SET quantity = greatest(i.quantity - d.units, 0)
+            FROM unnest(cast(:productNames AS text[]), cast(:units AS integer[])) AS d(product_name, units)
+            WHERE i.machine_id = :machineId AND i.product_name = d.product_name
+            """, nativeQuery = true)
+    int decrementQuantities(@Param("machineId") String machineId, @Param("productNames") String[] productNames,
+                            @Param("units") Integer[] units);
 
+    interface InventarQuantity {
+        String getId();
+        Integer getQuantity();
+    }
 }
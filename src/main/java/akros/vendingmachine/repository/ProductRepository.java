@@ -2,9 +2,124 @@ package akros.vendingmachine.repository;
 
 import akros.vendingmachine.domain.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Products of all machines. Every query is scoped to one machine, so Postgres only reads
+ * the {@code product} and {@code inventar} partitions of that machine.
+ */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, ProductRowRepository {
+
+    String NOT_RESERVED = "(reserved_until IS NULL OR reserved_until <= now())";
+
+    /**
+     * Reads the IDs of all machines that have at least one product.
+     *
+     * @return List of machine IDs in ascending order.
+     */
+    @Query("select distinct p.machineId from Product p order by p.machineId")
+    List<String> findMachineIds();
+
+    /**
+     * Updates the name and price of a product with a single statement.
+     *
+     * @return the number of updated rows, zero if the product does not exist.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.productName = :productName, p.productPrice = :productPrice "
+            + "where p.machineId = :machineId and p.productId = :id")
+    int updateProduct(@Param("machineId") String machineId, @Param("id") Integer id,
+                      @Param("productName") String productName, @Param("productPrice") Integer productPrice);
+
+    /**
+     * Deletes a product with a single statement, unless it is held by a reservation.
+     *
+     * @return the number of deleted rows, zero if the product was already gone or is reserved.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM product WHERE machine_id = :machineId AND product_id = :id AND " + NOT_RESERVED, nativeQuery = true)
+    int deleteByProductId(@Param("machineId") String machineId, @Param("id") Integer id);
+
+    /**
+     * Deletes several products of a machine with a single statement, leaving out reserved products.
+     *
+     * @return the deleted products; products that were already gone or are reserved are missing.
+     */
+    @Transactional
+    @Query(value = "DELETE FROM product WHERE machine_id = :machineId AND product_id = ANY(cast(:ids AS integer[])) AND " + NOT_RESERVED
+            + " RETURNING product_id AS \"productId\", product_name AS \"productName\"", nativeQuery = true)
+    List<DeletedProduct> deleteByProductIds(@Param("machineId") String machineId, @Param("ids") Integer[] ids);
+
+    /**
+     * Checks whether a product is held by an unexpired reservation.
+     */
+    @Query(value = "SELECT count(*) > 0 FROM product WHERE machine_id = :machineId AND product_id = :id AND NOT " + NOT_RESERVED, nativeQuery = true)
+    boolean isReserved(@Param("machineId") String machineId, @Param("id") Integer id);
+
+    /**
+     * Holds a product for a reservation, unless it is already held by an unexpired one.
+     * Concurrent reservations of the same product are serialized by its row lock, so only one wins.
+     *
+     * @param ttlMillis The time to live of the hold.
+     * @return the end of the hold in epoch milliseconds, or empty if the product does not exist or is reserved.
+     */
+    @Transactional
+    @Query(value = "UPDATE product SET reservation_id = :reservationId, reserved_until = now() + :ttlMillis * interval '1 millisecond' "
+            + "WHERE machine_id = :machineId AND product_id = :id AND " + NOT_RESERVED
+            + " RETURNING cast(extract(epoch FROM reserved_until) * 1000 AS bigint)", nativeQuery = true)
+    Optional<Long> reserve(@Param("machineId") String machineId, @Param("id") Integer id,
+                           @Param("reservationId") UUID reservationId, @Param("ttlMillis") long ttlMillis);
+
+    /**
+     * Deletes the product held by an unexpired reservation, which completes the vend.
+     *
+     * @return the deleted product, or empty if the reservation does not exist or has expired.
+     */
+    @Transactional
+    @Query(value = """
+            DELETE FROM product WHERE machine_id = :machineId AND reservation_id = :reservationId AND reserved_until > now()
+            RETURNING product_id AS "productId", product_name AS "productName"
+            """, nativeQuery = true)
+    Optional<DeletedProduct> deleteReserved(@Param("machineId") String machineId, @Param("reservationId") UUID reservationId);
+
+    /**
+     * Releases the hold of a reservation, expired or not.
+     *
+     * @return the number of released products, zero if the reservation does not exist anymore.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE product SET reservation_id = NULL, reserved_until = NULL "
+            + "WHERE machine_id = :machineId AND reservation_id = :reservationId", nativeQuery = true)
+    int release(@Param("machineId") String machineId, @Param("reservationId") UUID reservationId);
+
+    /**
+     * Releases the holds of several expired reservations of a machine with a single statement.
+     * Holds that were extended by a new reservation in the meantime have another reservation ID and are kept.
+     *
+     * @return the number of released products.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE product SET reservation_id = NULL, reserved_until = NULL
+            WHERE machine_id = :machineId AND reservation_id = ANY(cast(:reservationIds AS uuid[])) AND reserved_until <= now()
+            """, nativeQuery = true)
+    int releaseExpired(@Param("machineId") String machineId, @Param("reservationIds") String[] reservationIds);
+
+    interface DeletedProduct {
+        Integer getProductId();
+        String getProductName();
+    }
 }
@@ -0,0 +1,63 @@
+package akros.vendingmachine.repository;
+
+import akros.vendingmachine.dto.ProductRow;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reads products together with their inventory in a single statement.
+ * The quantity of a row includes the pending inventory ledger deltas in ledger inventory mode only.
+ */
+public interface ProductRowRepository {
+
+    /**
+     * Reads all products of a machine together with their inventory in a single statement.
+     *
+     * @param machineId The ID of the machine.
+     * @return List of ProductRow ordered by product ID.
+     */
+    List<ProductRow> findAllRows(String machineId);
+
+    /**
+     * Reads the products of a machine following the given ID together with their inventory in a single statement.
+     *
+     * @param machineId The ID of the machine.
+     * @param productId The ID after which rows are read.
+     * @param limit     The maximum number of rows to read.
+     * @return List of ProductRow ordered by product ID.
+     */
+    List<ProductRow> findRowsAfter(String machineId, Integer productId, Limit limit);
+
+    /**
+     * Reads the first products of all machines, used to warm up caches.
+     *
+     * @param limit The maximum number of rows to read.
+     * @return List of ProductRow ordered by machine and product ID.
+     */
+    List<ProductRow> findRows(Limit limit);
+
+    /**
+     * Reads one product of a machine together with its inventory in a single statement.
+     *
+     * @param machineId The ID of the machine.
+     * @param productId The ID of the product.
+     * @return ProductRow if found, or empty otherwise.
+     */
+    Optional<ProductRow> findRowById(String machineId, Integer productId);
+
+    /**
+     * Reads several products of a machine together with their inventory in a single statement.
+     * IN lists are padded to the next power of two, so the number of distinct statements stays small.
+     *
+     * @param machineId The ID of the machine.
+     * @param ids       The IDs of the products.
+     * @return List of ProductRow in no particular order; IDs not found in the machine are missing.
+     */
+    List<ProductRow> findRowsByIds(String machineId, Collection<Integer> ids);
+
+    Stream<ProductRow> streamAllRows(String machineId);
+}
@@ -0,0 +1,92 @@
+package akros.vendingmachine.repository;
+
+import akros.vendingmachine.dto.ProductRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static akros.vendingmachine.AppConstant.STREAM_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Builds the row queries of {@link ProductRowRepository} once at startup. The correlated sum over
+ * {@code inventar_ledger} is only selected in ledger inventory mode; in row mode the ledger stays
+ * empty, so the plain {@code inventar.quantity} is read.
+ */
+public class ProductRowRepositoryImpl implements ProductRowRepository {
+
+    private static final String SELECT_ROWS = "select new akros.vendingmachine.dto.ProductRow("
+            + "p.productId, p.machineId, p.productName, p.productPrice, i.id, i.productName, %s) "
+            + "from Product p left join p.inventar i on i.machineId = p.machineId ";
+    private static final String QUANTITY = "i.quantity";
+    private static final String LEDGER_QUANTITY = "cast(i.quantity + coalesce((select sum(l.delta) from InventarLedger l "
+            + "where l.machineId = i.machineId and l.productName = i.productName), 0) as Integer)";
+
+    private final EntityManager entityManager;
+    private final String selectRows;
+
+    public ProductRowRepositoryImpl(EntityManager entityManager, @Value("${app.inventory.mode:row}") String inventoryMode) {
+        this.entityManager = entityManager;
+        this.selectRows = SELECT_ROWS.formatted("ledger".equals(inventoryMode) ? LEDGER_QUANTITY : QUANTITY);
+    }
+
+    @Override
+    public List<ProductRow> findAllRows(String machineId) {
+        return query("where p.machineId = :machineId order by p.productId")
+                .setParameter("machineId", machineId)
+                .getResultList();
+    }
+
+    @Override
+    public List<ProductRow> findRowsAfter(String machineId, Integer productId, Limit limit) {
+        return limit(query("where p.machineId = :machineId and p.productId > :productId order by p.productId"), limit)
+                .setParameter("machineId", machineId)
+                .setParameter("productId", productId)
+                .getResultList();
+    }
+
+    @Override
+    public List<ProductRow> findRows(Limit limit) {
+        return limit(query("order by p.machineId, p.productId"), limit).getResultList();
+    }
+
+    @Override
+    public Optional<ProductRow> findRowById(String machineId, Integer productId) {
+        return query("where p.machineId = :machineId and p.productId = :productId")
+                .setParameter("machineId", machineId)
+                .setParameter("productId", productId)
+                .getResultList()
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<ProductRow> findRowsByIds(String machineId, Collection<Integer> ids) {
+        return query("where p.machineId = :machineId and p.productId in :ids")
+                .setParameter("machineId", machineId)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<ProductRow> streamAllRows(String machineId) {
+        return query("where p.machineId = :machineId order by p.productId")
+                .setParameter("machineId", machineId)
+                .setHint(HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+    }
+
+    private TypedQuery<ProductRow> query(String condition) {
+        return entityManager.createQuery(selectRows + condition, ProductRow.class);
+    }
+
+    private static TypedQuery<ProductRow> limit(TypedQuery<ProductRow> query, Limit limit) {
+        return limit.isLimited() ? query.setMaxResults(limit.max()) : query;
+    }
+}
@@ -0,0 +1,114 @@
+package akros.vendingmachine.reservation;
+
+import akros.vendingmachine.config.ReservationProperties;
+import akros.vendingmachine.repository.ProductRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Returns the units of expired reservations to stock.
+ * <p>
+ * Every reservation made on this node is put on a {@link TimingWheel}, so hundreds of thousands
+ * of open reservations cost one small entry each, neither a scheduled task nor a database poll.
+ * The reservations expiring on a tick are released with one statement per machine. Confirmed
+ * and released reservations are taken off the wheel.
+ * <p>
+ * The wheel only clears holds early: a hold past its {@code reserved_until} already counts as
+ * released everywhere, so the reservations of a node that stops are not lost, only cleared later
+ * by the next reservation of the same product.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+public class ReservationExpirer implements MeterBinder {
+
+    private final ProductRepository productRepository;
+    private final ReservationProperties properties;
+    private final TimingWheel<Reservation> timingWheel;
+    private final Map<UUID, TimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final LongAdder expired = new LongAdder();
+
+    public ReservationExpirer(ProductRepository productRepository, ReservationProperties properties) {
+        this.productRepository = productRepository;
+        this.properties = properties;
+        this.timingWheel = new TimingWheel<>(properties.getTick(), properties.getWheelSize(), this::expire, "reservation-expirer");
+    }
+
+    /**
+     * @return The time to live of new reservations.
+     */
+    public Duration ttl() {
+        return properties.getTtl();
+    }
+
+    /**
+     * Expires a reservation after the time to live of new reservations.
+     *
+     * @param machineId     The ID of the machine.
+     * @param reservationId The ID of the reservation.
+     */
+    public void schedule(String machineId, UUID reservationId) {
+        timeouts.put(reservationId, timingWheel.schedule(new Reservation(machineId, reservationId), properties.getTtl()));
+    }
+
+    /**
+     * Takes a confirmed or released reservation off the wheel. Reservations of other nodes are ignored.
+     *
+     * @param reservationId The ID of the reservation.
+     */
+    public void cancel(UUID reservationId) {
+        TimingWheel.Timeout timeout = timeouts.remove(reservationId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        timingWheel.close();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.reservations.open", timingWheel, TimingWheel::pending)
+                .description("Reservations of this node waiting to expire")
+                .register(registry);
+        FunctionCounter.builder("product.reservations.expired", expired, LongAdder::sum)
+                .description("Reservations whose unit went back to stock because they were not confirmed in time")
+                .register(registry);
+    }
+
+    private void expire(List<Reservation> reservations) {
+        reservations.forEach(reservation -> timeouts.remove(reservation.reservationId()));
+        Map<String, List<Reservation>> byMachine = reservations.stream().collect(Collectors.groupingBy(Reservation::machineId));
+        byMachine.forEach((machineId, machineReservations) -> {
+            try {
+                int released = productRepository.releaseExpired(machineId,
+                        machineReservations.stream().map(reservation -> reservation.reservationId().toString()).toArray(String[]::new));
+                expired.add(released);
+            } catch (RuntimeException e) {
+                // the holds have expired anyway, they are cleared by the next reservation of their product
+                log.warn("Failed to release {} expired reservations of machine {}", machineReservations.size(), machineId, e);
+            }
+        });
+    }
+
+    private record Reservation(String machineId, UUID reservationId) {
+    }
+}
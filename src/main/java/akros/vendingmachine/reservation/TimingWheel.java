@@ -0,0 +1,239 @@
+package akros.vendingmachine.reservation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick, each holding a linked list of timeouts.
+ * Scheduling and cancelling a timeout are O(1), and a tick only visits the timeouts of one bucket,
+ * so the cost does not grow with the number of pending timeouts the way a priority queue does.
+ * A timeout further away than one revolution of the wheel waits for its remaining rounds.
+ * <p>
+ * All buckets are owned by a single worker thread. Other threads hand new and cancelled timeouts
+ * over through lock-free queues, and the items expiring on a tick are passed to the callback
+ * in one list. Timeouts expire on the first tick after their deadline, never before.
+ *
+ * @param <T> The type of the scheduled items.
+ */
+@Slf4j
+final class TimingWheel<T> implements AutoCloseable {
+
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket<T>[] wheel;
+    private final int mask;
+    private final Consumer<List<T>> onExpired;
+    private final Queue<Entry<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry<T>> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * Starts the worker of a new wheel.
+     *
+     * @param tick       The duration of one tick, the resolution of the timeouts.
+     * @param wheelSize  The number of buckets, rounded up to a power of two.
+     * @param onExpired  Receives the items expiring on a tick, on the worker thread.
+     * @param threadName The name of the worker thread.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(Duration tick, int wheelSize, Consumer<List<T>> onExpired, String threadName) {
+        this.tickNanos = Math.max(1, tick.toNanos());
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket<>();
+        }
+        this.mask = size - 1;
+        this.onExpired = onExpired;
+        this.worker = Thread.ofPlatform().name(threadName).daemon().start(this::run);
+    }
+
+    /**
+     * Schedules an item to expire after the given delay.
+     *
+     * @param item  The item.
+     * @param delay The delay.
+     * @return The timeout, to cancel it.
+     */
+    Timeout schedule(T item, Duration delay) {
+        var entry = new Entry<>(this, item, System.nanoTime() - startNanos + Math.max(0, delay.toNanos()));
+        pending.incrementAndGet();
+        scheduled.add(entry);
+        return entry;
+    }
+
+    /**
+     * @return The number of timeouts that have neither expired nor been cancelled.
+     */
+    int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep = deadline - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+            removeCancelled();
+            transferScheduled();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Entry<T> entry;
+        while ((entry = cancelled.poll()) != null) {
+            if (entry.bucket != null) {
+                entry.bucket.remove(entry);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Entry<T> entry;
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK && (entry = scheduled.poll()) != null; i++) {
+            if (entry.state.get() != INIT) {
+                continue;
+            }
+            long expiryTick = entry.deadline / tickNanos;
+            entry.rounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (Math.max(expiryTick, tick) & mask)].add(entry);
+        }
+    }
+
+    private void expire(Bucket<T> bucket) {
+        List<T> expired = new ArrayList<>();
+        Entry<T> entry = bucket.head;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            if (entry.rounds <= 0) {
+                bucket.remove(entry);
+                if (entry.state.compareAndSet(INIT, EXPIRED)) {
+                    expired.add(entry.item);
+                }
+            } else if (entry.state.get() == CANCELLED) {
+                bucket.remove(entry);
+            } else {
+                entry.rounds--;
+            }
+            entry = next;
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(-expired.size());
+        try {
+            onExpired.accept(expired);
+        } catch (RuntimeException e) {
+            log.warn("Failed to expire {} timeouts", expired.size(), e);
+        }
+    }
+
+    /**
+     * A scheduled item.
+     */
+    interface Timeout {
+
+        /**
+         * Cancels the timeout, unless it has already expired.
+         *
+         * @return true if this call cancelled it.
+         */
+        boolean cancel();
+    }
+
+    private static final class Entry<T> implements Timeout {
+
+        private final TimingWheel<T> timingWheel;
+        private final T item;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        private long rounds;
+        private Bucket<T> bucket;
+        private Entry<T> previous;
+        private Entry<T> next;
+
+        private Entry(TimingWheel<T> timingWheel, T item, long deadline) {
+            this.timingWheel = timingWheel;
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            timingWheel.pending.decrementAndGet();
+            timingWheel.cancelled.add(this);
+            return true;
+        }
+    }
+
+    /**
+     * Doubly linked list of the entries of one tick, only touched by the worker.
+     */
+    private static final class Bucket<T> {
+
+        private Entry<T> head;
+        private Entry<T> tail;
+
+        private void add(Entry<T> entry) {
+            entry.bucket = this;
+            entry.previous = tail;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        private void remove(Entry<T> entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package akros.vendingmachine.search;
+
+import akros.vendingmachine.datasource.ReplicaRouting;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.mapper.ProductMapper;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.service.InventoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index answering product searches by name prefix and price range without a database round trip.
+ * <p>
+ * Each machine has an immutable set of parallel arrays sorted by lower-cased name and product ID,
+ * so a name prefix is one contiguous range found by binary search, plus a permutation of the same
+ * entries sorted by price, so a price range is a contiguous range as well. Prices and IDs are kept
+ * in primitive arrays. A query scans the narrower of the two ranges and filters on the other bound.
+ * <p>
+ * The index of a machine is built from the {@link ProductRepository} when the application is ready
+ * or on its first search that finds products, then updated incrementally after every committed product change, local or
+ * remote: the changed product and inventory are re-read by ID and name, and the product entry is
+ * replaced in a copy of the arrays, which is published to readers at once. A bulk import drops the
+ * index of its machine, which is rebuilt on the next search. All indexes are rebuilt
+ * every {@code app.search.rebuild-interval}, for the machines that still have products only; a search
+ * for a machine without products never creates an index.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    /**
+     * Stored in place of a missing price; below every price a range can ask for.
+     */
+    private static final int NO_PRICE = Integer.MIN_VALUE;
+
+    private final ProductRepository productRepository;
+    private final InventoryStore inventoryStore;
+    private final ProductMapper productMapper;
+    private final Map<String, MachineIndex> machines = new ConcurrentHashMap<>();
+
+    public ProductSearchIndex(ProductRepository productRepository, InventoryStore inventoryStore, ProductMapper productMapper) {
+        this.productRepository = productRepository;
+        this.inventoryStore = inventoryStore;
+        this.productMapper = productMapper;
+    }
+
+    /**
+     * Searches the products of a machine.
+     *
+     * @param machineId The ID of the machine.
+     * @param prefix    The case-insensitive prefix of the product name, or null for any name.
+     * @param minPrice  The lowest price, inclusive, or null for no lower bound.
+     * @param maxPrice  The highest price, inclusive, or null for no upper bound.
+     * @param sort      The order of the results.
+     * @param limit     The maximum number of results.
+     * @return The matching products in the requested order. The inventories are shared and must not be modified.
+     */
+    public List<ProductDTO> search(String machineId, String prefix, Integer minPrice, Integer maxPrice,
+                                   ProductSearchSort sort, int limit) {
+        MachineIndex machine = machines.get(machineId);
+        if (machine == null) {
+            if (read(machineId).isEmpty()) {
+                return List.of();
+            }
+            machine = machines.computeIfAbsent(machineId, id -> new MachineIndex());
+        }
+        Entries entries = entries(machineId, machine);
+        boolean priceFiltered = minPrice != null || maxPrice != null;
+        int lowPrice = minPrice == null ? NO_PRICE + 1 : minPrice;
+        int highPrice = maxPrice == null ? Integer.MAX_VALUE : maxPrice;
+        if (limit <= 0 || lowPrice > highPrice) {
+            return List.of();
+        }
+
+        String prefixKey = key(prefix);
+        int nameFrom = prefixKey.isEmpty() ? 0 : entries.nameLowerBound(prefixKey);
+        int nameTo = prefixKey.isEmpty() ? entries.size() : entries.prefixEnd(prefixKey, nameFrom);
+        int priceFrom = priceFiltered ? entries.priceLowerBound(lowPrice) : 0;
+        int priceTo = priceFiltered ? entries.priceUpperBound(highPrice) : entries.size();
+        boolean scanByPrice = priceTo - priceFrom < nameTo - nameFrom
+                || priceTo - priceFrom == nameTo - nameFrom && sort.byPrice();
+
+        int[] matches = scanByPrice
+                ? entries.matchesByPrice(priceFrom, priceTo, nameFrom, nameTo)
+                : entries.matchesByName(nameFrom, nameTo, priceFiltered, lowPrice, highPrice);
+        if (scanByPrice != sort.byPrice()) {
+            if (sort.byPrice()) {
+                entries.sortByPrice(matches);
+            } else {
+                Arrays.sort(matches);
+            }
+        }
+
+        int size = Math.min(limit, matches.length);
+        List<ProductDTO> products = new ArrayList<>(size);
+        for (int result = 0; result < size; result++) {
+            int position = matches[sort.isDescending() ? matches.length - 1 - result : result];
+            products.add(entries.toProduct(position, machineId, machine.inventars));
+        }
+        return products;
+    }
+
+    /**
+     * Replaces the entry of the changed product and refreshes the inventory of the changed product name. Machines whose index was
+     * not built yet read the change when it is, and so do machines with imported products, whose index is dropped.
+     *
+     * @param event The committed product change.
+     */
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        MachineIndex machine = machines.get(event.getMachineId());
+        if (machine == null) {
+            return;
+        }
+        synchronized (machine) {
+            if (machine.entries == null) {
+                return;
+            }
+            if (event.getType() == ChangeType.IMPORTED) {
+                // an import adds many products at once: read them all on the next search
+                machine.entries = null;
+                return;
+            }
+            if (event.getProductId() != null) {
+                ProductDTO product = event.getType() == ChangeType.DELETED
+                        ? null
+                        : ReplicaRouting.onPrimary(() -> productRepository.findRowById(event.getMachineId(), event.getProductId()))
+                                .map(productMapper::mapToProductDTO)
+                                .orElse(null);
+                machine.entries = product == null
+                        ? machine.entries.without(event.getProductId())
+                        : machine.entries.without(event.getProductId()).with(product);
+                if (product != null && product.getInventar() != null) {
+                    machine.inventars.put(product.getInventar().getId(), product.getInventar());
+                }
+                if (machine.entries.size() == 0) {
+                    machines.remove(event.getMachineId(), machine);
+                    return;
+                }
+            }
+            if (event.getProductName() != null) {
+                Inventar inventar = ReplicaRouting.onPrimary(() -> inventoryStore.find(event.getMachineId(), event.getProductName()));
+                if (inventar != null) {
+                    machine.inventars.put(inventar.getId(), inventar);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index of every machine that has products, once the application is ready, so the
+     * first searches after a cold start are served from memory as well, and then periodically, to
+     * pick up changes whose notification was lost or that bypassed the application. Indexes of
+     * machines without products are dropped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.search.rebuild-interval:5m}", initialDelayString = "${app.search.rebuild-interval:5m}")
+    public void rebuild() {
+        Set<String> machineIds = new TreeSet<>(productRepository.findMachineIds());
+        machines.keySet().retainAll(machineIds);
+        int products = 0;
+        for (String machineId : machineIds) {
+            MachineIndex machine = machines.computeIfAbsent(machineId, id -> new MachineIndex());
+            synchronized (machine) {
+                build(machine, read(machineId));
+                products += machine.entries.size();
+            }
+        }
+        log.debug("Rebuilt search index of {} products in {} machines", products, machineIds.size());
+    }
+
+    /**
+     * Returns the IDs of the machines that currently have an index.
+     *
+     * @return An immutable copy of the indexed machine IDs.
+     */
+    public Set<String> indexedMachineIds() {
+        return Set.copyOf(machines.keySet());
+    }
+
+    private Entries entries(String machineId, MachineIndex machine) {
+        Entries entries = machine.entries;
+        if (entries == null) {
+            synchronized (machine) {
+                if (machine.entries == null) {
+                    build(machine, read(machineId));
+                }
+                entries = machine.entries;
+            }
+        }
+        return entries;
+    }
+
+    private List<ProductDTO> read(String machineId) {
+        return ReplicaRouting.onPrimary(() -> productRepository.findAllRows(machineId)).stream()
+                .map(productMapper::mapToProductDTO)
+                .toList();
+    }
+
+    private static void build(MachineIndex machine, List<ProductDTO> products) {
+        machine.inventars.clear();
+        products.stream()
+                .map(ProductDTO::getInventar)
+                .filter(inventar -> inventar != null && inventar.getId() != null)
+                .forEach(inventar -> machine.inventars.put(inventar.getId(), inventar));
+        machine.entries = Entries.of(products);
+    }
+
+    private static String key(String productName) {
+        return productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+    }
+
+    private static int price(ProductDTO product) {
+        return product.getProductPrice() == null ? NO_PRICE : product.getProductPrice();
+    }
+
+    /**
+     * Index and inventories of one machine. Writers hold the monitor; readers only read the volatile entries.
+     */
+    private static final class MachineIndex {
+        private final Map<String, Inventar> inventars = new ConcurrentHashMap<>();
+        private volatile Entries entries;
+    }
+
+    /**
+     * Immutable entries of one machine. Position {@code i} of the parallel arrays holds the
+     * {@code i}-th product in (name key, product ID) order; {@code byPrice} lists the positions
+     * in (price, position) order, which insertions and removals do not reorder.
+     */
+    private static final class Entries {
+
+        private final String[] keys;
+        private final String[] names;
+        private final int[] ids;
+        private final int[] prices;
+        private final String[] inventarIds;
+        private final int[] byPrice;
+
+        private Entries(String[] keys, String[] names, int[] ids, int[] prices, String[] inventarIds, int[] byPrice) {
+            this.keys = keys;
+            this.names = names;
+            this.ids = ids;
+            this.prices = prices;
+            this.inventarIds = inventarIds;
+            this.byPrice = byPrice;
+        }
+
+        static Entries of(List<ProductDTO> products) {
+            List<ProductDTO> sorted = products.stream()
+                    .sorted(Comparator.comparing((ProductDTO product) -> key(product.getProductName()))
+                            .thenComparingInt(ProductDTO::getProductId))
+                    .toList();
+            int size = sorted.size();
+            Entries entries = new Entries(new String[size], new String[size], new int[size], new int[size],
+                    new String[size], new int[size]);
+            for (int position = 0; position < size; position++) {
+                entries.set(position, sorted.get(position));
+                entries.byPrice[position] = position;
+            }
+            entries.sortByPrice(entries.byPrice);
+            return entries;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * Returns a copy with the given product inserted at its name position.
+         */
+        Entries with(ProductDTO product) {
+            String key = key(product.getProductName());
+            int id = product.getProductId();
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = keys[middle].compareTo(key);
+                if (comparison < 0 || comparison == 0 && ids[middle] < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int position = low;
+            int size = size() + 1;
+            Entries entries = new Entries(insertGap(keys, position, new String[size]), insertGap(names, position, new String[size]),
+                    insertGap(ids, position), insertGap(prices, position),
+                    insertGap(inventarIds, position, new String[size]), new int[size]);
+            entries.set(position, product);
+
+            int price = entries.prices[position];
+            int[] shifted = new int[size - 1];
+            int at = 0;
+            for (int index = 0; index < byPrice.length; index++) {
+                shifted[index] = byPrice[index] >= position ? byPrice[index] + 1 : byPrice[index];
+                if (entries.comparePrice(shifted[index], price, position) < 0) {
+                    at = index + 1;
+                }
+            }
+            System.arraycopy(shifted, 0, entries.byPrice, 0, at);
+            entries.byPrice[at] = position;
+            System.arraycopy(shifted, at, entries.byPrice, at + 1, shifted.length - at);
+            return entries;
+        }
+
+        /**
+         * Returns a copy without the given product, or this instance if it is not indexed.
+         */
+        Entries without(int id) {
+            int position = -1;
+            for (int index = 0; index < ids.length; index++) {
+                if (ids[index] == id) {
+                    position = index;
+                    break;
+                }
+            }
+            if (position < 0) {
+                return this;
+            }
+            int size = size() - 1;
+            int[] remainingByPrice = new int[size];
+            int at = 0;
+            for (int entry : byPrice) {
+                if (entry != position) {
+                    remainingByPrice[at++] = entry > position ? entry - 1 : entry;
+                }
+            }
+            return new Entries(removeAt(keys, position, new String[size]), removeAt(names, position, new String[size]),
+                    removeAt(ids, position), removeAt(prices, position),
+                    removeAt(inventarIds, position, new String[size]), remainingByPrice);
+        }
+
+        /**
+         * Returns the first position whose name key is not less than the given key.
+         */
+        int nameLowerBound(String key) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the first position from {@code from} whose name key does not start with the prefix.
+         */
+        int prefixEnd(String prefix, int from) {
+            int low = from;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].startsWith(prefix)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the first index of {@code byPrice} whose price is not less than the given price.
+         */
+        int priceLowerBound(int price) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prices[byPrice[middle]] < price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the first index of {@code byPrice} whose price is greater than the given price.
+         */
+        int priceUpperBound(int price) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prices[byPrice[middle]] <= price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the positions of the price range {@code [priceFrom, priceTo)} within the name
+         * range {@code [nameFrom, nameTo)}, in price order.
+         */
+        int[] matchesByPrice(int priceFrom, int priceTo, int nameFrom, int nameTo) {
+            int[] matches = new int[priceTo - priceFrom];
+            int count = 0;
+            for (int index = priceFrom; index < priceTo; index++) {
+                int position = byPrice[index];
+                if (position >= nameFrom && position < nameTo) {
+                    matches[count++] = position;
+                }
+            }
+            return count == matches.length ? matches : Arrays.copyOf(matches, count);
+        }
+
+        /**
+         * Returns the positions of the name range {@code [nameFrom, nameTo)} within the price
+         * bounds, if any, in name order.
+         */
+        int[] matchesByName(int nameFrom, int nameTo, boolean priceFiltered, int lowPrice, int highPrice) {
+            int[] matches = new int[nameTo - nameFrom];
+            int count = 0;
+            for (int position = nameFrom; position < nameTo; position++) {
+                if (!priceFiltered || prices[position] >= lowPrice && prices[position] <= highPrice) {
+                    matches[count++] = position;
+                }
+            }
+            return count == matches.length ? matches : Arrays.copyOf(matches, count);
+        }
+
+        /**
+         * Sorts positions in (price, position) order by packing both into one primitive key.
+         */
+        void sortByPrice(int[] positions) {
+            long[] packed = new long[positions.length];
+            for (int index = 0; index < positions.length; index++) {
+                packed[index] = (long) prices[positions[index]] << 32 | positions[index];
+            }
+            Arrays.sort(packed);
+            for (int index = 0; index < positions.length; index++) {
+                positions[index] = (int) packed[index];
+            }
+        }
+
+        ProductDTO toProduct(int position, String machineId, Map<String, Inventar> inventars) {
+            return new ProductDTO(ids[position], machineId, names[position],
+                    prices[position] == NO_PRICE ? null : prices[position],
+                    inventarIds[position] == null ? null : inventars.get(inventarIds[position]));
+        }
+
+        private void set(int position, ProductDTO product) {
+            keys[position] = key(product.getProductName());
+            names[position] = product.getProductName();
+            ids[position] = product.getProductId();
+            prices[position] = price(product);
+            inventarIds[position] = product.getInventar() == null ? null : product.getInventar().getId();
+        }
+
+        private int comparePrice(int position, int price, int otherPosition) {
+            int comparison = Integer.compare(prices[position], price);
+            return comparison != 0 ? comparison : Integer.compare(position, otherPosition);
+        }
+
+        private static String[] insertGap(String[] values, int position, String[] copy) {
+            System.arraycopy(values, 0, copy, 0, position);
+            System.arraycopy(values, position, copy, position + 1, values.length - position);
+            return copy;
+        }
+
+        private static int[] insertGap(int[] values, int position) {
+            int[] copy = new int[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, position);
+            System.arraycopy(values, position, copy, position + 1, values.length - position);
+            return copy;
+        }
+
+        private static String[] removeAt(String[] values, int position, String[] copy) {
+            System.arraycopy(values, 0, copy, 0, position);
+            System.arraycopy(values, position + 1, copy, position, values.length - position - 1);
+            return copy;
+        }
+
+        private static int[] removeAt(int[] values, int position) {
+            int[] copy = new int[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, position);
+            System.arraycopy(values, position + 1, copy, position, values.length - position - 1);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package akros.vendingmachine.search;
+
+import java.util.Locale;
+
+/**
+ * Order of search results: {@code name}, {@code price}, or either prefixed with {@code -} for descending order.
+ * Ties are broken by name, then by product ID.
+ */
+public enum ProductSearchSort {
+    NAME(false),
+    NAME_DESC(true),
+    PRICE(false),
+    PRICE_DESC(true);
+
+    private final boolean descending;
+
+    ProductSearchSort(boolean descending) {
+        this.descending = descending;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public boolean byPrice() {
+        return this == PRICE || this == PRICE_DESC;
+    }
+
+    /**
+     * Parses a sort parameter such as {@code price} or {@code -name}.
+     *
+     * @param sort The sort parameter, or null for the default name order.
+     * @return The sort order.
+     * @throws IllegalArgumentException if the parameter names no known field.
+     */
+    public static ProductSearchSort parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return NAME;
+        }
+        String field = sort.trim().toLowerCase(Locale.ROOT);
+        boolean descending = field.startsWith("-");
+        return switch (descending ? field.substring(1) : field) {
+            case "name" -> descending ? NAME_DESC : NAME;
+            case "price" -> descending ? PRICE_DESC : PRICE;
+            default -> throw new IllegalArgumentException("Unknown sort field: " + sort);
+        };
+    }
+}
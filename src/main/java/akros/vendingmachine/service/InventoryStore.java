@@ -0,0 +1,87 @@
+package akros.vendingmachine.service;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+/**
+ * Keeps the number of units in stock per machine and product name and enforces the quantity cap.
+ * The implementation is selected with {@code app.inventory.mode}: {@code row} updates
+ * {@link Inventar#getQuantity()} in place, {@code ledger} appends immutable deltas, {@code edge}
+ * updates the in-memory catalog of the {@code edge} profile.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+public interface InventoryStore {
+
+    /**
+     * Adds one unit to the inventory of the given product name, creating the inventory if needed.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name.
+     * @param maxQuantity The quantity cap.
+     * @return the inventory ID and its new quantity, or empty if the cap is reached.
+     */
+    Optional<InventarQuantity> increment(String machineId, String productName, int maxQuantity);
+
+    /**
+     * Adds up to the requested number of units to the inventories of several product names,
+     * creating the inventories if needed. Product names are processed in their sorted order.
+     *
+     * @param machineId   The ID of the machine.
+     * @param units       The requested number of units per product name.
+     * @param maxQuantity The quantity cap.
+     * @return the granted units per product name.
+     */
+    Map<String, Grant> increment(String machineId, SortedMap<String, Integer> units, int maxQuantity);
+
+    /**
+     * Removes one unit from the inventory of the given product name, never going below zero.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name.
+     * @return the quantity of the inventory after the removal, zero if it was empty or does not exist.
+     */
+    int decrement(String machineId, String productName);
+
+    /**
+     * Removes units from the inventories of several product names, never going below zero.
+     * Product names are processed in their sorted order.
+     *
+     * @param machineId The ID of the machine.
+     * @param units     The number of units to remove per product name.
+     */
+    void decrement(String machineId, SortedMap<String, Integer> units);
+
+    /**
+     * Finds the inventory of a product name with its current quantity.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name.
+     * @return Inventar if found, or null if not found.
+     */
+    Inventar find(String machineId, String productName);
+
+    /**
+     * Finds all inventories of all machines with their current quantities.
+     *
+     * @return List of Inventar.
+     */
+    List<Inventar> findAll();
+
+    /**
+     * Units granted to one product name of a batch.
+     *
+     * @param inventarId The ID of the inventory.
+     * @param granted    The number of granted units.
+     * @param quantity   The quantity of the inventory after the grant.
+     */
+    record Grant(String inventarId, int granted, int quantity) {
+    }
+}
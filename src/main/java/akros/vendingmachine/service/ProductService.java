@@ -1,14 +1,27 @@
 package akros.vendingmachine.service;
 
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
 import akros.vendingmachine.dto.ProductResponseDto;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductService {
-    List<ProductDTO> getProducts();
-    ProductResponseDto getProduct(Integer id);
-    ProductResponseDto createProduct(ProductDTO product);
-    ProductResponseDto deleteProduct(Integer id);
-    ProductResponseDto updateProduct(ProductDTO product, Integer id);
+    List<ProductDTO> getProducts(String machineId);
+    ProductPageDTO getProducts(String machineId, Integer cursor, Integer size);
+    void streamProducts(String machineId, Consumer<ProductDTO> consumer);
+    ProductResponseDto searchProducts(String machineId, String prefix, Integer minPrice, Integer maxPrice, String sort, Integer limit);
+    ProductResponseDto getProduct(String machineId, Integer id);
+    ProductResponseDto getProductsById(String machineId, List<Integer> ids);
+    ProductResponseDto getProductStats(String machineId, Integer id);
+    ProductResponseDto createProduct(String machineId, ProductDTO product);
+    ProductResponseDto createProducts(String machineId, List<ProductDTO> products);
+    ProductResponseDto importProducts(String machineId, InputStream input, String fileName, String contentType);
+    ProductResponseDto deleteProduct(String machineId, Integer id);
+    ProductResponseDto reserveProduct(String machineId, Integer id);
+    ProductResponseDto confirmReservation(String machineId, String reservationId);
+    ProductResponseDto releaseReservation(String machineId, String reservationId);
+    ProductResponseDto updateProduct(String machineId, ProductDTO product, Integer id);
 }
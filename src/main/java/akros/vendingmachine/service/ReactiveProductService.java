@@ -0,0 +1,14 @@
+package akros.vendingmachine.service;
+
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductService {
+    Flux<ProductDTO> getProducts(String machineId);
+    Mono<ProductResponseDto> getProduct(String machineId, Integer id);
+    Mono<ProductResponseDto> createProduct(String machineId, ProductDTO product);
+    Mono<ProductResponseDto> deleteProduct(String machineId, Integer id);
+    Mono<ProductResponseDto> updateProduct(String machineId, ProductDTO product, Integer id);
+}
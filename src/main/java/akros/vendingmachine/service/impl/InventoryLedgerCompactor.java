@@ -0,0 +1,63 @@
+package akros.vendingmachine.service.impl;
+
+import akros.vendingmachine.repository.InventarLedgerRepository;
+import akros.vendingmachine.repository.InventarLedgerRepository.LedgerKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+
+/**
+ * Folds the inventory ledger into {@code Inventar.quantity}, one product name of a machine per transaction.
+ * A product is only compacted when all its stripes can be locked without waiting, so the
+ * compactor never blocks writers; a busy product is retried on the next run.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "ledger")
+public class InventoryLedgerCompactor {
+
+    private static final int PRODUCT_NAMES_PER_RUN = 500;
+
+    private final InventarLedgerRepository inventarLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public InventoryLedgerCompactor(InventarLedgerRepository inventarLedgerRepository, PlatformTransactionManager transactionManager) {
+        this.inventarLedgerRepository = inventarLedgerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Compacts the deltas of up to {@code PRODUCT_NAMES_PER_RUN} product names.
+     *
+     * @return the number of compacted product names.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.compaction-interval:5s}", initialDelayString = "${app.inventory.compaction-interval:5s}")
+    public int compact() {
+        int compacted = 0;
+        for (LedgerKey key : inventarLedgerRepository.findProductNamesWithDeltas(PRODUCT_NAMES_PER_RUN)) {
+            if (Boolean.TRUE.equals(transactionTemplate.execute(status -> compact(key.getMachineId(), key.getProductName())))) {
+                compacted++;
+            }
+        }
+        if (compacted > 0) {
+            log.debug("Compacted the inventory ledger of {} product names", compacted);
+        }
+        return compacted;
+    }
+
+    private boolean compact(String machineId, String productName) {
+        if (!inventarLedgerRepository.tryLockStripes(machineId, productName, MAX_PRODUCT_QUANTITY)) {
+            return false;
+        }
+        return inventarLedgerRepository.compact(machineId, productName) > 0;
+    }
+}
@@ -0,0 +1,116 @@
+package akros.vendingmachine.service.impl;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.repository.InventarLedgerRepository;
+import akros.vendingmachine.repository.InventarLedgerRepository.InventarView;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+import akros.vendingmachine.service.InventoryStore;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+
+/**
+ * {@link InventoryStore} appending immutable deltas to the inventory ledger instead of
+ * rewriting the {@code Inventar} row; {@link InventoryLedgerCompactor} folds them into
+ * {@code Inventar.quantity} in the background.
+ * <p>
+ * A single unit is booked on one stripe locked without waiting, so concurrent writers of
+ * the same product proceed in parallel as long as stripes are free. When none can be
+ * taken, the writer waits for all stripes of the product in ascending order, which is
+ * also how batches book their units. A stripe locked out of that order is released first,
+ * by rolling back to a savepoint, so a writer never waits while holding one. Removals
+ * need no lock.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Service
+@AllArgsConstructor
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "ledger")
+public class LedgerInventoryStore implements InventoryStore {
+
+    private final InventarRepository inventarRepository;
+    private final InventarLedgerRepository inventarLedgerRepository;
+
+    @Override
+    @Transactional
+    public Optional<InventarQuantity> increment(String machineId, String productName, int maxQuantity) {
+        inventarLedgerRepository.beginStripeAttempt();
+        Optional<Integer> stripe = inventarLedgerRepository.tryLockStripe(machineId, productName, maxQuantity);
+        if (stripe.isPresent() && inventarLedgerRepository.bookUnit(machineId, productName, stripe.get(), maxQuantity) > 0) {
+            inventarLedgerRepository.releaseStripeAttempt();
+            return inventarLedgerRepository.findView(machineId, productName).map(InventarQuantity.class::cast);
+        }
+        // the stripe got full before it was locked: release it before waiting for the others in ascending order
+        inventarLedgerRepository.rollbackStripeAttempt();
+        Optional<InventarView> view = inventarLedgerRepository.findView(machineId, productName);
+        if (view.isEmpty()) {
+            inventarRepository.insertMissing(machineId, new String[]{productName});
+        } else if (view.get().getQuantity() >= maxQuantity) {
+            return Optional.empty();
+        }
+        // Either all stripes with capacity are held by concurrent writers, or the stripe got
+        // full before it was locked: wait for the writers and book on whichever stripe is left.
+        inventarLedgerRepository.lockStripes(machineId, productName, maxQuantity);
+        if (inventarLedgerRepository.bookUnits(machineId, productName, 1, maxQuantity) == 0) {
+            return Optional.empty();
+        }
+        return inventarLedgerRepository.findView(machineId, productName).map(InventarQuantity.class::cast);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Grant> increment(String machineId, SortedMap<String, Integer> units, int maxQuantity) {
+        inventarRepository.insertMissing(machineId, units.keySet().toArray(String[]::new));
+        Map<String, Grant> grants = new LinkedHashMap<>();
+        units.forEach((productName, requested) -> {
+            inventarLedgerRepository.lockStripes(machineId, productName, maxQuantity);
+            int granted = inventarLedgerRepository.bookUnits(machineId, productName, requested, maxQuantity);
+            inventarLedgerRepository.findView(machineId, productName).ifPresent(view ->
+                    grants.put(productName, new Grant(view.getId(), granted, view.getQuantity())));
+        });
+        return grants;
+    }
+
+    @Override
+    @Transactional
+    public int decrement(String machineId, String productName) {
+        inventarLedgerRepository.bookRemoval(machineId, productName, MAX_PRODUCT_QUANTITY);
+        return inventarLedgerRepository.findView(machineId, productName).map(InventarView::getQuantity).orElse(0);
+    }
+
+    @Override
+    @Transactional
+    public void decrement(String machineId, SortedMap<String, Integer> units) {
+        units.forEach((productName, removed) -> {
+            for (int i = 0; i < removed; i++) {
+                inventarLedgerRepository.bookRemoval(machineId, productName, MAX_PRODUCT_QUANTITY);
+            }
+        });
+    }
+
+    @Override
+    public Inventar find(String machineId, String productName) {
+        return inventarLedgerRepository.findView(machineId, productName).map(LedgerInventoryStore::toInventar).orElse(null);
+    }
+
+    @Override
+    public List<Inventar> findAll() {
+        return inventarLedgerRepository.findAllViews().stream().map(LedgerInventoryStore::toInventar).toList();
+    }
+
+    private static Inventar toInventar(InventarView view) {
+        return new Inventar(view.getId(), view.getMachineId(), view.getProductName(), view.getQuantity());
+    }
+}
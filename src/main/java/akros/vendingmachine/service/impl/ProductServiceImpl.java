@@ -1,25 +1,66 @@
 package akros.vendingmachine.service.impl;
 
+import akros.vendingmachine.bulkimport.ProductImportFormat;
+import akros.vendingmachine.bulkimport.ProductImporter;
+import akros.vendingmachine.cache.ProductCache;
 import akros.vendingmachine.domain.Inventar;
 import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.ProductBatchItemDTO;
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductImportResultDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
 import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.dto.ReservationDTO;
+import akros.vendingmachine.dto.VendStatsDTO;
 import akros.vendingmachine.dto.mapper.ProductMapper;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
 import akros.vendingmachine.plausibility.ProductValidation;
 import akros.vendingmachine.plausibility.ProductValidator;
 import akros.vendingmachine.repository.InventarRepository;
 import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.reservation.ReservationExpirer;
+import akros.vendingmachine.search.ProductSearchIndex;
+import akros.vendingmachine.search.ProductSearchSort;
+import akros.vendingmachine.service.InventoryStore;
+import akros.vendingmachine.stats.VendStats;
 import akros.vendingmachine.service.ProductService;
+import akros.vendingmachine.writebehind.WriteBehindPipeline;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.DEFAULT_PAGE_SIZE;
+import static akros.vendingmachine.AppConstant.IMPORT_KEY;
+import static akros.vendingmachine.AppConstant.MAX_BATCH_SIZE;
+import static akros.vendingmachine.AppConstant.MAX_PAGE_SIZE;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
 import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.PRODUCTS_KEY;
+import static akros.vendingmachine.AppConstant.RESERVATION_KEY;
+import static akros.vendingmachine.AppConstant.STATS_KEY;
+import static akros.vendingmachine.AppConstant.productApiPath;
 import static org.springframework.http.HttpStatus.*;
 
 /**
@@ -27,6 +68,7 @@ import static org.springframework.http.HttpStatus.*;
  * Provides functionality for managing products in the vending machine application.
  * This includes creating, updating, retrieving, and deleting products.
  * Also manages the associated inventory for each product.
+ * Every operation is scoped to one machine; the inventory and its quantity cap are per machine.
  *
  * @author  Saliou Conde
  * @version 0.1.0
@@ -39,139 +81,569 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
     private final InventarRepository inventarRepository;
-    private static final ProductMapper PRODUCT_MAPPER = ProductMapper.PRODUCT_MAPPER;
+    private final InventoryStore inventoryStore;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final Optional<ProductImporter> productImporter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Optional<WriteBehindPipeline> writeBehindPipeline;
+    private final ReservationExpirer reservationExpirer;
+    private final VendStats vendStats;
+    private final ProductMapper productMapper;
 
     /**
-     * Retrieves a list of all products.
+     * Retrieves a list of all products of a machine.
      *
+     * @param machineId The ID of the machine.
      * @return List of ProductDTO objects representing all products.
      */
     @Override
-    public List<ProductDTO> getProducts() {
-        List<Product> products = productRepository.findAll();
-        return products.stream().map(ProductMapper.PRODUCT_MAPPER::mapToProductDTO).toList();
+    @Transactional(readOnly = true)
+    public List<ProductDTO> getProducts(String machineId) {
+        return productRepository.findAllRows(machineId).stream().map(productMapper::mapToProductDTO).toList();
     }
 
     /**
-     * Retrieves a product by its ID.
+     * Retrieves one page of products ordered by ID, using the last seen ID as cursor.
+     * Keyset pagination keeps the cost of a page independent of its position in the table.
+     * Like every read-only transaction, the page is read from a replica when replicas are configured.
      *
-     * @param id The ID of the product to retrieve.
+     * @param machineId The ID of the machine.
+     * @param cursor The ID of the last product of the previous page, or null for the first page.
+     * @param size   The requested page size, bounded by {@code MAX_PAGE_SIZE}.
+     * @return ProductPageDTO containing the products and the cursor of the next page, if any.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ProductPageDTO getProducts(String machineId, Integer cursor, Integer size) {
+        int pageSize = size == null || size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        int after = cursor == null ? 0 : cursor;
+        List<ProductDTO> products = productRepository
+                .findRowsAfter(machineId, after, Limit.of(pageSize + 1))
+                .stream()
+                .map(productMapper::mapToProductDTO)
+                .toList();
+
+        boolean hasNext = products.size() > pageSize;
+        List<ProductDTO> page = hasNext ? products.subList(0, pageSize) : products;
+        return ProductPageDTO.builder()
+                .products(page)
+                .size(page.size())
+                .nextCursor(hasNext ? page.get(pageSize - 1).getProductId() : null)
+                .build();
+    }
+
+    /**
+     * Streams all products of a machine ordered by ID to the given consumer, one row at a time.
+     * Rows are fetched with a bounded JDBC fetch size as flat projections that are never
+     * attached to the persistence context, so memory stays flat regardless of the table size.
+     *
+     * @param machineId The ID of the machine.
+     * @param consumer  The consumer receiving each product as it is read.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamProducts(String machineId, Consumer<ProductDTO> consumer) {
+        try (Stream<ProductRow> products = productRepository.streamAllRows(machineId)) {
+            products.map(productMapper::mapToProductDTO).forEach(consumer);
+        }
+    }
+
+    /**
+     * Searches the products of a machine by name prefix and price range in the in-memory search index.
+     *
+     * @param machineId The ID of the machine.
+     * @param prefix    The case-insensitive prefix of the product name, or null for any name.
+     * @param minPrice  The lowest price, inclusive, or null for no lower bound.
+     * @param maxPrice  The highest price, inclusive, or null for no upper bound.
+     * @param sort      The order of the results: name, price, -name or -price.
+     * @param limit     The maximum number of results, bounded by {@code MAX_PAGE_SIZE}.
+     * @return ProductResponseDto containing the matching products and status information.
+     */
+    @Override
+    public ProductResponseDto searchProducts(String machineId, String prefix, Integer minPrice, Integer maxPrice,
+                                             String sort, Integer limit) {
+        ProductSearchSort searchSort;
+        try {
+            searchSort = ProductSearchSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message(e.getMessage())
+                    .status(BAD_REQUEST)
+                    .error("Products cannot be searched")
+                    .path(productApiPath(machineId) + "search")
+                    .statusCode(BAD_REQUEST.value())
+                    .data(Map.of(PRODUCTS_KEY, List.of()))
+                    .build();
+        }
+        int maxResults = limit == null || limit < 1 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        List<ProductDTO> products = productSearchIndex.search(machineId, prefix, minPrice, maxPrice, searchSort, maxResults);
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(OK)
+                .message(products.size() + " products found")
+                .error(null)
+                .path(productApiPath(machineId) + "search")
+                .statusCode(OK.value())
+                .data(Map.of(PRODUCTS_KEY, products))
+                .build();
+    }
+
+    /**
+     * Retrieves a product of a machine by its ID, served from the product cache when possible.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to retrieve.
      * @return ProductResponseDto containing product data and status information.
      */
     @Override
-    public ProductResponseDto getProduct(Integer id) {
-        Product productById = findProductById(id);
-        var validation = ProductValidator.findProductById(id).apply(PRODUCT_MAPPER.mapToProductDTO(productById));
+    public ProductResponseDto getProduct(String machineId, Integer id) {
+        ProductDTO productById = findProductById(machineId, id);
+        var validation = ProductValidator.findProductById(id).apply(productById);
         if(validation == ProductValidation.VALID) {
             return ProductResponseDto.builder()
                     .timestamp(Instant.now().toString())
                     .status(OK)
                     .message("Product found by ID: "+id)
                     .error(null)
-                    .path(PRODUCT_API_PATH+id)
+                    .path(productApiPath(machineId)+id)
                     .statusCode(OK.value())
                     .data(Map.of(PRODUCT_KEY, productById))
                     .build();
         }
-        return productNotFoundById(id);
+        return productNotFoundById(machineId, id);
     }
 
     /**
-     * Creates a new product and adds it to the inventory.
+     * Retrieves several products of a machine by their ID in one call. Cached products are reused
+     * and all other IDs are read with a single query.
      *
-     * @param product The product data to be created.
+     * @param machineId The ID of the machine.
+     * @param ids       The IDs of the products to retrieve, at most {@code MAX_BATCH_SIZE}.
+     * @return ProductResponseDto containing one result per requested ID, in request order.
+     */
+    @Override
+    public ProductResponseDto getProductsById(String machineId, List<Integer> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message("A lookup shall not contain more than " + MAX_BATCH_SIZE + " IDs")
+                    .status(BAD_REQUEST)
+                    .error("Products cannot be retrieved")
+                    .path(productApiPath(machineId))
+                    .statusCode(BAD_REQUEST.value())
+                    .data(Map.of(PRODUCTS_KEY, List.of()))
+                    .build();
+        }
+
+        Map<Integer, ProductDTO> found = productCache.findProducts(machineId, ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        List<ProductBatchItemDTO> results = new ArrayList<>(ids.size());
+        for (int index = 0; index < ids.size(); index++) {
+            Integer id = ids.get(index);
+            ProductDTO product = id == null ? null : found.get(id);
+            results.add(product == null
+                    ? ProductBatchItemDTO.builder()
+                            .index(index)
+                            .status(NOT_FOUND)
+                            .statusCode(NOT_FOUND.value())
+                            .message("Product not found by ID: " + id)
+                            .build()
+                    : ProductBatchItemDTO.builder()
+                            .index(index)
+                            .status(OK)
+                            .statusCode(OK.value())
+                            .product(product)
+                            .build());
+        }
+
+        long foundCount = results.stream().filter(result -> result.getStatus() == OK).count();
+        var status = foundCount == ids.size() ? OK : foundCount == 0 ? NOT_FOUND : MULTI_STATUS;
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(status)
+                .message(foundCount + " of " + ids.size() + " products found")
+                .error(null)
+                .path(productApiPath(machineId))
+                .statusCode(status.value())
+                .data(Map.of(PRODUCTS_KEY, results))
+                .build();
+    }
+
+    /**
+     * Retrieves the rolling vend and restock counts of the product name of a product, answered
+     * from the in-memory {@link VendStats}, with the current quantity and the hours until the
+     * inventory is empty at the vend rate of the last day.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of a product of the product name.
+     * @return ProductResponseDto containing the product and its statistics.
+     */
+    @Override
+    public ProductResponseDto getProductStats(String machineId, Integer id) {
+        ProductDTO product = findProductById(machineId, id);
+        if (product == null) {
+            return productNotFoundById(machineId, id);
+        }
+        VendStatsDTO stats = vendStats.stats(machineId, product.getProductName());
+        Integer quantity = product.getInventar() == null ? null : product.getInventar().getQuantity();
+        stats.setQuantity(quantity);
+        stats.setHoursUntilEmpty(quantity == null || stats.getVendsLastDay() == 0 ? null : quantity * 24.0 / stats.getVendsLastDay());
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(OK)
+                .error(null)
+                .path(productApiPath(machineId)+id+"/stats")
+                .statusCode(OK.value())
+                .data(Map.of(PRODUCT_KEY, product, STATS_KEY, stats))
+                .build();
+    }
+
+    /**
+     * Creates a new product in a machine and adds it to the inventory of the machine.
+     * The inventory store enforces the quantity cap under concurrent requests,
+     * and the product is inserted in the same transaction.
+     *
+     * @param machineId The ID of the machine.
+     * @param product   The product data to be created.
      * @return ProductResponseDto containing the created product and status information.
      */
     @Override
-    public ProductResponseDto createProduct(ProductDTO product) {
+    @Transactional
+    public ProductResponseDto createProduct(String machineId, ProductDTO product) {
+        if (writeBehindPipeline.isPresent()) {
+            return writeBehindResponse(writeBehindPipeline.get().restock(machineId, product), productApiPath(machineId));
+        }
 
         var productName = product.getProductName();
-        Inventar inventar = inventarRepository.findByProductName(productName);
-
-        if(inventar == null) {
-            inventar = new Inventar();
-            inventar.setId(UUID.randomUUID().toString());
-            inventar.setProductName(productName);
-            inventar.setQuantity(1);
-            inventarRepository.save(inventar);
-        }
-        else {
-            if(inventar.getQuantity() > 9) {
-                return ProductResponseDto.builder()
-                        .timestamp(Instant.now().toString())
-                        .message("Inventar quantity shall not be more than than for a dedicated product")
+        var inventarQuantity = isInventarFull(machineId, productName) ? null : inventoryStore
+                .increment(machineId, productName, MAX_PRODUCT_QUANTITY)
+                .orElse(null);
+
+        if(inventarQuantity == null) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message("Inventar quantity shall not be more than than for a dedicated product")
+                    .status(BAD_REQUEST)
+                    .error("Product cannot be added")
+                    .path(productApiPath(machineId))
+                    .statusCode(BAD_REQUEST.value())
+                    .data(Map.of(PRODUCT_KEY, product))
+                    .build();
+        }
+
+        Product newProduct = productMapper.mapToProduct(product);
+        newProduct.setMachineId(machineId);
+        newProduct.setInventar(inventarRepository.getReferenceById(inventarQuantity.getId()));
+        Product save = productRepository.save(newProduct);
+
+        ProductDTO saved = productMapper.mapToProductDTO(save);
+        saved.setInventar(new Inventar(inventarQuantity.getId(), machineId, productName, inventarQuantity.getQuantity()));
+        eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.CREATED, machineId, save.getProductId(), productName, inventarQuantity.getQuantity()));
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(CREATED)
+                .error(null)
+                .path(productApiPath(machineId))
+                .statusCode(CREATED.value())
+                .data(Map.of(PRODUCT_KEY, saved))
+                .build();
+    }
+
+    /**
+     * Creates several products in a machine in one transaction and adds them to the inventory of the machine.
+     * The inventory store grants the units of all product names at once, applying the quantity cap
+     * across the whole batch, and the products are written with JDBC batch inserts.
+     *
+     * @param machineId The ID of the machine.
+     * @param products  The product data to be created.
+     * @return ProductResponseDto containing one result per requested product, in request order.
+     */
+    @Override
+    @Transactional
+    public ProductResponseDto createProducts(String machineId, List<ProductDTO> products) {
+        if (products.size() > MAX_BATCH_SIZE) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message("A batch shall not contain more than " + MAX_BATCH_SIZE + " products")
+                    .status(BAD_REQUEST)
+                    .error("Products cannot be added")
+                    .path(productApiPath(machineId) + "batch")
+                    .statusCode(BAD_REQUEST.value())
+                    .data(Map.of(PRODUCTS_KEY, List.of()))
+                    .build();
+        }
+
+        SortedMap<String, Integer> units = products.stream()
+                .map(ProductDTO::getProductName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Function.identity(), productName -> 1, Integer::sum, TreeMap::new));
+        Map<String, InventoryStore.Grant> grants = inventoryStore.increment(machineId, units, MAX_PRODUCT_QUANTITY);
+        Map<String, Integer> remaining = new HashMap<>();
+        grants.forEach((productName, grant) -> remaining.put(productName, grant.granted()));
+
+        ProductBatchItemDTO[] results = new ProductBatchItemDTO[products.size()];
+        Map<Integer, Product> newProducts = new LinkedHashMap<>();
+        for (int index = 0; index < products.size(); index++) {
+            ProductDTO product = products.get(index);
+            InventoryStore.Grant grant = product.getProductName() == null ? null : grants.get(product.getProductName());
+            if (grant == null || remaining.get(product.getProductName()) == 0) {
+                results[index] = ProductBatchItemDTO.builder()
+                        .index(index)
                         .status(BAD_REQUEST)
-                        .error("Product cannot be added")
-                        .path(PRODUCT_API_PATH)
                         .statusCode(BAD_REQUEST.value())
-                        .data(Map.of(PRODUCT_KEY, product))
+                        .message(grant == null ? "Product name is missing" : "Inventar quantity shall not be more than than for a dedicated product")
+                        .rejection(grant == null ? ProductBatchItemDTO.Rejection.NAME_MISSING : ProductBatchItemDTO.Rejection.INVENTORY_CAP)
+                        .product(product)
                         .build();
+                continue;
             }
-            inventar.setQuantity(inventar.getQuantity() + 1);
-            inventarRepository.save(inventar);
+            remaining.merge(product.getProductName(), -1, Integer::sum);
+            Product newProduct = productMapper.mapToProduct(product);
+            newProduct.setProductId(null);
+            newProduct.setMachineId(machineId);
+            newProduct.setInventar(inventarRepository.getReferenceById(grant.inventarId()));
+            newProducts.put(index, newProduct);
         }
 
-        product.setInventar(inventar);
-        Product save = productRepository.save(PRODUCT_MAPPER.mapToProduct(product));
+        productRepository.saveAll(newProducts.values());
+        newProducts.forEach((index, save) -> {
+            InventoryStore.Grant grant = grants.get(save.getProductName());
+            ProductDTO saved = productMapper.mapToProductDTO(save);
+            saved.setInventar(new Inventar(grant.inventarId(), machineId, save.getProductName(), grant.quantity()));
+            results[index] = ProductBatchItemDTO.builder()
+                    .index(index)
+                    .status(CREATED)
+                    .statusCode(CREATED.value())
+                    .product(saved)
+                    .build();
+            eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.CREATED, machineId, save.getProductId(), save.getProductName(), grant.quantity()));
+        });
+
+        var status = newProducts.size() == products.size() ? CREATED : newProducts.isEmpty() ? BAD_REQUEST : MULTI_STATUS;
         return ProductResponseDto.builder()
                 .timestamp(Instant.now().toString())
-                .status(CREATED)
+                .status(status)
+                .message(newProducts.size() + " of " + products.size() + " products added")
                 .error(null)
-                .path(PRODUCT_API_PATH)
-                .statusCode(CREATED.value())
-                .data(Map.of(PRODUCT_KEY, PRODUCT_MAPPER.mapToProductDTO(save)))
+                .path(productApiPath(machineId) + "batch")
+                .statusCode(status.value())
+                .data(Map.of(PRODUCTS_KEY, List.of(results)))
                 .build();
     }
 
     /**
-     * Deletes a product by its ID and updates the associated inventory.
+     * Imports the product units of a CSV or NDJSON file into a machine in one transaction.
+     * The file is streamed into the database, so its size is only bounded by the disk and the
+     * database; units over the quantity cap and invalid lines are reported, not imported.
+     * The edge profile has no database to stream into and answers NOT_IMPLEMENTED.
      *
-     * @param id The ID of the product to delete.
-     * @return ProductResponseDto containing product data and status information.
+     * @param machineId   The ID of the machine.
+     * @param input       The file, UTF-8 encoded.
+     * @param fileName    The name of the file, used to detect its format.
+     * @param contentType The content type of the file, used to detect its format, or null.
+     * @return ProductResponseDto containing the import counts and status information.
      */
     @Override
-    public ProductResponseDto deleteProduct(Integer id) {
-        Product product = findProductById(id);
-        if (product != null) {
-            var productName = product.getProductName();
-            Inventar inventar = inventarRepository.findByProductName(productName);
-            if(inventar != null) {
-                inventar.setQuantity(inventar.getQuantity() - 1);
-                inventarRepository.save(inventar);
-            }
+    public ProductResponseDto importProducts(String machineId, InputStream input, String fileName, String contentType) {
+        if (productImporter.isEmpty()) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message("Bulk import needs Postgres and is not available in the edge profile")
+                    .status(NOT_IMPLEMENTED)
+                    .error("Products cannot be imported")
+                    .path(productApiPath(machineId) + "import")
+                    .statusCode(NOT_IMPLEMENTED.value())
+                    .data(Map.of(IMPORT_KEY, new ProductImportResultDTO()))
+                    .build();
+        }
+        ProductImportResultDTO result;
+        try {
+            result = productImporter.get().importProducts(machineId, input, ProductImportFormat.of(fileName, contentType));
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            return ProductResponseDto.builder()
+                    .timestamp(Instant.now().toString())
+                    .message(e.getMessage())
+                    .status(BAD_REQUEST)
+                    .error("Products cannot be imported")
+                    .path(productApiPath(machineId) + "import")
+                    .statusCode(BAD_REQUEST.value())
+                    .data(Map.of(IMPORT_KEY, new ProductImportResultDTO()))
+                    .build();
+        }
+
+        var status = result.getImported() == 0 ? BAD_REQUEST : result.getImported().equals(result.getRows()) ? CREATED : MULTI_STATUS;
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(status)
+                .message(result.getImported() + " of " + result.getRows() + " products imported")
+                .error(null)
+                .path(productApiPath(machineId) + "import")
+                .statusCode(status.value())
+                .data(Map.of(IMPORT_KEY, result))
+                .build();
+    }
 
-            productRepository.deleteById(id);
+    /**
+     * Deletes a product of a machine by its ID and updates the associated inventory.
+     * The inventory is only decremented when this call actually deleted the product,
+     * so concurrent deletes of the same product remove a single unit.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to delete.
+     * @return ProductResponseDto containing product data and status information.
+     */
+    @Override
+    @Transactional
+    public ProductResponseDto deleteProduct(String machineId, Integer id) {
+        if (writeBehindPipeline.isPresent()) {
+            var admission = writeBehindPipeline.get().vend(machineId, id);
+            return admission.status() == NOT_FOUND ? productNotFoundById(machineId, id) : writeBehindResponse(admission, productApiPath(machineId) + id);
+        }
+        ProductDTO product = findProductById(machineId, id);
+        if (product != null && productRepository.deleteByProductId(machineId, id) > 0) {
+            int quantity = inventoryStore.decrement(machineId, product.getProductName());
+            eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.DELETED, machineId, id, product.getProductName(), quantity));
             return ProductResponseDto.builder()
                     .timestamp(Instant.now().toString())
                     .status(OK)
                     .error(null)
                     .statusCode(OK.value())
-                    .path(PRODUCT_API_PATH+id)
-                    .data(Map.of(PRODUCT_KEY, PRODUCT_MAPPER.mapToProductDTO(product)))
+                    .path(productApiPath(machineId)+id)
+                    .data(Map.of(PRODUCT_KEY, product))
                     .build();
         }
-        return productNotFoundById(id);
+        return product != null && productRepository.isReserved(machineId, id) ? productReserved(machineId, id) : productNotFoundById(machineId, id);
     }
 
     /**
-     * Updates an existing product's details.
+     * Reserves a product unit for a two-phase vend: the unit is held for {@code app.reservations.ttl}
+     * and can only be vended by confirming the reservation. A reservation that is neither confirmed
+     * nor released in time goes back to stock by itself. Concurrent reservations of the same unit
+     * are serialized by its row, so only one of them succeeds.
      *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to reserve.
+     * @return ProductResponseDto containing the product and the reservation, with status CREATED.
+     */
+    @Override
+    @Transactional
+    public ProductResponseDto reserveProduct(String machineId, Integer id) {
+        ProductDTO product = findProductById(machineId, id);
+        if (product == null) {
+            return productNotFoundById(machineId, id);
+        }
+        UUID reservationId = UUID.randomUUID();
+        Optional<Long> reservedUntil = productRepository.reserve(machineId, id, reservationId, reservationExpirer.ttl().toMillis());
+        if (reservedUntil.isEmpty()) {
+            return productRepository.isReserved(machineId, id) ? productReserved(machineId, id) : productNotFoundById(machineId, id);
+        }
+        reservationExpirer.schedule(machineId, reservationId);
+        var reservation = ReservationDTO.builder()
+                .reservationId(reservationId.toString())
+                .machineId(machineId)
+                .productId(id)
+                .expiresAt(Instant.ofEpochMilli(reservedUntil.get()).toString())
+                .build();
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(CREATED)
+                .message("Product reserved until " + reservation.getExpiresAt())
+                .error(null)
+                .statusCode(CREATED.value())
+                .path(productApiPath(machineId)+id+"/reservations")
+                .data(Map.of(PRODUCT_KEY, product, RESERVATION_KEY, reservation))
+                .build();
+    }
+
+    /**
+     * Confirms a reservation: the held product is deleted and the inventory decremented, like a vend.
+     * An expired reservation cannot be confirmed, its unit may have been reserved by another client.
+     *
+     * @param machineId     The ID of the machine.
+     * @param reservationId The ID of the reservation.
+     * @return ProductResponseDto containing the vended product and status information.
+     */
+    @Override
+    @Transactional
+    public ProductResponseDto confirmReservation(String machineId, String reservationId) {
+        UUID id = parseReservationId(reservationId);
+        Optional<ProductRepository.DeletedProduct> vended = id == null ? Optional.empty() : productRepository.deleteReserved(machineId, id);
+        if (vended.isEmpty()) {
+            return reservationNotFound(machineId, reservationId);
+        }
+        reservationExpirer.cancel(id);
+        var deleted = vended.get();
+        int quantity = inventoryStore.decrement(machineId, deleted.getProductName());
+        eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.DELETED, machineId, deleted.getProductId(), deleted.getProductName(), quantity));
+        var product = ProductDTO.builder()
+                .productId(deleted.getProductId())
+                .machineId(machineId)
+                .productName(deleted.getProductName())
+                .build();
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(OK)
+                .error(null)
+                .statusCode(OK.value())
+                .path(reservationPath(machineId, reservationId)+"/confirm")
+                .data(Map.of(PRODUCT_KEY, product))
+                .build();
+    }
+
+    /**
+     * Releases a reservation, for instance after a failed payment: its unit goes back to stock at once.
+     *
+     * @param machineId     The ID of the machine.
+     * @param reservationId The ID of the reservation.
+     * @return ProductResponseDto containing the released reservation and status information.
+     */
+    @Override
+    @Transactional
+    public ProductResponseDto releaseReservation(String machineId, String reservationId) {
+        UUID id = parseReservationId(reservationId);
+        if (id == null || productRepository.release(machineId, id) == 0) {
+            return reservationNotFound(machineId, reservationId);
+        }
+        reservationExpirer.cancel(id);
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(OK)
+                .error(null)
+                .statusCode(OK.value())
+                .path(reservationPath(machineId, reservationId))
+                .data(Map.of(RESERVATION_KEY, ReservationDTO.builder().reservationId(reservationId).machineId(machineId).build()))
+                .build();
+    }
+
+    /**
+     * Updates the name and price of an existing product of a machine with a single statement.
+     * The product keeps its machine and inventory.
+     *
+     * @param machineId  The ID of the machine.
      * @param productDTO The updated product data.
      * @param id         The ID of the product to update.
      * @return ProductResponseDto containing the updated product and status information.
      */
     @Override
-    public ProductResponseDto updateProduct(ProductDTO productDTO, Integer id) {
-        Product findProductById = findProductById(id);
-        if (findProductById != null && findProductById.getProductId().equals(id)) {
-            var update = productRepository.save(PRODUCT_MAPPER.mapToProduct(productDTO));
+    @Transactional
+    public ProductResponseDto updateProduct(String machineId, ProductDTO productDTO, Integer id) {
+        ProductDTO findProductById = findProductById(machineId, id);
+        if (findProductById != null
+                && productRepository.updateProduct(machineId, id, productDTO.getProductName(), productDTO.getProductPrice()) > 0) {
+            var update = new ProductDTO(id, machineId, productDTO.getProductName(), productDTO.getProductPrice(), findProductById.getInventar());
+            var inventar = findProductById.getInventar();
+            eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.UPDATED, machineId, id, update.getProductName(),
+                    inventar == null ? null : inventar.getQuantity()));
             return ProductResponseDto.builder()
                     .timestamp(Instant.now().toString())
                     .status(OK)
                     .error(null)
                     .statusCode(OK.value())
-                    .path(PRODUCT_API_PATH+id)
-                    .data(Map.of(PRODUCT_KEY, PRODUCT_MAPPER.mapToProductDTO(update)))
+                    .path(productApiPath(machineId)+id)
+                    .data(Map.of(PRODUCT_KEY, update))
                     .build();
         }
 
@@ -180,29 +652,114 @@ public class ProductServiceImpl implements ProductService {
 
 
     /**
-     * Finds a product by its ID.
+     * Finds a product of a machine by its ID through the product cache.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to find.
+     * @return ProductDTO object if found, or null if not found.
+     */
+    private ProductDTO findProductById(String machineId, Integer id) {
+        return productCache.findProduct(machineId, id);
+    }
+
+    /**
+     * Checks the cached inventory of a product name, so requests for a full inventory
+     * are rejected without a database round trip. A cache miss is not loaded here.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name of the inventory.
+     * @return true if the cached inventory has reached the maximum quantity.
+     */
+    private boolean isInventarFull(String machineId, String productName) {
+        Inventar inventar = productCache.getCachedInventar(machineId, productName);
+        return inventar != null && inventar.getQuantity() >= MAX_PRODUCT_QUANTITY;
+    }
+
+    /**
+     * Creates a ProductResponseDto for an operation submitted to the write-behind pipeline.
+     *
+     * @param admission The outcome of the submission.
+     * @param path      The path of the request.
+     * @return ProductResponseDto with status ACCEPTED, or the reason of the rejection.
+     */
+    private ProductResponseDto writeBehindResponse(WriteBehindPipeline.Admission admission, String path) {
+        boolean accepted = admission.status() == ACCEPTED;
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(admission.status())
+                .message(accepted ? "Accepted, the change will be written shortly" : admission.message())
+                .error(accepted ? null : "Product cannot be changed")
+                .path(path)
+                .statusCode(admission.status().value())
+                .data(Map.of(PRODUCT_KEY, admission.product() == null ? new ProductDTO() : admission.product()))
+                .build();
+    }
+
+    private static String reservationPath(String machineId, String reservationId) {
+        return productApiPath(machineId)+"reservations/"+reservationId;
+    }
+
+    private static UUID parseReservationId(String reservationId) {
+        try {
+            return UUID.fromString(reservationId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a ProductResponseDto indicating that the product is held by a reservation.
      *
-     * @param id The ID of the product to find.
-     * @return Product object if found, or null if not found.
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the reserved product.
+     * @return ProductResponseDto containing an error message and status.
      */
-    private Product findProductById(Integer id) {
-        return productRepository.findById(id).orElse(null);
+    private ProductResponseDto productReserved(String machineId, Integer id) {
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(CONFLICT)
+                .error("Product is reserved")
+                .message("Product is held by a reservation: "+id)
+                .statusCode(CONFLICT.value())
+                .path(productApiPath(machineId)+id)
+                .data(Map.of(PRODUCT_KEY, new ProductDTO()))
+                .build();
+    }
+
+    /**
+     * Creates a ProductResponseDto indicating that the reservation does not exist or has expired.
+     *
+     * @param machineId     The ID of the machine.
+     * @param reservationId The ID of the reservation.
+     * @return ProductResponseDto containing an error message and status.
+     */
+    private ProductResponseDto reservationNotFound(String machineId, String reservationId) {
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(NOT_FOUND)
+                .error("Reservation does not exist or has expired")
+                .message("Reservation not found by ID: "+reservationId)
+                .statusCode(NOT_FOUND.value())
+                .path(reservationPath(machineId, reservationId))
+                .data(Map.of(RESERVATION_KEY, new ReservationDTO()))
+                .build();
     }
 
     /**
      * Creates a ProductResponseDto indicating that the product was not found by ID.
      *
-     * @param id The ID of the product that was not found.
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product that was not found.
      * @return ProductResponseDto containing an error message and status.
      */
-    private ProductResponseDto productNotFoundById(Integer id) {
+    private ProductResponseDto productNotFoundById(String machineId, Integer id) {
         return ProductResponseDto.builder()
                 .timestamp(Instant.now().toString())
                 .status(NOT_FOUND)
                 .error("Product does not exist in the DB")
                 .message("Product not found by ID: "+id)
                 .statusCode(NOT_FOUND.value())
-                .path(PRODUCT_API_PATH+id)
+                .path(productApiPath(machineId)+id)
                 .data(Map.of(PRODUCT_KEY, new ProductDTO()))
                 .build();
     }
@@ -0,0 +1,330 @@
+package akros.vendingmachine.service.impl;
+
+import akros.vendingmachine.cache.CacheInvalidationNotifier;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.service.ReactiveProductService;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_ID_ALLOCATION_SIZE;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.productApiPath;
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * Reactive implementation of the {@link ReactiveProductService} interface, active with the
+ * {@code reactive} profile. It works on the same machine-partitioned {@code product}/{@code inventar}
+ * schema as {@link ProductServiceImpl} through R2DBC and keeps the {@link ProductResponseDto} envelope.
+ * <p>
+ * The JPA path holds a request thread and, for the duration of each repository call, a Hikari
+ * connection, so its concurrency is capped by the servlet thread pool and the JDBC pool, and
+ * every waiting request parks a platform thread. Here the request thread is released as soon
+ * as the publisher is returned, the driver performs I/O on a few event-loop threads, and a
+ * connection is only held while a statement or transaction runs. Concurrency is then bounded
+ * by the R2DBC pool and the database rather than by threads, and requests beyond it wait as
+ * queued subscriptions instead of blocked threads. Compare both under the same arrival rate with
+ * {@code ./gradlew loadTest} and {@code ./gradlew loadTest --args=--spring.profiles.active=reactive}.
+ * <p>
+ * Every write notifies the other nodes with the payload of the {@link CacheInvalidationNotifier}
+ * inside its transaction, and publishes its {@link ProductChangedEvent} to the caches, search index
+ * and event stream of this node once the transaction has committed.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ * @see ProductServiceImpl
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveProductServiceImpl implements ReactiveProductService {
+
+    private static final String SELECT_PRODUCTS = """
+            SELECT p.product_id, p.machine_id, p.product_name, p.product_price,
+                   i.id AS inventar_id, i.product_name AS inventar_product_name, i.quantity
+            FROM product p LEFT JOIN inventar i ON i.machine_id = p.machine_id AND i.id = p.inventar_id
+            WHERE p.machine_id = :machineId
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator reactiveTransactionalOperator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Optional<CacheInvalidationNotifier> cacheInvalidationNotifier;
+
+    private final Object productIdLock = new Object();
+    private long nextProductId;
+    private long maxProductId = -1;
+
+    /**
+     * Retrieves all products of a machine, emitted as they are read.
+     *
+     * @param machineId The ID of the machine.
+     * @return Flux of ProductDTO objects representing all products.
+     */
+    @Override
+    public Flux<ProductDTO> getProducts(String machineId) {
+        return databaseClient.sql(SELECT_PRODUCTS + "ORDER BY p.product_id")
+                .bind("machineId", machineId)
+                .map(ReactiveProductServiceImpl::mapToProductDTO)
+                .all();
+    }
+
+    /**
+     * Retrieves a product of a machine by its ID.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to retrieve.
+     * @return Mono of ProductResponseDto containing product data and status information.
+     */
+    @Override
+    public Mono<ProductResponseDto> getProduct(String machineId, Integer id) {
+        return databaseClient.sql(SELECT_PRODUCTS + "AND p.product_id = :id")
+                .bind("machineId", machineId)
+                .bind("id", id)
+                .map(ReactiveProductServiceImpl::mapToProductDTO)
+                .one()
+                .map(product -> ProductResponseDto.builder()
+                        .timestamp(Instant.now().toString())
+                        .status(OK)
+                        .message("Product found by ID: "+id)
+                        .error(null)
+                        .path(productApiPath(machineId)+id)
+                        .statusCode(OK.value())
+                        .data(Map.of(PRODUCT_KEY, product))
+                        .build())
+                .switchIfEmpty(Mono.fromSupplier(() -> productNotFoundById(machineId, id)));
+    }
+
+    /**
+     * Creates a new product in a machine and adds it to the inventory of the machine in one transaction,
+     * with the same conditional upsert as the JPA implementation.
+     *
+     * @param machineId The ID of the machine.
+     * @param product   The product data to be created.
+     * @return Mono of ProductResponseDto containing the created product and status information.
+     */
+    @Override
+    public Mono<ProductResponseDto> createProduct(String machineId, ProductDTO product) {
+        var productName = product.getProductName();
+        Mono<ProductResponseDto> create = databaseClient.sql("""
+                        INSERT INTO inventar (machine_id, id, product_name, quantity) VALUES (:machineId, :id, :productName, 1)
+                        ON CONFLICT (machine_id, product_name) DO UPDATE SET quantity = inventar.quantity + 1
+                        WHERE inventar.quantity < :maxQuantity
+                        RETURNING id, quantity
+                        """)
+                .bind("machineId", machineId)
+                .bind("id", UUID.randomUUID().toString())
+                .bind("productName", productName)
+                .bind("maxQuantity", MAX_PRODUCT_QUANTITY)
+                .map(row -> new Inventar(row.get("id", String.class), machineId, productName, row.get("quantity", Integer.class)))
+                .one()
+                .flatMap(inventar -> nextProductId().flatMap(productId -> bindPrice(databaseClient.sql("""
+                                INSERT INTO product (product_id, machine_id, product_name, product_price, inventar_id)
+                                VALUES (:productId, :machineId, :productName, :productPrice, :inventarId)
+                                """), product.getProductPrice())
+                        .bind("productId", productId)
+                        .bind("machineId", machineId)
+                        .bind("productName", productName)
+                        .bind("inventarId", inventar.getId())
+                        .then()
+                        .then(changed(ProductChangedEvent.notified(ChangeType.CREATED, machineId, productId, productName, inventar.getQuantity())))
+                        .thenReturn(ProductResponseDto.builder()
+                                .timestamp(Instant.now().toString())
+                                .status(CREATED)
+                                .error(null)
+                                .path(productApiPath(machineId))
+                                .statusCode(CREATED.value())
+                                .data(Map.of(PRODUCT_KEY, new ProductDTO(productId, machineId, productName, product.getProductPrice(), inventar)))
+                                .build())))
+                .switchIfEmpty(Mono.fromSupplier(() -> ProductResponseDto.builder()
+                        .timestamp(Instant.now().toString())
+                        .message("Inventar quantity shall not be more than than for a dedicated product")
+                        .status(BAD_REQUEST)
+                        .error("Product cannot be added")
+                        .path(productApiPath(machineId))
+                        .statusCode(BAD_REQUEST.value())
+                        .data(Map.of(PRODUCT_KEY, product))
+                        .build()));
+        return reactiveTransactionalOperator.transactional(create);
+    }
+
+    /**
+     * Deletes a product of a machine by its ID and updates the associated inventory in one transaction.
+     * A product held by an unexpired reservation is not deleted.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to delete.
+     * @return Mono of ProductResponseDto containing product data and status information.
+     */
+    @Override
+    public Mono<ProductResponseDto> deleteProduct(String machineId, Integer id) {
+        Mono<ProductResponseDto> delete = databaseClient.sql("""
+                        DELETE FROM product WHERE machine_id = :machineId AND product_id = :id
+                            AND (reserved_until IS NULL OR reserved_until <= now())
+                        RETURNING product_id, product_name, product_price
+                        """)
+                .bind("machineId", machineId)
+                .bind("id", id)
+                .map(row -> ProductDTO.builder()
+                        .productId(row.get("product_id", Integer.class))
+                        .machineId(machineId)
+                        .productName(row.get("product_name", String.class))
+                        .productPrice(row.get("product_price", Integer.class))
+                        .build())
+                .one()
+                .flatMap(product -> databaseClient.sql("""
+                                UPDATE inventar SET quantity = quantity - 1
+                                WHERE machine_id = :machineId AND product_name = :productName AND quantity > 0
+                                RETURNING quantity
+                                """)
+                        .bind("machineId", machineId)
+                        .bind("productName", product.getProductName())
+                        .map(row -> row.get("quantity", Integer.class))
+                        .one()
+                        .defaultIfEmpty(0)
+                        .flatMap(quantity -> changed(ProductChangedEvent.notified(ChangeType.DELETED, machineId, id, product.getProductName(), quantity)))
+                        .thenReturn(ProductResponseDto.builder()
+                                .timestamp(Instant.now().toString())
+                                .status(OK)
+                                .error(null)
+                                .statusCode(OK.value())
+                                .path(productApiPath(machineId)+id)
+                                .data(Map.of(PRODUCT_KEY, product))
+                                .build()))
+                .switchIfEmpty(Mono.fromSupplier(() -> productNotFoundById(machineId, id)));
+        return reactiveTransactionalOperator.transactional(delete);
+    }
+
+    /**
+     * Updates the name and price of an existing product of a machine in one transaction.
+     *
+     * @param machineId  The ID of the machine.
+     * @param productDTO The updated product data.
+     * @param id         The ID of the product to update.
+     * @return Mono of ProductResponseDto containing the updated product, or empty if not found.
+     */
+    @Override
+    public Mono<ProductResponseDto> updateProduct(String machineId, ProductDTO productDTO, Integer id) {
+        Mono<ProductResponseDto> update = bindPrice(databaseClient.sql("""
+                        UPDATE product SET product_name = :productName, product_price = :productPrice
+                        WHERE machine_id = :machineId AND product_id = :id
+                        """), productDTO.getProductPrice())
+                .bind("machineId", machineId)
+                .bind("id", id)
+                .bind("productName", productDTO.getProductName())
+                .fetch()
+                .rowsUpdated()
+                .filter(rowsUpdated -> rowsUpdated > 0)
+                .flatMap(rowsUpdated -> getProduct(machineId, id))
+                .flatMap(response -> {
+                    var inventar = ((ProductDTO) response.getData().get(PRODUCT_KEY)).getInventar();
+                    return changed(ProductChangedEvent.notified(ChangeType.UPDATED, machineId, id, productDTO.getProductName(),
+                            inventar == null ? null : inventar.getQuantity()))
+                            .thenReturn(response);
+                });
+        return reactiveTransactionalOperator.transactional(update);
+    }
+
+    /**
+     * Notifies the other nodes of a change inside the current transaction, so Postgres delivers the
+     * notification exactly when the transaction commits, and publishes the change to the listeners of
+     * this node after the commit. The listeners may block on JDBC, so they run on a worker thread.
+     *
+     * @param event The change, already marked as notified so it is not forwarded again.
+     * @return Mono completing once the notification is sent.
+     */
+    private Mono<Void> changed(ProductChangedEvent event) {
+        Mono<Void> notifyOtherNodes = cacheInvalidationNotifier
+                .map(notifier -> Flux.fromIterable(notifier.payloads(List.of(event)))
+                        .concatMap(payload -> databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                                .bind("channel", notifier.channel())
+                                .bind("payload", payload)
+                                .then())
+                        .then())
+                .orElse(Mono.empty());
+        return notifyOtherNodes.then(TransactionSynchronizationManager.forCurrentTransaction()
+                .doOnNext(synchronizations -> synchronizations.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCommit() {
+                        return Mono.<Void>fromRunnable(() -> eventPublisher.publishEvent(event))
+                                .subscribeOn(Schedulers.boundedElastic());
+                    }
+                }))
+                .then());
+    }
+
+    /**
+     * Hands out product IDs from blocks of the {@code product_seq} sequence, in the same way
+     * as the pooled optimizer of the JPA mapping, so both implementations can share the sequence.
+     *
+     * @return Mono of the next product ID.
+     */
+    private Mono<Integer> nextProductId() {
+        synchronized (productIdLock) {
+            if (nextProductId <= maxProductId) {
+                return Mono.just((int) nextProductId++);
+            }
+        }
+        return databaseClient.sql("SELECT nextval('product_seq')")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(hi -> {
+                    long low = Math.max(1, hi - PRODUCT_ID_ALLOCATION_SIZE + 1);
+                    synchronized (productIdLock) {
+                        nextProductId = low + 1;
+                        maxProductId = hi;
+                    }
+                    return (int) low;
+                });
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindPrice(DatabaseClient.GenericExecuteSpec spec, Integer productPrice) {
+        return productPrice == null ? spec.bindNull("productPrice", Integer.class) : spec.bind("productPrice", productPrice);
+    }
+
+    private static ProductDTO mapToProductDTO(Readable row) {
+        var inventarId = row.get("inventar_id", String.class);
+        var machineId = row.get("machine_id", String.class);
+        return ProductDTO.builder()
+                .productId(row.get("product_id", Integer.class))
+                .machineId(machineId)
+                .productName(row.get("product_name", String.class))
+                .productPrice(row.get("product_price", Integer.class))
+                .inventar(inventarId == null ? null : new Inventar(inventarId, machineId,
+                        row.get("inventar_product_name", String.class), row.get("quantity", Integer.class)))
+                .build();
+    }
+
+    private static ProductResponseDto productNotFoundById(String machineId, Integer id) {
+        return ProductResponseDto.builder()
+                .timestamp(Instant.now().toString())
+                .status(NOT_FOUND)
+                .error("Product does not exist in the DB")
+                .message("Product not found by ID: "+id)
+                .statusCode(NOT_FOUND.value())
+                .path(productApiPath(machineId)+id)
+                .data(Map.of(PRODUCT_KEY, new ProductDTO()))
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+package akros.vendingmachine.service.impl;
+
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+import akros.vendingmachine.service.InventoryStore;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.UUID;
+
+/**
+ * {@link InventoryStore} updating {@code Inventar.quantity} in place.
+ * Single units are added with one conditional upsert, batches lock the inventory rows
+ * in product name order.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Service
+@AllArgsConstructor
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "row", matchIfMissing = true)
+public class RowInventoryStore implements InventoryStore {
+
+    private final InventarRepository inventarRepository;
+
+    @Override
+    public Optional<InventarQuantity> increment(String machineId, String productName, int maxQuantity) {
+        return inventarRepository.incrementQuantity(UUID.randomUUID().toString(), machineId, productName, maxQuantity);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Grant> increment(String machineId, SortedMap<String, Integer> units, int maxQuantity) {
+        String[] productNames = units.keySet().toArray(String[]::new);
+        inventarRepository.insertMissing(machineId, productNames);
+        Map<String, Grant> grants = new LinkedHashMap<>();
+        for (Inventar inventar : inventarRepository.findByMachineIdAndProductNameInOrderByProductName(machineId, List.of(productNames))) {
+            int granted = Math.max(0, Math.min(units.get(inventar.getProductName()), maxQuantity - inventar.getQuantity()));
+            inventar.setQuantity(inventar.getQuantity() + granted);
+            grants.put(inventar.getProductName(), new Grant(inventar.getId(), granted, inventar.getQuantity()));
+        }
+        return grants;
+    }
+
+    @Override
+    public int decrement(String machineId, String productName) {
+        return inventarRepository.decrementQuantity(machineId, productName).orElse(0);
+    }
+
+    @Override
+    public void decrement(String machineId, SortedMap<String, Integer> units) {
+        inventarRepository.decrementQuantities(machineId, units.keySet().toArray(String[]::new), units.values().toArray(Integer[]::new));
+    }
+
+    @Override
+    public Inventar find(String machineId, String productName) {
+        return inventarRepository.findCurrent(machineId, productName);
+    }
+
+    @Override
+    public List<Inventar> findAll() {
+        return inventarRepository.findAll();
+    }
+}
@@ -0,0 +1,304 @@
+package akros.vendingmachine.sse;
+
+import akros.vendingmachine.cache.CacheNode;
+import akros.vendingmachine.config.EventStreamProperties;
+import akros.vendingmachine.datasource.ReplicaRouting;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductEventDTO;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.service.InventoryStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the committed product changes of a machine, with the resulting quantity of the
+ * inventory of the product name, to Server-Sent Events subscribers, so clients no longer
+ * have to poll the catalog to notice them.
+ * <p>
+ * Every change gets the next ID of this node, prefixed with the {@link CacheNode} ID, and is kept
+ * in a ring buffer of the last {@code app.events.buffer-size} changes. A client reconnecting with
+ * {@code Last-Event-ID} first receives the changes it missed, or a {@value #RESET} event when they
+ * are no longer buffered or the ID was issued by another node or before a restart, telling it to
+ * read the catalog again.
+ * <p>
+ * The quantity is carried by the change itself. Only changes that do not carry it, like
+ * write-behind removals, read the inventory, and only while the machine has subscribers.
+ * <p>
+ * Idle subscribers hold no thread: their requests are asynchronous, and events are written
+ * by a virtual thread per busy subscriber. Publishing only appends to the bounded queue of
+ * each subscriber, and a subscriber whose queue is full is disconnected instead of slowing
+ * down the writers; it resumes from the ring buffer when it reconnects.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+public class ProductEventStream implements MeterBinder {
+
+    static final String RESET = "reset";
+
+    private static final BufferedEvent HEARTBEAT = new BufferedEvent(0, null, null, null);
+
+    private final InventoryStore inventoryStore;
+    private final ObjectMapper objectMapper;
+    private final EventStreamProperties properties;
+    private final String nodeId;
+    private final BufferedEvent[] buffer;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder dropped = new LongAdder();
+    private long lastId;
+
+    public ProductEventStream(InventoryStore inventoryStore, ObjectMapper objectMapper, EventStreamProperties properties, CacheNode cacheNode) {
+        this.inventoryStore = inventoryStore;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.nodeId = cacheNode.getId();
+        this.buffer = new BufferedEvent[properties.getBufferSize()];
+    }
+
+    /**
+     * Subscribes to the changes of a machine.
+     *
+     * @param machineId   The ID of the machine.
+     * @param lastEventId The ID of the last event the client received, or null for a new client.
+     * @return The emitter of the subscription.
+     */
+    public SseEmitter subscribe(String machineId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        Long after = parse(lastEventId);
+        Subscriber subscriber;
+        synchronized (this) {
+            List<BufferedEvent> missed = after == null ? List.of() : missed(machineId, after);
+            // the missed events do not count against the queue capacity
+            subscriber = new Subscriber(machineId, emitter, properties.getSubscriberQueueCapacity() + missed.size());
+            missed.forEach(subscriber::offer);
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Publishes a committed product change with the quantity of the inventory of its product name.
+     *
+     * @param event The committed product change.
+     */
+    @Order(3)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        publish(ProductEventDTO.builder()
+                .type(event.getType().name().toLowerCase(Locale.ROOT))
+                .machineId(event.getMachineId())
+                .productId(event.getProductId())
+                .productName(event.getProductName())
+                .quantity(quantity(event))
+                .build());
+    }
+
+    /**
+     * Sends a comment to every subscriber, so proxies keep idle streams open and
+     * disconnected clients are noticed.
+     */
+    @Scheduled(fixedDelayString = "${app.events.heartbeat-interval:15s}", initialDelayString = "${app.events.heartbeat-interval:15s}")
+    public void heartbeat() {
+        subscribers.forEach(Subscriber::heartbeat);
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdown();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.events.subscribers", subscribers, Set::size)
+                .description("Open product event streams")
+                .register(registry);
+        FunctionCounter.builder("product.events.dropped", dropped, LongAdder::sum)
+                .description("Product event streams disconnected because the client could not keep up")
+                .register(registry);
+    }
+
+    /**
+     * Returns the quantity carried by a change, or reads it once per change, not per subscriber,
+     * if the change does not carry it and the machine has subscribers.
+     */
+    private int quantity(ProductChangedEvent event) {
+        if (event.getQuantity() != null) {
+            return event.getQuantity();
+        }
+        if (event.getProductName() == null || subscribers.stream().noneMatch(subscriber -> subscriber.machineId.equals(event.getMachineId()))) {
+            return 0;
+        }
+        Inventar inventar = ReplicaRouting.onPrimary(() -> inventoryStore.find(event.getMachineId(), event.getProductName()));
+        return inventar == null || inventar.getQuantity() == null ? 0 : inventar.getQuantity();
+    }
+
+    private synchronized void publish(ProductEventDTO event) {
+        event.setId(eventId(++lastId));
+        BufferedEvent buffered = new BufferedEvent(lastId, event.getMachineId(), event.getType(), write(event));
+        buffer[(int) (lastId % buffer.length)] = buffered;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.machineId.equals(event.getMachineId())) {
+                subscriber.offer(buffered);
+            }
+        }
+    }
+
+    private List<BufferedEvent> missed(String machineId, long after) {
+        long oldest = Math.max(1, lastId - buffer.length + 1);
+        if (after < oldest - 1 || after > lastId) {
+            ProductEventDTO reset = ProductEventDTO.builder().id(eventId(lastId)).type(RESET).machineId(machineId).build();
+            return List.of(new BufferedEvent(lastId, machineId, RESET, write(reset)));
+        }
+        List<BufferedEvent> missed = new ArrayList<>();
+        for (long id = after + 1; id <= lastId; id++) {
+            BufferedEvent event = buffer[(int) (id % buffer.length)];
+            if (machineId.equals(event.machineId())) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    private String write(ProductEventDTO event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String eventId(long id) {
+        return nodeId + "-" + id;
+    }
+
+    /**
+     * Parses the sequence number of an event ID of this node. IDs of another node, or of this one
+     * before a restart, have another prefix and are parsed as -1, which is never buffered.
+     */
+    private Long parse(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        String prefix = nodeId + "-";
+        String id = lastEventId.trim();
+        if (!id.startsWith(prefix)) {
+            return -1L;
+        }
+        try {
+            return Long.valueOf(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private record BufferedEvent(long id, String machineId, String name, String json) {
+    }
+
+    /**
+     * One open stream. Its events are written by at most one virtual thread at a time, started
+     * when the first event is queued and ending when the queue is empty.
+     */
+    private final class Subscriber {
+
+        private final String machineId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<BufferedEvent> queue;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(String machineId, SseEmitter emitter, int queueCapacity) {
+            this.machineId = machineId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private void offer(BufferedEvent event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                drop();
+                return;
+            }
+            send();
+        }
+
+        private void heartbeat() {
+            // a full queue already has events to send, and the subscriber is dropped on the next change
+            if (!closed && queue.offer(HEARTBEAT)) {
+                send();
+            }
+        }
+
+        private void send() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                BufferedEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event == HEARTBEAT
+                            ? SseEmitter.event().comment("")
+                            : SseEmitter.event().id(eventId(event.id())).name(event.name()).data(event.json(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client is gone, the container completes the request
+                closed = true;
+                subscribers.remove(this);
+            } finally {
+                sending.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                send();
+            }
+        }
+
+        /**
+         * Disconnects a subscriber that cannot keep up. The emitter is completed by a sender,
+         * as completing it waits for a write in progress.
+         */
+        private void drop() {
+            closed = true;
+            subscribers.remove(this);
+            dropped.increment();
+            log.debug("Dropped product event subscriber of machine {}, its queue is full", machineId);
+            senders.execute(emitter::complete);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package akros.vendingmachine.stats;
+
+import java.util.Locale;
+
+/**
+ * Rolling windows of the vend statistics, each a ring of equal time buckets.
+ * The buckets of the hour and day windows are persisted; the last minute is rebuilt after a restart.
+ */
+public enum StatsWindow {
+
+    MINUTE(1_000, 60, false),
+    HOUR(60_000, 60, true),
+    DAY(3_600_000, 24, true);
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final boolean persisted;
+
+    StatsWindow(long bucketMillis, int buckets, boolean persisted) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.persisted = persisted;
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public boolean persisted() {
+        return persisted;
+    }
+
+    /**
+     * @return The window with the given case-insensitive name, or null if there is none.
+     */
+    public static StatsWindow parse(String name) {
+        for (StatsWindow window : values()) {
+            if (window.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,286 @@
+package akros.vendingmachine.stats;
+
+import akros.vendingmachine.config.StatsProperties;
+import akros.vendingmachine.dto.VendStatsDTO;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling vend and restock counts per product name of a machine, maintained incrementally from
+ * the committed product changes of all nodes, so restocks can be planned from sales velocity
+ * without scanning any table.
+ * <p>
+ * Every product name has one {@code int} array holding a ring of time buckets per
+ * {@link StatsWindow} and {@link Kind}, plus the running total of each ring. Recording a change
+ * adds to the current bucket and the totals; moving a ring forward subtracts the buckets it
+ * reuses. Reading a count is therefore constant time, whatever the traffic. The arrays are
+ * guarded by a fixed set of lock stripes instead of one lock per product name.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Component
+public class VendStats {
+
+    private static final StatsWindow[] WINDOWS = StatsWindow.values();
+    private static final Kind[] KINDS = Kind.values();
+    private static final int RINGS = KINDS.length * WINDOWS.length;
+    private static final int[] OFFSETS = new int[RINGS];
+    private static final int SLOTS;
+
+    static {
+        int offset = 0;
+        for (int ring = 0; ring < RINGS; ring++) {
+            OFFSETS[ring] = offset;
+            offset += WINDOWS[ring % WINDOWS.length].buckets();
+        }
+        SLOTS = offset;
+    }
+
+    private final Map<Key, Series> series = new ConcurrentHashMap<>();
+    private final Object[] stripes;
+
+    public VendStats(StatsProperties properties) {
+        this.stripes = new Object[Math.max(1, properties.getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Counts a committed vend or restock, local or from another node.
+     *
+     * @param event The committed product change.
+     */
+    @Order(4)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getProductName() == null) {
+            return;
+        }
+        if (event.getType() == ChangeType.DELETED) {
+            record(event.getMachineId(), event.getProductName(), Kind.VEND, 1, System.currentTimeMillis());
+        } else if (event.getType() == ChangeType.CREATED) {
+            record(event.getMachineId(), event.getProductName(), Kind.RESTOCK, 1, System.currentTimeMillis());
+        } else if (event.getType() == ChangeType.IMPORTED && event.getUnits() != null) {
+            record(event.getMachineId(), event.getProductName(), Kind.RESTOCK, event.getUnits(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Adds units to the current buckets of a product name.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name.
+     * @param kind        Vend or restock.
+     * @param units       The number of units.
+     * @param now         The current time in epoch milliseconds.
+     */
+    public void record(String machineId, String productName, Kind kind, int units, long now) {
+        Key key = new Key(machineId, productName);
+        Series entry = series.computeIfAbsent(key, k -> new Series());
+        synchronized (stripe(key)) {
+            for (StatsWindow window : WINDOWS) {
+                int ring = ring(kind, window);
+                advance(entry, ring, now / window.bucketMillis());
+                entry.counts[OFFSETS[ring] + (int) (entry.heads[ring] % window.buckets())] += units;
+                entry.totals[ring] += units;
+            }
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Reads the counts of the last minute, hour and day of a product name.
+     *
+     * @param machineId   The ID of the machine.
+     * @param productName The product name.
+     * @return VendStatsDTO with zero counts if nothing was recorded for the product name.
+     */
+    public VendStatsDTO stats(String machineId, String productName) {
+        Key key = new Key(machineId, productName);
+        Series entry = series.get(key);
+        return entry == null ? toDTO(key, new long[RINGS]) : toDTO(key, totals(key, entry, System.currentTimeMillis()));
+    }
+
+    /**
+     * Reads the product names of all machines with the most vends or restocks in a window.
+     * Each product name costs one constant-time read of its totals.
+     *
+     * @param window The window.
+     * @param kind   Vend or restock.
+     * @param limit  The maximum number of product names.
+     * @return List of VendStatsDTO in descending order of the count, without product names that counted nothing.
+     */
+    public List<VendStatsDTO> top(StatsWindow window, Kind kind, int limit) {
+        int ring = ring(kind, window);
+        long now = System.currentTimeMillis();
+        Comparator<Ranked> byCount = Comparator.comparingLong(ranked -> ranked.totals()[ring]);
+        PriorityQueue<Ranked> top = new PriorityQueue<>(byCount);
+        series.forEach((key, entry) -> {
+            long[] totals = totals(key, entry, now);
+            if (totals[ring] > 0 && limit > 0) {
+                top.add(new Ranked(key, totals));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
+        List<Ranked> ranked = new ArrayList<>(top);
+        ranked.sort(byCount.reversed());
+        return ranked.stream().map(entry -> toDTO(entry.key(), entry.totals())).toList();
+    }
+
+    /**
+     * Takes the non-empty persisted buckets of all product names recorded since the last call.
+     *
+     * @param now The current time in epoch milliseconds.
+     * @return List of Bucket.
+     */
+    public List<Bucket> drainChanged(long now) {
+        List<Bucket> buckets = new ArrayList<>();
+        series.forEach((key, entry) -> {
+            synchronized (stripe(key)) {
+                if (!entry.dirty) {
+                    return;
+                }
+                entry.dirty = false;
+                for (int ring = 0; ring < RINGS; ring++) {
+                    StatsWindow window = WINDOWS[ring % WINDOWS.length];
+                    if (!window.persisted()) {
+                        continue;
+                    }
+                    advance(entry, ring, now / window.bucketMillis());
+                    for (long epoch = entry.heads[ring] - window.buckets() + 1; epoch <= entry.heads[ring]; epoch++) {
+                        int units = entry.counts[OFFSETS[ring] + (int) Math.floorMod(epoch, window.buckets())];
+                        if (units > 0) {
+                            buckets.add(new Bucket(key.machineId(), key.productName(), KINDS[ring / WINDOWS.length], window,
+                                    epoch * window.bucketMillis(), units));
+                        }
+                    }
+                }
+            }
+        });
+        return buckets;
+    }
+
+    /**
+     * Merges a persisted bucket: the bucket keeps the larger of its current and its persisted count,
+     * so restoring the same bucket twice, or a bucket also counted live, never adds units twice.
+     *
+     * @param bucket The persisted bucket.
+     * @param now    The current time in epoch milliseconds.
+     */
+    public void restore(Bucket bucket, long now) {
+        StatsWindow window = bucket.window();
+        long epoch = bucket.startMillis() / window.bucketMillis();
+        long current = now / window.bucketMillis();
+        if (epoch > current || epoch <= current - window.buckets()) {
+            return;
+        }
+        Key key = new Key(bucket.machineId(), bucket.productName());
+        Series entry = series.computeIfAbsent(key, k -> new Series());
+        int ring = ring(bucket.kind(), window);
+        synchronized (stripe(key)) {
+            advance(entry, ring, current);
+            int slot = OFFSETS[ring] + (int) (epoch % window.buckets());
+            int missing = bucket.units() - entry.counts[slot];
+            if (missing > 0) {
+                entry.counts[slot] += missing;
+                entry.totals[ring] += missing;
+            }
+        }
+    }
+
+    private long[] totals(Key key, Series entry, long now) {
+        long[] totals = new long[RINGS];
+        synchronized (stripe(key)) {
+            for (int ring = 0; ring < RINGS; ring++) {
+                advance(entry, ring, now / WINDOWS[ring % WINDOWS.length].bucketMillis());
+                totals[ring] = entry.totals[ring];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Moves a ring forward to the given bucket, emptying the buckets it reuses.
+     * Costs at most one pass over the ring, however long the ring was idle.
+     */
+    private static void advance(Series entry, int ring, long epoch) {
+        long head = entry.heads[ring];
+        if (epoch <= head) {
+            return;
+        }
+        int buckets = WINDOWS[ring % WINDOWS.length].buckets();
+        long steps = Math.min(epoch - head, buckets);
+        for (long i = 1; i <= steps; i++) {
+            int slot = OFFSETS[ring] + (int) ((epoch - steps + i) % buckets);
+            entry.totals[ring] -= entry.counts[slot];
+            entry.counts[slot] = 0;
+        }
+        entry.heads[ring] = epoch;
+    }
+
+    private static int ring(Kind kind, StatsWindow window) {
+        return kind.ordinal() * WINDOWS.length + window.ordinal();
+    }
+
+    private Object stripe(Key key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    private static VendStatsDTO toDTO(Key key, long[] totals) {
+        return VendStatsDTO.builder()
+                .machineId(key.machineId())
+                .productName(key.productName())
+                .vendsLastMinute(totals[ring(Kind.VEND, StatsWindow.MINUTE)])
+                .vendsLastHour(totals[ring(Kind.VEND, StatsWindow.HOUR)])
+                .vendsLastDay(totals[ring(Kind.VEND, StatsWindow.DAY)])
+                .restocksLastMinute(totals[ring(Kind.RESTOCK, StatsWindow.MINUTE)])
+                .restocksLastHour(totals[ring(Kind.RESTOCK, StatsWindow.HOUR)])
+                .restocksLastDay(totals[ring(Kind.RESTOCK, StatsWindow.DAY)])
+                .build();
+    }
+
+    public enum Kind {
+        VEND, RESTOCK
+    }
+
+    /**
+     * The count of one persisted bucket.
+     *
+     * @param startMillis The start of the bucket in epoch milliseconds.
+     */
+    public record Bucket(String machineId, String productName, Kind kind, StatsWindow window, long startMillis, int units) {
+    }
+
+    private record Key(String machineId, String productName) {
+    }
+
+    private record Ranked(Key key, long[] totals) {
+    }
+
+    /**
+     * The buckets of all rings of one product name in one array, the bucket index of the
+     * head of each ring, and the running total of each ring.
+     */
+    private static final class Series {
+
+        private final int[] counts = new int[SLOTS];
+        private final long[] heads = new long[RINGS];
+        private final long[] totals = new long[RINGS];
+        private boolean dirty;
+    }
+}
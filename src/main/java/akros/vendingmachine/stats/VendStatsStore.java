@@ -0,0 +1,114 @@
+package akros.vendingmachine.stats;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Persists the hour and day buckets of the {@link VendStats}, so a restart keeps the history.
+ * <p>
+ * Only product names recorded since the last flush are written, one row per non-empty bucket,
+ * and rows older than their window are deleted, so the table stays as compact as the rings.
+ * A bucket keeps the larger of the stored and the written count: every node counts the changes
+ * of all nodes, and the nodes flush the same buckets without adding them up.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@Profile("!edge")
+@RequiredArgsConstructor
+public class VendStatsStore {
+
+    private static final String UPSERT_BUCKET = """
+            INSERT INTO vend_stats (machine_id, product_name, kind, bucket_seconds, bucket_start, units) VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (machine_id, product_name, kind, bucket_seconds, bucket_start)
+            DO UPDATE SET units = GREATEST(vend_stats.units, excluded.units)
+            """;
+    private static final int[] UPSERT_BUCKET_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.TIMESTAMP_WITH_TIMEZONE, Types.INTEGER};
+    private static final String DELETE_EXPIRED = "DELETE FROM vend_stats WHERE bucket_seconds = ? AND bucket_start < ?";
+    private static final String SELECT_BUCKETS = "SELECT machine_id, product_name, kind, bucket_seconds, bucket_start, units FROM vend_stats";
+
+    private final VendStats vendStats;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Loads the persisted buckets once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long now = System.currentTimeMillis();
+        int[] loaded = {0};
+        jdbcTemplate.query(SELECT_BUCKETS, row -> {
+            StatsWindow window = window(row.getInt("bucket_seconds"));
+            if (window != null) {
+                vendStats.restore(new VendStats.Bucket(row.getString("machine_id"), row.getString("product_name"),
+                        VendStats.Kind.valueOf(row.getString("kind").toUpperCase(Locale.ROOT)), window,
+                        row.getTimestamp("bucket_start").getTime(), row.getInt("units")), now);
+                loaded[0]++;
+            }
+        });
+        log.info("Loaded {} vend statistics buckets", loaded[0]);
+    }
+
+    /**
+     * Writes the buckets of the product names recorded since the last flush and deletes expired ones.
+     *
+     * @return the number of written buckets.
+     */
+    @Scheduled(fixedDelayString = "${app.stats.flush-interval:1m}", initialDelayString = "${app.stats.flush-interval:1m}")
+    public int flush() {
+        long now = System.currentTimeMillis();
+        List<VendStats.Bucket> buckets = vendStats.drainChanged(now);
+        if (!buckets.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_BUCKET, buckets.stream()
+                    .map(bucket -> new Object[]{bucket.machineId(), bucket.productName(), bucket.kind().name().toLowerCase(Locale.ROOT),
+                            (int) (bucket.window().bucketMillis() / 1_000), timestamp(bucket.startMillis()), bucket.units()})
+                    .toList(), UPSERT_BUCKET_TYPES);
+        }
+        for (StatsWindow window : StatsWindow.values()) {
+            if (window.persisted()) {
+                long oldest = (now / window.bucketMillis() - window.buckets() + 1) * window.bucketMillis();
+                jdbcTemplate.update(DELETE_EXPIRED, (int) (window.bucketMillis() / 1_000), timestamp(oldest));
+            }
+        }
+        return buckets.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist the vend statistics on shutdown", e);
+        }
+    }
+
+    private static OffsetDateTime timestamp(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC);
+    }
+
+    private static StatsWindow window(int bucketSeconds) {
+        for (StatsWindow window : StatsWindow.values()) {
+            if (window.persisted() && window.bucketMillis() == bucketSeconds * 1_000L) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
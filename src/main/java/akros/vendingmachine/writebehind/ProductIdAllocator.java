@@ -0,0 +1,32 @@
+package akros.vendingmachine.writebehind;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_ID_ALLOCATION_SIZE;
+
+/**
+ * Hands out product IDs before the product is written, from the same sequence and with
+ * the same pooled allocation as Hibernate, so both never hand out the same ID.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.write-behind", name = "enabled", havingValue = "true")
+public class ProductIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long nextProductId;
+    private long maxProductId = -1;
+
+    public synchronized int nextProductId() {
+        if (nextProductId > maxProductId) {
+            Long hi = jdbcTemplate.queryForObject("SELECT nextval('product_seq')", Long.class);
+            nextProductId = Math.max(1, hi - PRODUCT_ID_ALLOCATION_SIZE + 1);
+            maxProductId = hi;
+        }
+        return (int) nextProductId++;
+    }
+}
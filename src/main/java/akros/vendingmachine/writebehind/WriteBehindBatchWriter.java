@@ -0,0 +1,117 @@
+package akros.vendingmachine.writebehind;
+
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.event.ChangeType;
+import akros.vendingmachine.event.ProductChangedEvent;
+import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.service.InventoryStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+
+/**
+ * Writes a batch of acknowledged operations in one transaction, machine by machine in machine ID order:
+ * the inventory of all restocks of a machine is granted at once and their products inserted with
+ * one JDBC batch, then all vends of the machine are deleted with one statement and their units
+ * removed per product name.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindBatchWriter {
+
+    private static final String INSERT_PRODUCT = """
+            INSERT INTO product (product_id, machine_id, product_name, product_price, inventar_id) VALUES (?, ?, ?, ?, ?)
+            """;
+    private static final int[] INSERT_PRODUCT_TYPES = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.VARCHAR};
+
+    private final ProductRepository productRepository;
+    private final InventoryStore inventoryStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Writes the given operations in one transaction.
+     *
+     * @param operations The operations in acknowledgement order.
+     * @return the operations that could not be applied, such as restocks above the quantity cap
+     * or vends of products that no longer exist.
+     */
+    @Transactional
+    public List<WriteOperation> write(List<WriteOperation> operations) {
+        List<WriteOperation> failed = new ArrayList<>();
+        operations.stream()
+                .collect(Collectors.groupingBy(operation -> operation.getProduct().getMachineId(), TreeMap::new, Collectors.toList()))
+                .forEach((machineId, machineOperations) -> failed.addAll(write(machineId, machineOperations)));
+        return failed;
+    }
+
+    private List<WriteOperation> write(String machineId, List<WriteOperation> operations) {
+        List<WriteOperation> failed = new ArrayList<>();
+        List<ProductDTO> restocks = products(operations, WriteOperation.Type.RESTOCK);
+        List<ProductDTO> vends = products(operations, WriteOperation.Type.VEND);
+
+        if (!restocks.isEmpty()) {
+            SortedMap<String, Integer> units = restocks.stream()
+                    .collect(Collectors.toMap(ProductDTO::getProductName, product -> 1, Integer::sum, TreeMap::new));
+            Map<String, InventoryStore.Grant> grants = inventoryStore.increment(machineId, units, MAX_PRODUCT_QUANTITY);
+            Map<String, Integer> remaining = new HashMap<>();
+            grants.forEach((productName, grant) -> remaining.put(productName, grant.granted()));
+            List<Object[]> rows = new ArrayList<>();
+            for (ProductDTO product : restocks) {
+                if (remaining.getOrDefault(product.getProductName(), 0) == 0) {
+                    failed.add(WriteOperation.restock(product));
+                    continue;
+                }
+                remaining.merge(product.getProductName(), -1, Integer::sum);
+                rows.add(new Object[]{product.getProductId(), machineId, product.getProductName(), product.getProductPrice(),
+                        grants.get(product.getProductName()).inventarId()});
+                eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.CREATED, machineId, product.getProductId(), product.getProductName(),
+                        grants.get(product.getProductName()).quantity()));
+            }
+            jdbcTemplate.batchUpdate(INSERT_PRODUCT, rows, INSERT_PRODUCT_TYPES);
+        }
+
+        if (!vends.isEmpty()) {
+            Map<Integer, String> deleted = productRepository
+                    .deleteByProductIds(machineId, vends.stream().map(ProductDTO::getProductId).toArray(Integer[]::new))
+                    .stream()
+                    .collect(Collectors.toMap(ProductRepository.DeletedProduct::getProductId, ProductRepository.DeletedProduct::getProductName));
+            SortedMap<String, Integer> units = new TreeMap<>();
+            for (ProductDTO product : vends) {
+                String productName = deleted.get(product.getProductId());
+                if (productName == null) {
+                    failed.add(WriteOperation.vend(product));
+                    continue;
+                }
+                units.merge(productName, 1, Integer::sum);
+                eventPublisher.publishEvent(ProductChangedEvent.local(ChangeType.DELETED, machineId, product.getProductId(), productName, null));
+            }
+            if (!units.isEmpty()) {
+                inventoryStore.decrement(machineId, units);
+            }
+        }
+        return failed;
+    }
+
+    private static List<ProductDTO> products(List<WriteOperation> operations, WriteOperation.Type type) {
+        return operations.stream()
+                .filter(operation -> operation.getType() == type)
+                .map(WriteOperation::getProduct)
+                .toList();
+    }
+}
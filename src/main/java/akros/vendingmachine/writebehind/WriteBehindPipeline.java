@@ -0,0 +1,332 @@
+package akros.vendingmachine.writebehind;
+
+import akros.vendingmachine.cache.ProductCache;
+import akros.vendingmachine.config.WriteBehindProperties;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.dto.ProductDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+
+/**
+ * Acknowledges vends and restocks right away and writes them behind, in batches.
+ * <p>
+ * Operations are validated against this node's view of the catalog of their machine: the committed
+ * state read through the {@link ProductCache}, plus the operations acknowledged but not written yet.
+ * A single writer thread drains the bounded queue and writes everything it finds, up to
+ * {@code app.write-behind.max-batch-size} operations, in one transaction. A full queue
+ * rejects new operations after {@code app.write-behind.offer-timeout}, and the queue is
+ * drained before the application stops.
+ *
+ * @author  Saliou Conde
+ * @version 0.1.0
+ * @since   0.1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindPipeline implements SmartLifecycle {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final WriteBehindBatchWriter batchWriter;
+    private final ProductIdAllocator productIdAllocator;
+    private final ProductCache productCache;
+    private final WriteBehindProperties properties;
+    private final BlockingQueue<WriteOperation> queue;
+
+    private final Map<UnitKey, Integer> pendingUnits = new HashMap<>();
+    private final Map<Integer, ProductDTO> pendingRestocks = new HashMap<>();
+    private final Set<Integer> pendingVends = new HashSet<>();
+    private long writtenBatches;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+    private final Counter failedOperations;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public WriteBehindPipeline(WriteBehindBatchWriter batchWriter, ProductIdAllocator productIdAllocator, ProductCache productCache,
+                               WriteBehindProperties properties, MeterRegistry meterRegistry) {
+        this.batchWriter = batchWriter;
+        this.productIdAllocator = productIdAllocator;
+        this.productCache = productCache;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchTimer = Timer.builder("write.behind.batch")
+                .description("Duration of one write-behind transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("write.behind.batch.size")
+                .description("Operations written per write-behind transaction")
+                .register(meterRegistry);
+        this.failedOperations = Counter.builder("write.behind.failed")
+                .description("Acknowledged operations that could not be written")
+                .register(meterRegistry);
+        Gauge.builder("write.behind.queue.size", queue, BlockingQueue::size)
+                .description("Operations acknowledged but not written yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Acknowledges a restock if the inventory of its product name in the machine stays within the quantity cap.
+     *
+     * @param machineId The ID of the machine.
+     * @param product   The product to add.
+     * @return the admission, carrying the product with its allocated ID when accepted.
+     */
+    public Admission restock(String machineId, ProductDTO product) {
+        if (!running) {
+            return Admission.unavailable(product);
+        }
+        String productName = product.getProductName();
+        if (productName == null) {
+            return new Admission(HttpStatus.BAD_REQUEST, product, "Product name is missing");
+        }
+        WriteOperation operation;
+        while (true) {
+            long batches = writtenBatches();
+            Inventar inventar = productCache.findInventar(machineId, productName);
+            synchronized (this) {
+                if (batches != writtenBatches) {
+                    continue;
+                }
+                int quantity = (inventar == null ? 0 : inventar.getQuantity())
+                        + pendingUnits.getOrDefault(new UnitKey(machineId, productName), 0);
+                if (quantity >= MAX_PRODUCT_QUANTITY) {
+                    return new Admission(HttpStatus.BAD_REQUEST, product,
+                            "Inventar quantity shall not be more than than for a dedicated product");
+                }
+                ProductDTO accepted = new ProductDTO(productIdAllocator.nextProductId(), machineId, productName, product.getProductPrice(), null);
+                operation = WriteOperation.restock(accepted);
+                reserve(operation);
+                break;
+            }
+        }
+        return enqueue(operation);
+    }
+
+    /**
+     * Acknowledges a vend if the product exists in the machine and is not being vended already.
+     *
+     * @param machineId The ID of the machine.
+     * @param id        The ID of the product to remove.
+     * @return the admission, carrying the vended product when accepted.
+     */
+    public Admission vend(String machineId, Integer id) {
+        if (!running) {
+            return Admission.unavailable(null);
+        }
+        WriteOperation operation;
+        while (true) {
+            long batches = writtenBatches();
+            ProductDTO committed = productCache.findProduct(machineId, id);
+            synchronized (this) {
+                if (batches != writtenBatches) {
+                    continue;
+                }
+                ProductDTO product = pendingRestocks.getOrDefault(id, committed);
+                if (product == null || !machineId.equals(product.getMachineId()) || pendingVends.contains(id)) {
+                    return new Admission(HttpStatus.NOT_FOUND, null, "Product not found by ID: " + id);
+                }
+                operation = WriteOperation.vend(product);
+                reserve(operation);
+                break;
+            }
+        }
+        return enqueue(operation);
+    }
+
+    /**
+     * Waits until every operation acknowledged so far has been written.
+     *
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @return true if all operations were written in time.
+     */
+    public boolean flush(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this) {
+            while (!pendingRestocks.isEmpty() || !pendingVends.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writerThread = Thread.ofPlatform().name("write-behind-writer").start(this::drain);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(properties.getShutdownTimeout().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writerThread.isAlive()) {
+                log.error("Write-behind writer did not drain the queue within {}, {} operations lost",
+                        properties.getShutdownTimeout(), queue.size());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the web server, so no request is acknowledged
+     * once the queue has been drained.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private synchronized long writtenBatches() {
+        return writtenBatches;
+    }
+
+    private Admission enqueue(WriteOperation operation) {
+        try {
+            if (queue.offer(operation, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return new Admission(HttpStatus.ACCEPTED, operation.getProduct(), null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            release(operation);
+            notifyAll();
+        }
+        return Admission.unavailable(operation.getProduct());
+    }
+
+    private void drain() {
+        List<WriteOperation> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                WriteOperation first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getMaxBatchSize() - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                if (!batch.isEmpty()) {
+                    synchronized (this) {
+                        batch.forEach(this::release);
+                        batch.clear();
+                        writtenBatches++;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(List<WriteOperation> batch) {
+        batchSize.record(batch.size());
+        List<WriteOperation> failed;
+        try {
+            failed = batchTimer.recordCallable(() -> batchWriter.write(batch));
+        } catch (Exception e) {
+            log.warn("Write-behind batch of {} operations failed, writing them one by one", batch.size(), e);
+            failed = new ArrayList<>();
+            for (WriteOperation operation : batch) {
+                try {
+                    failed.addAll(batchWriter.write(List.of(operation)));
+                } catch (Exception operationException) {
+                    log.error("Write-behind operation {} failed", operation, operationException);
+                    failed.add(operation);
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            failedOperations.increment(failed.size());
+            log.warn("{} acknowledged write-behind operations could not be applied: {}", failed.size(), failed);
+        }
+    }
+
+    private void reserve(WriteOperation operation) {
+        ProductDTO product = operation.getProduct();
+        if (operation.getType() == WriteOperation.Type.RESTOCK) {
+            pendingUnits.merge(UnitKey.of(product), 1, Integer::sum);
+            pendingRestocks.put(product.getProductId(), product);
+        } else {
+            pendingUnits.merge(UnitKey.of(product), -1, Integer::sum);
+            pendingVends.add(product.getProductId());
+        }
+    }
+
+    private void release(WriteOperation operation) {
+        ProductDTO product = operation.getProduct();
+        if (operation.getType() == WriteOperation.Type.RESTOCK) {
+            pendingUnits.merge(UnitKey.of(product), -1, WriteBehindPipeline::sumOrRemove);
+            pendingRestocks.remove(product.getProductId());
+        } else {
+            pendingUnits.merge(UnitKey.of(product), 1, WriteBehindPipeline::sumOrRemove);
+            pendingVends.remove(product.getProductId());
+        }
+    }
+
+    private static Integer sumOrRemove(Integer units, Integer delta) {
+        int sum = units + delta;
+        return sum == 0 ? null : sum;
+    }
+
+    private record UnitKey(String machineId, String productName) {
+
+        static UnitKey of(ProductDTO product) {
+            return new UnitKey(product.getMachineId(), product.getProductName());
+        }
+    }
+
+    /**
+     * Outcome of submitting an operation.
+     *
+     * @param status  ACCEPTED if the operation will be written, or the reason it was rejected.
+     * @param product The product of the operation.
+     * @param message The reason of a rejection, or null.
+     */
+    public record Admission(HttpStatus status, ProductDTO product, String message) {
+
+        static Admission unavailable(ProductDTO product) {
+            return new Admission(HttpStatus.SERVICE_UNAVAILABLE, product, "Write-behind queue is full or stopped");
+        }
+    }
+}
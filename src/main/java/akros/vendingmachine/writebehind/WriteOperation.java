@@ -0,0 +1,31 @@
+package akros.vendingmachine.writebehind;
+
+import akros.vendingmachine.dto.ProductDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Vend or restock acknowledged to the client and waiting to be written.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class WriteOperation {
+
+    private final Type type;
+    private final ProductDTO product;
+
+    public static WriteOperation restock(ProductDTO product) {
+        return new WriteOperation(Type.RESTOCK, product);
+    }
+
+    public static WriteOperation vend(ProductDTO product) {
+        return new WriteOperation(Type.VEND, product);
+    }
+
+    public enum Type {
+        RESTOCK,
+        VEND
+    }
+}
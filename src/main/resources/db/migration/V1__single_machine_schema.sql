@@ -0,0 +1,27 @@
+-- Schema as generated by Hibernate before the migrations were introduced.
+-- Existing databases are baselined at this version and start with V2.
+
+CREATE SEQUENCE IF NOT EXISTS product_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS inventar (
+    id           varchar(255) NOT NULL PRIMARY KEY,
+    product_name varchar(255) NOT NULL UNIQUE,
+    quantity     integer
+);
+
+CREATE TABLE IF NOT EXISTS product (
+    product_id    integer NOT NULL PRIMARY KEY,
+    product_name  varchar(255),
+    product_price integer,
+    inventar_id   varchar(255) REFERENCES inventar (id)
+);
+
+CREATE TABLE IF NOT EXISTS inventar_ledger (
+    id           bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_name varchar(255)             NOT NULL,
+    stripe       integer                  NOT NULL,
+    delta        integer                  NOT NULL,
+    created_at   timestamp(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS inventar_ledger_product_name_stripe_idx ON inventar_ledger (product_name, stripe);
@@ -0,0 +1,78 @@
+-- Per-machine state: product, inventar and inventar_ledger get a machine_id and are
+-- hash-partitioned by it, so the reads, caps and vends of one machine only touch the rows
+-- and indexes of its partition. Product IDs stay unique across machines (product_seq).
+-- Existing rows are moved to the 'default' machine, served by /api/v1/products.
+
+-- Schemas created by Hibernate before the inventory ledger existed
+CREATE TABLE IF NOT EXISTS inventar_ledger (
+    id           bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_name varchar(255)             NOT NULL,
+    stripe       integer                  NOT NULL,
+    delta        integer                  NOT NULL,
+    created_at   timestamp(6) WITH TIME ZONE NOT NULL
+);
+CREATE SEQUENCE IF NOT EXISTS product_seq START WITH 1 INCREMENT BY 50;
+
+ALTER TABLE product RENAME TO product_single_machine;
+ALTER TABLE inventar RENAME TO inventar_single_machine;
+ALTER TABLE inventar_ledger RENAME TO inventar_ledger_single_machine;
+
+CREATE TABLE inventar (
+    machine_id   varchar(64)  NOT NULL,
+    id           varchar(255) NOT NULL,
+    product_name varchar(255) NOT NULL,
+    quantity     integer,
+    CONSTRAINT inventar_machine_pk PRIMARY KEY (machine_id, id),
+    CONSTRAINT inventar_machine_product_name_uk UNIQUE (machine_id, product_name)
+) PARTITION BY HASH (machine_id);
+
+CREATE TABLE product (
+    machine_id    varchar(64) NOT NULL,
+    product_id    integer     NOT NULL,
+    product_name  varchar(255),
+    product_price integer,
+    inventar_id   varchar(255),
+    CONSTRAINT product_machine_pk PRIMARY KEY (machine_id, product_id),
+    CONSTRAINT product_inventar_fk FOREIGN KEY (machine_id, inventar_id) REFERENCES inventar (machine_id, id)
+) PARTITION BY HASH (machine_id);
+
+CREATE SEQUENCE inventar_ledger_entry_seq;
+CREATE TABLE inventar_ledger (
+    machine_id   varchar(64)              NOT NULL,
+    id           bigint                   NOT NULL DEFAULT nextval('inventar_ledger_entry_seq'),
+    product_name varchar(255)             NOT NULL,
+    stripe       integer                  NOT NULL,
+    delta        integer                  NOT NULL,
+    created_at   timestamp(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT inventar_ledger_machine_pk PRIMARY KEY (machine_id, id)
+) PARTITION BY HASH (machine_id);
+ALTER SEQUENCE inventar_ledger_entry_seq OWNED BY inventar_ledger.id;
+CREATE INDEX inventar_ledger_machine_product_name_stripe_idx ON inventar_ledger (machine_id, product_name, stripe);
+
+DO $$
+BEGIN
+    FOR remainder IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE inventar_p%s PARTITION OF inventar FOR VALUES WITH (MODULUS 16, REMAINDER %s)', remainder, remainder);
+        EXECUTE format('CREATE TABLE product_p%s PARTITION OF product FOR VALUES WITH (MODULUS 16, REMAINDER %s)', remainder, remainder);
+        EXECUTE format('CREATE TABLE inventar_ledger_p%s PARTITION OF inventar_ledger FOR VALUES WITH (MODULUS 16, REMAINDER %s)', remainder, remainder);
+    END LOOP;
+END $$;
+
+INSERT INTO inventar (machine_id, id, product_name, quantity)
+SELECT 'default', id, product_name, quantity FROM inventar_single_machine;
+
+INSERT INTO product (machine_id, product_id, product_name, product_price, inventar_id)
+SELECT 'default', product_id, product_name, product_price, inventar_id FROM product_single_machine;
+
+-- Single-machine schemas generated product IDs as IDENTITY, or allocated them from a fresh
+-- product_seq; move the sequence past the copied IDs so new pooled blocks never reuse them.
+SELECT setval('product_seq', max(product_id) + 50)
+FROM product
+HAVING max(product_id) + 50 > (SELECT last_value FROM product_seq);
+
+INSERT INTO inventar_ledger (machine_id, product_name, stripe, delta, created_at)
+SELECT 'default', product_name, stripe, delta, created_at FROM inventar_ledger_single_machine ORDER BY id;
+
+DROP TABLE product_single_machine;
+DROP TABLE inventar_ledger_single_machine;
+DROP TABLE inventar_single_machine;
@@ -0,0 +1,5 @@
+-- Indexes for the product lookups by name and for the inventar foreign key, which Postgres
+-- does not index by itself: without it every inventar delete scans the product partition.
+-- Created on the partitioned table, so every partition gets its own index.
+CREATE INDEX IF NOT EXISTS product_machine_product_name_idx ON product (machine_id, product_name);
+CREATE INDEX IF NOT EXISTS product_machine_inventar_idx ON product (machine_id, inventar_id);
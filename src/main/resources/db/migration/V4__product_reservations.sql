@@ -0,0 +1,6 @@
+-- Two-phase vends: a reservation holds one product unit until reserved_until. The hold lives on
+-- the product row, so reserving, vending and confirming the same unit are serialized by its row
+-- lock on every node, and a hold past reserved_until counts as released even if nobody cleared it.
+ALTER TABLE product ADD COLUMN reservation_id uuid;
+ALTER TABLE product ADD COLUMN reserved_until timestamp(6) WITH TIME ZONE;
+CREATE INDEX IF NOT EXISTS product_machine_reservation_idx ON product (machine_id, reservation_id) WHERE reservation_id IS NOT NULL;
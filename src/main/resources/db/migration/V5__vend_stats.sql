@@ -0,0 +1,12 @@
+-- Persisted buckets of the rolling vend statistics: per-minute buckets of the last hour and
+-- per-hour buckets of the last day, per product name of a machine. Older rows are deleted on flush.
+CREATE TABLE vend_stats (
+    machine_id     varchar(64)  NOT NULL,
+    product_name   varchar(255) NOT NULL,
+    kind           varchar(16)  NOT NULL,
+    bucket_seconds integer      NOT NULL,
+    bucket_start   timestamp(6) WITH TIME ZONE NOT NULL,
+    units          integer      NOT NULL,
+    CONSTRAINT vend_stats_pk PRIMARY KEY (machine_id, product_name, kind, bucket_seconds, bucket_start)
+);
+CREATE INDEX vend_stats_bucket_start_idx ON vend_stats (bucket_seconds, bucket_start);
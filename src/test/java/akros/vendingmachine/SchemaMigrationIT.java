@@ -0,0 +1,34 @@
+package akros.vendingmachine;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_ID_ALLOCATION_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationIT extends AbstractProductIT {
+
+    @Test
+    void should_allocate_product_ids_after_the_migrated_ones_of_an_identity_schema() {
+        //Given
+        DriverManagerDataSource dataSource = createDatabase("single_machine");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE inventar (id varchar(255) NOT NULL PRIMARY KEY, product_name varchar(255) NOT NULL UNIQUE, quantity integer);
+                CREATE TABLE product (product_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, product_name varchar(255),
+                                      product_price integer, inventar_id varchar(255) REFERENCES inventar (id));
+                INSERT INTO inventar VALUES ('cola', 'Cola', 3);
+                INSERT INTO product (product_name, product_price, inventar_id) VALUES ('Cola', 350, 'cola'), ('Cola', 350, 'cola'), ('Cola', 350, 'cola');
+                """);
+
+        //When
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        //Then
+        Long hi = jdbcTemplate.queryForObject("SELECT nextval('product_seq')", Long.class);
+        assertThat(hi - PRODUCT_ID_ALLOCATION_SIZE + 1).isGreaterThan(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM product WHERE machine_id = 'default'", Integer.class)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,37 @@
+package akros.vendingmachine;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the JDBC statements Hibernate prepares while an action runs, so tests can pin
+ * the number of queries per endpoint and fail on N+1 regressions.
+ * Statistics are collected for the whole session factory, so actions must not overlap.
+ */
+public final class SqlStatementCounter {
+
+    private final Statistics statistics;
+
+    private SqlStatementCounter(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public static SqlStatementCounter of(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        return new SqlStatementCounter(statistics);
+    }
+
+    public long count(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    public void assertStatementCount(long expected, Runnable action) {
+        assertThat(count(action)).as("prepared SQL statements").isEqualTo(expected);
+    }
+}
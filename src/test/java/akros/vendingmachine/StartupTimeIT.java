@@ -0,0 +1,161 @@
+package akros.vendingmachine;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the application in fresh JVMs against the test database and reports, per startup mode,
+ * the startup time logged by Spring Boot and the time from launching the JVM to the first
+ * answered product request. The report is printed and written to
+ * {@code build/reports/startup/startup.txt}.
+ * <p>
+ * The plain classpath is always measured. When built with {@code -Paot}, the fast-start jar is
+ * measured as is, with its CDS archive, and with its CDS archive and AOT initializers. CDS only
+ * archives classes loaded from jars, so the classpath of the test run cannot use it.
+ */
+class StartupTimeIT extends AbstractProductIT {
+
+    private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([0-9.]+) seconds");
+    private static final Duration MAX_TIME_TO_FIRST_REQUEST = Duration.ofMinutes(2);
+    private static final Path WORK_DIR = Path.of("build", "startup");
+
+    @Autowired
+    private JdbcConnectionDetails connectionDetails;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(500))
+            .build();
+
+    @Test
+    void should_report_startup_time_and_time_to_first_request() throws Exception {
+        //Given
+        Files.createDirectories(WORK_DIR);
+        String fastStartDir = System.getProperty("startup.fast-start-dir");
+
+        //When
+        List<Measurement> measurements = new ArrayList<>();
+        measurements.add(measure("classpath", null,
+                "-cp", System.getProperty("java.class.path"), VendingMachineApplication.class.getName()));
+        if (fastStartDir != null) {
+            Path dir = Path.of(fastStartDir);
+            measurements.add(measure("jar", dir, "-jar", "application.jar"));
+            measurements.add(measure("jar + CDS", dir,
+                    "-XX:SharedArchiveFile=application.jsa", "-Xlog:cds=off", "-jar", "application.jar"));
+            measurements.add(measure("jar + CDS + AOT", dir,
+                    "-XX:SharedArchiveFile=application.jsa", "-Xlog:cds=off", "-Dspring.aot.enabled=true",
+                    "-jar", "application.jar"));
+        }
+        String report = render(measurements);
+        System.out.print(report);
+        Path reportFile = Path.of("build", "reports", "startup", "startup.txt");
+        Files.createDirectories(reportFile.getParent());
+        Files.writeString(reportFile, report);
+
+        //Then
+        assertThat(measurements).allSatisfy(measurement -> {
+            assertThat(measurement.startupSeconds()).isPositive();
+            assertThat(measurement.timeToFirstRequest()).isLessThan(MAX_TIME_TO_FIRST_REQUEST);
+        });
+    }
+
+    private Measurement measure(String mode, Path workingDir, String... jvmArguments) throws Exception {
+        int port = freePort();
+        Path log = WORK_DIR.resolve(mode.replaceAll("\\W+", "-") + ".log").toAbsolutePath();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(jvmArguments));
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=" + connectionDetails.getJdbcUrl());
+        command.add("--spring.datasource.username=" + connectionDetails.getUsername());
+        command.add("--spring.datasource.password=" + connectionDetails.getPassword());
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        if (workingDir != null) {
+            builder.directory(workingDir.toFile());
+        }
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            Duration timeToFirstRequest = awaitFirstRequest(process, port, start);
+            return new Measurement(mode, awaitStartupSeconds(log), timeToFirstRequest);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(1, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Duration awaitFirstRequest(Process process, int port, long start) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/products"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = start + MAX_TIME_TO_FIRST_REQUEST.toNanos();
+        Object lastResponse = null;
+        while (System.nanoTime() < deadline && process.isAlive()) {
+            try {
+                int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status == 200) {
+                    return Duration.ofNanos(System.nanoTime() - start);
+                }
+                lastResponse = status;
+            } catch (IOException e) {
+                lastResponse = e;
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("No answered request within " + MAX_TIME_TO_FIRST_REQUEST
+                + ", the process is " + (process.isAlive() ? "still running" : "gone")
+                + ", last response: " + lastResponse);
+    }
+
+    private static double awaitStartupSeconds(Path log) throws IOException, InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Matcher matcher = STARTED.matcher(Files.readString(log));
+            if (matcher.find()) {
+                return Double.parseDouble(matcher.group(1));
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("No startup time logged in " + log);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String render(List<Measurement> measurements) {
+        StringBuilder report = new StringBuilder(String.format("%-18s %12s %20s%n", "mode", "startup (s)", "first request (ms)"));
+        for (Measurement measurement : measurements) {
+            report.append(String.format("%-18s %12.3f %20d%n", measurement.mode(), measurement.startupSeconds(),
+                    measurement.timeToFirstRequest().toMillis()));
+        }
+        return report.toString();
+    }
+
+    private record Measurement(String mode, double startupSeconds, Duration timeToFirstRequest) {
+    }
+}
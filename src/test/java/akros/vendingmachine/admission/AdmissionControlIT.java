@@ -0,0 +1,90 @@
+package akros.vendingmachine.admission;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@TestPropertySource(properties = {
+        "app.admission.enabled=true",
+        "app.admission.queue-timeout=0ms",
+        "app.admission.retry-after=2s",
+        "app.admission.read.initial-limit=1",
+        "app.admission.read.min-limit=1",
+        "app.admission.read.max-limit=1",
+        "app.admission.write.initial-limit=10",
+        "app.admission.write.min-limit=1",
+        "app.admission.write.max-limit=10",
+        "app.admission.write.latency-target=1ms"
+})
+class AdmissionControlIT extends AbstractProductIT {
+
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_shed_reads_over_the_limit_with_retry_after() throws InterruptedException {
+        //Given
+        AimdLimiter reads = admissionControlFilter.limiter("GET");
+        assertThat(reads.acquire(0, TimeUnit.MILLISECONDS)).isTrue();
+
+        //When
+        var shed = restTemplate.getForEntity("/api/v1/products", ProductResponseDto.class);
+        reads.release(0, AimdLimiter.Outcome.IGNORED);
+        var admitted = restTemplate.getForEntity("/api/v1/products", String.class);
+
+        //Then
+        assertThat(shed.getStatusCode()).isEqualTo(SERVICE_UNAVAILABLE);
+        assertThat(shed.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(shed.getBody().getStatus()).isEqualTo(SERVICE_UNAVAILABLE);
+        assertThat(admitted.getStatusCode()).isEqualTo(OK);
+        assertThat(meterRegistry.get("admission.shed").tag("kind", "read").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("admission.in.flight").tag("kind", "read").gauge().value()).isZero();
+    }
+
+    @Test
+    void should_lower_the_write_limit_when_writes_exceed_the_latency_target() throws InterruptedException {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        //When
+        for (int i = 0; i < 3; i++) {
+            restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class);
+            Thread.sleep(2);
+        }
+
+        //Then
+        assertThat(meterRegistry.get("admission.limit").tag("kind", "write").gauge().value()).isLessThan(10);
+        assertThat(meterRegistry.get("admission.limit").tag("kind", "read").gauge().value()).isEqualTo(1);
+    }
+}
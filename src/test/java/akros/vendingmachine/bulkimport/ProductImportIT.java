@@ -0,0 +1,149 @@
+package akros.vendingmachine.bulkimport;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.dto.ProductRow;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.search.ProductSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.IMPORT_KEY;
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCTS_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.MULTI_STATUS;
+
+class ProductImportIT extends AbstractProductIT {
+
+    private static final String MACHINE = "site-7";
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+        productSearchIndex.rebuild();
+    }
+
+    @Test
+    void should_import_csv_up_to_the_quantity_cap() {
+        //Given
+        StringBuilder csv = new StringBuilder("productName,productPrice\n");
+        for (int i = 0; i < 25; i++) {
+            csv.append("Cola,350\n");
+        }
+        csv.append("\"Fanta, Orange\",300\n".repeat(3));
+        csv.append("Sprite,free\n");
+
+        //When
+        ProductResponseDto response = importFile(MACHINE, "units.csv", csv.toString());
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(MULTI_STATUS);
+        assertThat(importResult(response))
+                .containsEntry("rows", 29)
+                .containsEntry("imported", 13)
+                .containsEntry("rejectedInvalid", 1)
+                .containsEntry("rejectedOverCap", 15)
+                .containsEntry("errors", List.of("line 30: productPrice is not an integer: free"));
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE, "Fanta, Orange").getQuantity()).isEqualTo(3);
+        assertThat(productRepository.findAllRows(MACHINE)).hasSize(13)
+                .allSatisfy(row -> assertThat(row.getInventarQuantity()).isNotNull());
+        var search = restTemplate.getForEntity(productsPath(MACHINE) + "/search?prefix=fan", ProductResponseDto.class);
+        assertThat((List<?>) search.getBody().getData().get(PRODUCTS_KEY)).hasSize(3);
+    }
+
+    @Test
+    void should_import_ndjson_next_to_existing_stock_without_id_collisions() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        for (int i = 0; i < 8; i++) {
+            restTemplate.exchange(productsPath(MACHINE), POST, new HttpEntity<>(cola), ProductResponseDto.class);
+        }
+        String ndjson = "{\"productName\":\"Cola\",\"productPrice\":360}\n".repeat(5)
+                + "{\"productName\":\"Water\"}\n";
+
+        //When
+        ProductResponseDto response = importFile(MACHINE, "units.ndjson", ndjson);
+        ProductResponseDto added = restTemplate.exchange(productsPath(MACHINE), POST,
+                new HttpEntity<>(ProductDTO.builder().productName("Water").productPrice(100).build()), ProductResponseDto.class).getBody();
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(MULTI_STATUS);
+        assertThat(importResult(response))
+                .containsEntry("imported", 3)
+                .containsEntry("rejectedOverCap", 3);
+        assertThat(added.getStatus()).isEqualTo(CREATED);
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE, "Water").getQuantity()).isEqualTo(2);
+        assertThat(productRepository.findAllRows(MACHINE)).hasSize(12)
+                .extracting(ProductRow::getProductId)
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void should_import_every_row_of_a_file_within_the_cap() {
+        //Given
+        String csv = "Cola,350\nFanta,300\n";
+
+        //When
+        ProductResponseDto response = importFile(MACHINE, "units.csv", csv);
+
+        //Then
+        assertThat(response.getStatus()).isEqualTo(CREATED);
+        assertThat(importResult(response)).containsEntry("imported", 2);
+        assertThat(productRepository.findAllRows(MACHINE))
+                .extracting(row -> row.getProductName() + ":" + row.getProductPrice())
+                .containsExactly("Cola:350", "Fanta:300");
+    }
+
+    private ProductResponseDto importFile(String machineId, String fileName, String content) {
+        var file = new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+        var body = new LinkedMultiValueMap<String, Object>();
+        body.add("file", file);
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return restTemplate.exchange(productsPath(machineId) + "/import", POST, new HttpEntity<>(body, headers), ProductResponseDto.class)
+                .getBody();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> importResult(ProductResponseDto response) {
+        return (Map<String, Object>) response.getData().get(IMPORT_KEY);
+    }
+
+    private static String productsPath(String machineId) {
+        return MACHINE_API_PATH + machineId + "/products";
+    }
+}
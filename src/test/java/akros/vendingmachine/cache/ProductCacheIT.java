@@ -0,0 +1,107 @@
+package akros.vendingmachine.cache;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.event.ChangeType.DELETED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+
+class ProductCacheIT extends AbstractProductIT {
+
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_serve_repeated_reads_from_cache() {
+        //Given
+        Integer productId = addProduct("Cola");
+        long hits = (long) productCache.stats().get("products").get("hitCount");
+
+        //When
+        restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class);
+        restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class);
+
+        //Then
+        assertThat((long) productCache.stats().get("products").get("hitCount")).isGreaterThan(hits);
+    }
+
+    @Test
+    void should_evict_product_when_another_node_notifies_a_change() throws Exception {
+        //Given
+        Integer productId = addProduct("Fanta");
+        assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, productId)).isNotNull();
+        jdbcTemplate.update("DELETE FROM product WHERE product_id = ?", productId);
+        var message = new CacheInvalidationMessage("another-node",
+                List.of(new CacheInvalidationMessage.Change(DELETED, DEFAULT_MACHINE_ID, productId, "Fanta", null, null)));
+
+        //When
+        jdbcTemplate.queryForObject("SELECT pg_notify('product_cache', ?)", String.class, objectMapper.writeValueAsString(message));
+
+        //Then
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (productCache.findProduct(DEFAULT_MACHINE_ID, productId) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, productId)).isNull();
+    }
+
+    @Test
+    void should_serve_the_current_quantity_through_all_cached_products_of_a_product_name() {
+        //Given
+        Integer first = addProduct("Water");
+        Integer second = addProduct("Water");
+        assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, first).getInventar().getQuantity()).isEqualTo(2);
+        assertThat(productCache.findProducts(DEFAULT_MACHINE_ID, Set.of(first)).get(first).getInventar().getQuantity()).isEqualTo(2);
+
+        //When
+        addProduct("Water");
+        Integer afterRestock = productCache.findProduct(DEFAULT_MACHINE_ID, first).getInventar().getQuantity();
+        restTemplate.delete(PRODUCT_API_PATH + second);
+
+        //Then
+        assertThat(afterRestock).isEqualTo(3);
+        assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, first).getInventar().getQuantity()).isEqualTo(2);
+        assertThat(productCache.findProducts(DEFAULT_MACHINE_ID, Set.of(first)).get(first).getInventar().getQuantity()).isEqualTo(2);
+    }
+
+    private Integer addProduct(String productName) {
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName(productName)
+                .productPrice(350)
+                .build();
+        ProductResponseDto responseDto = restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+        var product = (LinkedHashMap<?, ?>) responseDto.getData().get(PRODUCT_KEY);
+        return (Integer) product.get("productId");
+    }
+}
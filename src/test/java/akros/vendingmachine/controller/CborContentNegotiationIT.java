@@ -0,0 +1,141 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+class CborContentNegotiationIT extends AbstractProductIT {
+
+    private static final String PRODUCTS_PATH = "/api/v1/products";
+
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_answer_a_product_in_trimmed_cbor_when_accepted() throws Exception {
+        //Given
+        Integer id = addProduct("Cola");
+
+        //When
+        ResponseEntity<byte[]> cbor = get(PRODUCT_API_PATH + id, MediaType.APPLICATION_CBOR, null);
+        ResponseEntity<byte[]> json = get(PRODUCT_API_PATH + id, MediaType.APPLICATION_JSON, null);
+
+        //Then
+        assertThat(cbor.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        Map<String, Object> envelope = cborMapper.readValue(cbor.getBody(), new TypeReference<>() {
+        });
+        assertThat(envelope).containsOnlyKeys("statusCode", "data").containsEntry("statusCode", 200);
+        assertThat(envelope.get("data")).isEqualTo(Map.of(PRODUCT_KEY, Map.of(
+                "productId", id,
+                "productName", "Cola",
+                "productPrice", 350,
+                "inventar", Map.of("quantity", 1))));
+        assertThat(cbor.getBody().length).isLessThan(json.getBody().length / 2);
+    }
+
+    @Test
+    void should_serve_the_catalog_snapshot_in_cbor_with_its_own_etag() throws Exception {
+        //Given
+        addProduct("Cola");
+        addProduct("Fanta");
+
+        //When
+        ResponseEntity<byte[]> cbor = get(PRODUCTS_PATH, MediaType.APPLICATION_CBOR, null);
+        ResponseEntity<byte[]> notModified = get(PRODUCTS_PATH, MediaType.APPLICATION_CBOR, cbor.getHeaders().getETag());
+        ResponseEntity<byte[]> json = get(PRODUCTS_PATH, MediaType.ALL, null);
+
+        //Then
+        List<Map<String, Object>> products = cborMapper.readValue(cbor.getBody(), new TypeReference<>() {
+        });
+        assertThat(products).extracting(product -> product.get("productName")).containsExactly("Cola", "Fanta");
+        assertThat(cbor.getHeaders().getETag()).endsWith("-cbor\"");
+        assertThat(cbor.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(json.getHeaders().getETag()).isNotEqualTo(cbor.getHeaders().getETag());
+    }
+
+    @Test
+    void should_tag_a_product_per_representation_and_vary_by_accept() {
+        //Given
+        Integer id = addProduct("Cola");
+        ResponseEntity<byte[]> json = get(PRODUCT_API_PATH + id, MediaType.APPLICATION_JSON, null);
+
+        //When
+        ResponseEntity<byte[]> cbor = get(PRODUCT_API_PATH + id, MediaType.APPLICATION_CBOR, json.getHeaders().getETag());
+        ResponseEntity<byte[]> notModified = get(PRODUCT_API_PATH + id, MediaType.APPLICATION_CBOR, cbor.getHeaders().getETag());
+
+        //Then
+        assertThat(cbor.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(cbor.getHeaders().getETag()).endsWith("-cbor\"").isNotEqualTo(json.getHeaders().getETag());
+        assertThat(json.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+        assertThat(cbor.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    void should_accept_a_cbor_request_body() throws Exception {
+        //Given
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_CBOR);
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        byte[] body = cborMapper.writeValueAsBytes(Map.of("productName", "Water", "productPrice", 100));
+
+        //When
+        ResponseEntity<byte[]> response = restTemplate.exchange(PRODUCTS_PATH, POST, new HttpEntity<>(body, headers), byte[].class);
+
+        //Then
+        Map<String, Object> envelope = cborMapper.readValue(response.getBody(), new TypeReference<>() {
+        });
+        assertThat(envelope).containsEntry("statusCode", 201);
+        assertThat(inventarRepository.findByMachineIdAndProductName("default", "Water").getQuantity()).isEqualTo(1);
+    }
+
+    private Integer addProduct(String productName) {
+        ProductResponseDto response = restTemplate.exchange(PRODUCTS_PATH, POST,
+                new HttpEntity<>(ProductDTO.builder().productName(productName).productPrice(350).build()), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) response.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    private ResponseEntity<byte[]> get(String path, MediaType accept, String ifNoneMatch) {
+        var headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return restTemplate.exchange(path, GET, new HttpEntity<>(headers), byte[].class);
+    }
+}
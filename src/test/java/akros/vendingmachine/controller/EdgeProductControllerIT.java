@@ -0,0 +1,22 @@
+package akros.vendingmachine.controller;
+
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Runs the {@link ProductControllerIT} tests against the edge catalog instead of Postgres.
+ */
+@ActiveProfiles("edge")
+class EdgeProductControllerIT extends ProductControllerIT {
+
+    @DynamicPropertySource
+    static void edgeProperties(DynamicPropertyRegistry registry) throws IOException {
+        var dataDir = Files.createTempDirectory("edge-catalog-");
+        registry.add("app.edge.data-dir", dataDir::toString);
+        registry.add("app.edge.force-writes", () -> "false");
+    }
+}
@@ -0,0 +1,128 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+
+import java.util.LinkedHashMap;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.productApiPath;
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+class MachineProductControllerIT extends AbstractProductIT {
+
+    private static final String MACHINE_A = "machine-a";
+    private static final String MACHINE_B = "machine-b";
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_cap_quantity_per_machine() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        for (int i = 0; i < MAX_PRODUCT_QUANTITY; i++) {
+            addProduct(MACHINE_A, cola);
+        }
+
+        //When
+        ProductResponseDto rejected = addProduct(MACHINE_A, cola);
+        ProductResponseDto accepted = addProduct(MACHINE_B, cola);
+
+        //Then
+        assertThat(rejected.getStatus()).isEqualTo(BAD_REQUEST);
+        assertThat(accepted.getStatus()).isEqualTo(CREATED);
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE_A, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(MACHINE_B, "Cola").getQuantity()).isEqualTo(1);
+        given().when().get(productsPath(MACHINE_B)).then().statusCode(OK.value()).body(".", hasSize(1));
+    }
+
+    @Test
+    void should_not_get_or_delete_product_of_another_machine() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        Integer id = productId(addProduct(MACHINE_A, cola));
+
+        //When
+        var otherMachineGet = restTemplate.getForEntity(productApiPath(MACHINE_B) + id, ProductResponseDto.class);
+        var otherMachineDelete = restTemplate.exchange(productApiPath(MACHINE_B) + id, DELETE, HttpEntity.EMPTY, ProductResponseDto.class);
+        var ownMachineGet = restTemplate.getForEntity(productApiPath(MACHINE_A) + id, ProductResponseDto.class);
+
+        //Then
+        assertThat(otherMachineGet.getBody().getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(otherMachineDelete.getBody().getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(ownMachineGet.getBody().getStatus()).isEqualTo(OK);
+        assertThat(productRepository.existsById(id)).isTrue();
+    }
+
+    @Test
+    void should_serve_default_machine_on_legacy_path() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        Integer id = productId(restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(cola), ProductResponseDto.class).getBody());
+
+        //When
+        var response = restTemplate.getForEntity(MACHINE_API_PATH + DEFAULT_MACHINE_ID + "/products/" + id, ProductResponseDto.class);
+
+        //Then
+        assertThat(response.getBody().getStatus()).isEqualTo(HttpStatus.OK);
+        var data = (LinkedHashMap<?, ?>) response.getBody().getData().get(PRODUCT_KEY);
+        assertThat(data.get("machineId")).isEqualTo(DEFAULT_MACHINE_ID);
+    }
+
+    private ProductResponseDto addProduct(String machineId, ProductDTO productDTO) {
+        return restTemplate.exchange(productsPath(machineId), POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+    }
+
+    private static String productsPath(String machineId) {
+        return MACHINE_API_PATH + machineId + "/products";
+    }
+
+    private static Integer productId(ProductResponseDto responseDto) {
+        var product = (LinkedHashMap<?, ?>) responseDto.getData().get(PRODUCT_KEY);
+        return (Integer) product.get("productId");
+    }
+}
@@ -0,0 +1,80 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+
+class ProductControllerConcurrencyIT extends AbstractProductIT {
+
+    private static final int CONCURRENT_REQUESTS = 300;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_not_exceed_quantity_cap_when_products_are_added_concurrently() throws Exception {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<ProductResponseDto> addProduct = () -> {
+            start.await();
+            return restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+        };
+
+        //When
+        List<ProductResponseDto> responses;
+        try (ExecutorService executor = Executors.newFixedThreadPool(64)) {
+            List<Future<ProductResponseDto>> futures = IntStream.range(0, CONCURRENT_REQUESTS)
+                    .mapToObj(i -> executor.submit(addProduct))
+                    .toList();
+            start.countDown();
+            responses = futures.stream().map(ProductControllerConcurrencyIT::await).toList();
+        }
+
+        //Then
+        assertThat(responses).filteredOn(response -> response.getStatus() == CREATED).hasSize(MAX_PRODUCT_QUANTITY);
+        assertThat(responses).filteredOn(response -> response.getStatus() == BAD_REQUEST).hasSize(CONCURRENT_REQUESTS - MAX_PRODUCT_QUANTITY);
+        assertThat(productRepository.count()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
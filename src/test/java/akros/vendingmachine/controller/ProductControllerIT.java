@@ -1,26 +1,41 @@
 package akros.vendingmachine.controller;
 
 import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.cache.CatalogSnapshot;
+import akros.vendingmachine.cache.ProductCache;
 import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
 import akros.vendingmachine.dto.ProductResponseDto;
 import akros.vendingmachine.repository.InventarRepository;
 import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.search.ProductSearchIndex;
 import io.restassured.RestAssured;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
 import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
 import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.PRODUCTS_KEY;
+import static akros.vendingmachine.AppConstant.productApiPath;
 import static io.restassured.RestAssured.given;
 import static io.restassured.http.ContentType.JSON;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.http.HttpMethod.PUT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
@@ -32,6 +47,12 @@ class ProductControllerIT extends AbstractProductIT {
     private ProductRepository productRepository;
     @Autowired
     private InventarRepository productInventarRepository;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     @BeforeEach
     void setUp() {
@@ -42,6 +63,7 @@ class ProductControllerIT extends AbstractProductIT {
     void tearDown() {
         productRepository.deleteAll();
         productInventarRepository.deleteAll();
+        productSearchIndex.rebuild();
     }
 
     @Test
@@ -88,6 +110,36 @@ class ProductControllerIT extends AbstractProductIT {
         assertThat(responseDto.getStatus()).isEqualTo(BAD_REQUEST);
     }
 
+    @Test
+    void should_add_products_in_batch_and_reject_units_above_quantity_cap() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        ProductDTO fanta = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(300)
+                .build();
+        addProduct(cola);
+        List<ProductDTO> batch = new ArrayList<>(Collections.nCopies(11, cola));
+        batch.add(fanta);
+
+        //When
+        ProductResponseDto responseDto = restTemplate.exchange("/api/v1/products/batch", POST, new HttpEntity<>(batch), ProductResponseDto.class).getBody();
+
+        //Then
+        assertThat(responseDto).isNotNull();
+        assertThat(responseDto.getStatus()).isEqualTo(HttpStatus.MULTI_STATUS);
+        var results = productResults(responseDto);
+        assertThat(results).hasSize(12);
+        assertThat(results).filteredOn(result -> "CREATED".equals(result.get("status"))).hasSize(10);
+        assertThat(results.get(10).get("status")).isEqualTo("BAD_REQUEST");
+        assertThat(results.get(11).get("status")).isEqualTo("CREATED");
+        assertThat(productRepository.count()).isEqualTo(11);
+        assertThat(productInventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Cola").getQuantity()).isEqualTo(10);
+    }
+
     @Test
     void should_get_all_products() {
         //Given
@@ -114,6 +166,203 @@ class ProductControllerIT extends AbstractProductIT {
                 .body(".", hasSize(4));
     }
 
+    @Test
+    void should_return_not_modified_for_unchanged_catalog_and_new_etag_after_change() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        addProduct(productDTO1);
+        String eTag = given().when().get("/api/v1/products").then().statusCode(OK.value()).extract().header(HttpHeaders.ETAG);
+
+        //When
+        int unchanged = given().header(HttpHeaders.IF_NONE_MATCH, eTag).when().get("/api/v1/products").statusCode();
+        addProduct(productDTO1);
+        var changed = given().header(HttpHeaders.IF_NONE_MATCH, eTag).when().get("/api/v1/products");
+
+        //Then
+        assertThat(eTag).isNotNull();
+        assertThat(unchanged).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(changed.statusCode()).isEqualTo(OK.value());
+        assertThat(changed.header(HttpHeaders.ETAG)).isNotEqualTo(eTag);
+        assertThat(changed.jsonPath().getList(".")).hasSize(2);
+    }
+
+    @Test
+    void should_serve_gzip_catalog_snapshot_when_accepted() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        addProduct(productDTO1);
+
+        //When
+        var response = given().header(HttpHeaders.ACCEPT_ENCODING, "gzip").when().get("/api/v1/products");
+
+        //Then
+        assertThat(response.statusCode()).isEqualTo(OK.value());
+        assertThat(response.header(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.jsonPath().getList(".")).hasSize(1);
+    }
+
+    @Test
+    void should_return_not_modified_for_unchanged_product() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        addProduct(productDTO1);
+        Integer id = productRepository.findAll().getFirst().getProductId();
+        String eTag = given().when().get(PRODUCT_API_PATH + id).then().statusCode(OK.value()).extract().header(HttpHeaders.ETAG);
+
+        //When
+        int unchanged = given().header(HttpHeaders.IF_NONE_MATCH, eTag).when().get(PRODUCT_API_PATH + id).statusCode();
+
+        //Then
+        assertThat(eTag).isNotNull();
+        assertThat(unchanged).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+    }
+
+    @Test
+    void should_honour_if_none_match_wildcard_only_for_an_existing_product() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        addProduct(productDTO1);
+        Integer id = productRepository.findAll().getFirst().getProductId();
+
+        //When
+        int existing = given().header(HttpHeaders.IF_NONE_MATCH, "*").when().get(PRODUCT_API_PATH + id).statusCode();
+        var missing = given().header(HttpHeaders.IF_NONE_MATCH, "*").when().get(PRODUCT_API_PATH + Integer.MAX_VALUE);
+
+        //Then
+        assertThat(existing).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+        assertThat(missing.statusCode()).isEqualTo(OK.value());
+        assertThat(missing.jsonPath().getString("status")).isEqualTo(HttpStatus.NOT_FOUND.name());
+    }
+
+    @Test
+    void should_get_products_page_by_page() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        ProductDTO productDTO2 = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(350)
+                .build();
+
+        //When
+        addProducts(productDTO1, productDTO2);
+        ProductPageDTO firstPage = restTemplate.getForObject("/api/v1/products?size=3", ProductPageDTO.class);
+        ProductPageDTO lastPage = restTemplate.getForObject("/api/v1/products?size=3&cursor=" + firstPage.getNextCursor(), ProductPageDTO.class);
+
+        //Then
+        assertThat(firstPage.getProducts()).hasSize(3);
+        assertThat(firstPage.getNextCursor()).isNotNull();
+        assertThat(lastPage.getProducts()).hasSize(1);
+        assertThat(lastPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    void should_stream_all_products_as_ndjson() {
+        //Given
+        ProductDTO productDTO1 = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        ProductDTO productDTO2 = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(350)
+                .build();
+
+        //When
+        addProducts(productDTO1, productDTO2);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        var response = restTemplate.exchange("/api/v1/products", GET, new HttpEntity<>(headers), String.class);
+
+        //Then
+        assertThat(response.getStatusCode()).isEqualTo(OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        assertThat(response.getBody().lines()).hasSize(4);
+    }
+
+    @Test
+    void should_search_products_by_name_prefix_and_price_range() {
+        //Given
+        addProduct(ProductDTO.builder().productName("Cola").productPrice(350).build());
+        addProduct(ProductDTO.builder().productName("Coke").productPrice(250).build());
+        addProduct(ProductDTO.builder().productName("Fanta").productPrice(200).build());
+        addProduct(ProductDTO.builder().productName("cocoa").productPrice(150).build());
+
+        //When
+        var byPrice = given().when().get("/api/v1/products/search?prefix=Co&maxPrice=300&sort=price").jsonPath();
+        var byNameDescending = given().when().get("/api/v1/products/search?prefix=co&sort=-name").jsonPath();
+        var invalidSort = given().when().get("/api/v1/products/search?sort=quantity").jsonPath();
+
+        //Then
+        assertThat(byPrice.getList("data.products.productName")).containsExactly("cocoa", "Coke");
+        assertThat(byPrice.getList("data.products.inventar.quantity")).containsExactly(1, 1);
+        assertThat(byNameDescending.getList("data.products.productName")).containsExactly("Cola", "Coke", "cocoa");
+        assertThat(invalidSort.getInt("statusCode")).isEqualTo(BAD_REQUEST.value());
+    }
+
+    @Test
+    void should_update_search_results_after_product_changes() {
+        //Given
+        ProductDTO cola = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        addProduct(cola);
+        addProduct(cola);
+        List<Integer> ids = given().when().get("/api/v1/products/search?prefix=cola").jsonPath().getList("data.products.productId");
+
+        //When
+        restTemplate.delete(PRODUCT_API_PATH + ids.get(0));
+        restTemplate.exchange(PRODUCT_API_PATH + ids.get(1), PUT,
+                new HttpEntity<>(ProductDTO.builder().productName("Club Mate").productPrice(280).build()), ProductResponseDto.class);
+        var colas = given().when().get("/api/v1/products/search?prefix=cola").jsonPath();
+        var cheap = given().when().get("/api/v1/products/search?minPrice=250&maxPrice=300").jsonPath();
+
+        //Then
+        assertThat(ids).hasSize(2);
+        assertThat(colas.getList("data.products")).isEmpty();
+        assertThat(cheap.getList("data.products.productId")).containsExactly(ids.get(1));
+        assertThat(cheap.getList("data.products.productName")).containsExactly("Club Mate");
+    }
+
+    @Test
+    void should_not_index_or_track_machines_without_products_on_read() {
+        //Given
+        String unknown = "machine-unknown";
+        addProduct(ProductDTO.builder().productName("Cola").productPrice(350).build());
+        Integer id = productRepository.findAll().getFirst().getProductId();
+
+        //When
+        var search = given().when().get(productApiPath(unknown) + "search?prefix=co").jsonPath();
+        var catalog = given().when().get(MACHINE_API_PATH + unknown + "/products");
+        given().when().get("/api/v1/products/search?prefix=co").then().statusCode(OK.value());
+        restTemplate.delete(PRODUCT_API_PATH + id);
+        productSearchIndex.rebuild();
+
+        //Then
+        assertThat(search.getList("data.products")).isEmpty();
+        assertThat(catalog.statusCode()).isEqualTo(OK.value());
+        assertThat(catalog.jsonPath().getList(".")).isEmpty();
+        assertThat(productSearchIndex.indexedMachineIds()).doesNotContain(unknown, DEFAULT_MACHINE_ID);
+        assertThat(catalogSnapshot.trackedMachineIds()).doesNotContain(unknown);
+    }
+
     @Test
     void should_get_product_by_id() {
         //Given
@@ -155,6 +404,49 @@ class ProductControllerIT extends AbstractProductIT {
 
     }
 
+    @Test
+    void should_get_products_by_ids_in_request_order_with_not_found_entries() {
+        //Given
+        Integer cola = addedProductId(ProductDTO.builder().productName("Cola").productPrice(350).build(), "/api/v1/products");
+        Integer fanta = addedProductId(ProductDTO.builder().productName("Fanta").productPrice(300).build(), "/api/v1/products");
+        Integer otherMachine = addedProductId(ProductDTO.builder().productName("Water").productPrice(100).build(), "/api/v1/machines/lookup-1/products");
+
+        //When
+        ProductResponseDto responseDto = restTemplate.exchange("/api/v1/products?ids={ids}", GET, HttpEntity.EMPTY, ProductResponseDto.class,
+                fanta + "," + Integer.MAX_VALUE + "," + cola + "," + otherMachine + "," + fanta).getBody();
+
+        //Then
+        assertThat(responseDto).isNotNull();
+        assertThat(responseDto.getStatus()).isEqualTo(HttpStatus.MULTI_STATUS);
+        var results = productResults(responseDto);
+        assertThat(results).extracting(result -> result.get("status"))
+                .containsExactly("OK", "NOT_FOUND", "OK", "NOT_FOUND", "OK");
+        assertThat(results).extracting(result -> result.get("product") == null ? null : (Object) ((Map<?, ?>) result.get("product")).get("productId"))
+                .containsExactly(fanta, null, cola, null, fanta);
+    }
+
+    @Test
+    void should_look_up_products_by_ids_from_body_reusing_cached_products() {
+        //Given
+        Integer cola = addedProductId(ProductDTO.builder().productName("Cola").productPrice(350).build(), "/api/v1/products");
+        Integer fanta = addedProductId(ProductDTO.builder().productName("Fanta").productPrice(300).build(), "/api/v1/products");
+        restTemplate.getForEntity(PRODUCT_API_PATH + cola, ProductResponseDto.class);
+        Map<String, Object> before = productCache.stats().get("products");
+
+        //When
+        ProductResponseDto responseDto = restTemplate.exchange("/api/v1/products/lookup", POST, new HttpEntity<>(List.of(cola, fanta)),
+                ProductResponseDto.class).getBody();
+
+        //Then
+        assertThat(responseDto).isNotNull();
+        assertThat(responseDto.getStatus()).isEqualTo(OK);
+        var results = productResults(responseDto);
+        assertThat(results).extracting(result -> (Object) ((Map<?, ?>) result.get("product")).get("productName")).containsExactly("Cola", "Fanta");
+        Map<String, Object> after = productCache.stats().get("products");
+        assertThat((Long) after.get("hitCount") - (Long) before.get("hitCount")).isEqualTo(1);
+        assertThat((Long) after.get("loadCount") - (Long) before.get("loadCount")).isEqualTo(1);
+    }
+
     @Test
     void should_delete_product_by_id() {
         //Given
@@ -210,6 +502,16 @@ class ProductControllerIT extends AbstractProductIT {
 
 
 
+    private Integer addedProductId(ProductDTO productDTO, String path) {
+        ProductResponseDto responseDto = restTemplate.exchange(path, POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) responseDto.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> productResults(ProductResponseDto response) {
+        return (List<Map<String, Object>>) response.getData().get(PRODUCTS_KEY);
+    }
+
     private void addProduct( ProductDTO productDTO1) {
         restTemplate.exchange("/api/v1/products" , POST, new HttpEntity<>(productDTO1), ProductResponseDto.class).getBody();
     }
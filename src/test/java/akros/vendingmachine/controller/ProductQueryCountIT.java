@@ -0,0 +1,128 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.SqlStatementCounter;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+@TestPropertySource(properties = {
+        "app.metrics.inventory-refresh-interval=1h",
+        "app.cache.preload=false"
+})
+class ProductQueryCountIT extends AbstractProductIT {
+
+    private static final int PRODUCT_NAMES = 5;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    private SqlStatementCounter sqlStatementCounter;
+    private List<Integer> productIds;
+
+    @BeforeEach
+    void setUp() {
+        sqlStatementCounter = SqlStatementCounter.of(entityManagerFactory);
+        List<Integer> createdIds = new ArrayList<>();
+        for (int i = 0; i < PRODUCT_NAMES * 2; i++) {
+            ProductDTO productDTO = ProductDTO.builder()
+                    .productName("Product " + i % PRODUCT_NAMES)
+                    .productPrice(100 + i)
+                    .build();
+            ProductResponseDto responseDto = restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+            createdIds.add((Integer) ((Map<?, ?>) responseDto.getData().get(PRODUCT_KEY)).get("productId"));
+        }
+        productIds = createdIds;
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_read_product_list_with_one_statement_and_none_when_unchanged() {
+        //Given
+        ProductDTO[][] products = new ProductDTO[1][];
+
+        //When
+        long first = sqlStatementCounter.count(() -> products[0] = restTemplate.getForObject("/api/v1/products", ProductDTO[].class));
+        long second = sqlStatementCounter.count(() -> restTemplate.getForObject("/api/v1/products", ProductDTO[].class));
+
+        //Then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(products[0]).hasSize(PRODUCT_NAMES * 2);
+        assertThat(products[0]).allSatisfy(product -> assertThat(product.getInventar()).isNotNull());
+    }
+
+    @Test
+    void should_read_product_page_with_one_statement() {
+        //Given
+        ProductPageDTO[] page = new ProductPageDTO[1];
+
+        //When
+        sqlStatementCounter.assertStatementCount(1,
+                () -> page[0] = restTemplate.getForObject("/api/v1/products?size=3", ProductPageDTO.class));
+
+        //Then
+        assertThat(page[0].getProducts()).hasSize(3);
+        assertThat(page[0].getProducts()).allSatisfy(product -> assertThat(product.getInventar()).isNotNull());
+    }
+
+    @Test
+    void should_stream_products_with_one_statement() {
+        //Given
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        String[] body = new String[1];
+
+        //When
+        sqlStatementCounter.assertStatementCount(1, () -> body[0] = restTemplate
+                .exchange("/api/v1/products", GET, new HttpEntity<>(headers), String.class)
+                .getBody());
+
+        //Then
+        assertThat(body[0].lines()).hasSize(PRODUCT_NAMES * 2);
+    }
+
+    @Test
+    void should_read_product_detail_with_one_statement_and_none_when_cached() {
+        //Given
+        Integer productId = productIds.getLast();
+
+        //When
+        long first = sqlStatementCounter.count(() -> restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class));
+        long second = sqlStatementCounter.count(() -> restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class));
+
+        //Then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+    }
+}
@@ -0,0 +1,168 @@
+package akros.vendingmachine.controller;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.cache.ProductCache;
+import akros.vendingmachine.config.ReactiveConfig;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcConnectionDetails;
+import org.springframework.http.HttpEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static io.restassured.RestAssured.given;
+import static io.restassured.http.ContentType.JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpMethod.PUT;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+@ActiveProfiles("reactive")
+class ReactiveProductControllerIT extends AbstractProductIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.baseURI = "http://localhost:" + port;
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_add_and_get_product() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        //When
+        ProductResponseDto created = addProduct(productDTO);
+        var productId = (Integer) ((LinkedHashMap<?, ?>) created.getData().get(PRODUCT_KEY)).get("productId");
+        ProductResponseDto found = restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class);
+
+        //Then
+        assertThat(created.getStatus()).isEqualTo(CREATED);
+        assertThat(found.getStatus()).isEqualTo(OK);
+        given()
+                .contentType(JSON)
+                .when()
+                .get("/api/v1/products")
+                .then()
+                .statusCode(OK.value())
+                .body(".", hasSize(1));
+    }
+
+    @Test
+    void should_not_add_product_when_quantity_more_than_10_products_with_same_product_name() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(300)
+                .build();
+
+        //When
+        for (int i = 0; i < MAX_PRODUCT_QUANTITY; i++) {
+            addProduct(productDTO);
+        }
+        ProductResponseDto responseDto = addProduct(productDTO);
+
+        //Then
+        assertThat(responseDto.getStatus()).isEqualTo(BAD_REQUEST);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Fanta").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+    }
+
+    @Test
+    void should_delete_product_and_decrement_inventar() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Sprite")
+                .productPrice(300)
+                .build();
+        ProductResponseDto created = addProduct(productDTO);
+        var productId = (Integer) ((LinkedHashMap<?, ?>) created.getData().get(PRODUCT_KEY)).get("productId");
+
+        //When
+        restTemplate.delete(PRODUCT_API_PATH + productId);
+        ProductResponseDto found = restTemplate.getForObject(PRODUCT_API_PATH + productId, ProductResponseDto.class);
+
+        //Then
+        assertThat(found.getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Sprite").getQuantity()).isZero();
+    }
+
+    @Test
+    void should_notify_other_nodes_and_evict_local_caches_after_a_reactive_write() throws Exception {
+        //Given
+        ProductResponseDto created = addProduct(ProductDTO.builder().productName("Mate").productPrice(250).build());
+        var productId = (Integer) ((LinkedHashMap<?, ?>) created.getData().get(PRODUCT_KEY)).get("productId");
+        assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, productId).getProductName()).isEqualTo("Mate");
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN product_cache");
+            }
+
+            //When
+            restTemplate.exchange(PRODUCT_API_PATH + productId, PUT,
+                    new HttpEntity<>(ProductDTO.builder().productName("Club Mate").productPrice(270).build()), ProductResponseDto.class);
+            PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(5_000);
+
+            //Then
+            assertThat(notifications).isNotNull();
+            assertThat(notifications[0].getParameter()).contains("\"UPDATED\"", "\"productId\":" + productId, "Club Mate");
+            assertThat(productCache.findProduct(DEFAULT_MACHINE_ID, productId).getProductName()).isEqualTo("Club Mate");
+        }
+    }
+
+    @Test
+    void should_refuse_to_start_with_ledger_inventory_mode() {
+        //Given
+        MockEnvironment environment = new MockEnvironment().withProperty("app.inventory.mode", "ledger");
+
+        //When //Then
+        assertThatThrownBy(() -> new ReactiveConfig(environment, new StaticListableBeanFactory().getBeanProvider(R2dbcConnectionDetails.class)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.inventory.mode=ledger");
+    }
+
+    private ProductResponseDto addProduct(ProductDTO productDTO) {
+        return restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+    }
+}
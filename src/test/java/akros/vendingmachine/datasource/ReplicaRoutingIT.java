@@ -0,0 +1,148 @@
+package akros.vendingmachine.datasource;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductPageDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+/**
+ * Runs against two databases of the test container, the test database as primary and a second
+ * one, migrated separately, standing in for a replica. Rows written to only one of them show
+ * which database served a read.
+ */
+@TestPropertySource(properties = {
+        "app.datasource.replicas.enabled=true",
+        "app.datasource.replicas.health-check-interval=1h",
+        "app.datasource.replicas.connection-timeout=250ms",
+        "app.datasource.replicas.read-your-writes=1m"
+})
+class ReplicaRoutingIT extends AbstractProductIT {
+
+    private static final String MACHINE = "site-9";
+    private static DriverManagerDataSource replica;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.datasource.replicas.nodes[0].url", () -> replica().getUrl());
+    }
+
+    private static synchronized DriverManagerDataSource replica() {
+        if (replica == null) {
+            replica = createDatabase("replica");
+            Flyway.configure().dataSource(replica).load().migrate();
+        }
+        return replica;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        jdbcTemplate.execute("ALTER DATABASE replica ALLOW_CONNECTIONS true");
+        awaitReplicaAvailable();
+        new JdbcTemplate(replica()).update("DELETE FROM product");
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_read_pages_from_the_replica_and_the_catalog_from_the_primary() {
+        //Given
+        new JdbcTemplate(replica()).update(
+                "INSERT INTO product (machine_id, product_id, product_name, product_price) VALUES (?, 1000, 'Replicated', 100)", MACHINE);
+
+        //When
+        ProductPageDTO page = restTemplate.getForObject(productsPath() + "?size=10", ProductPageDTO.class);
+        ProductDTO[] catalog = restTemplate.getForObject(productsPath(), ProductDTO[].class);
+
+        //Then
+        assertThat(page.getProducts()).extracting(ProductDTO::getProductName).containsExactly("Replicated");
+        assertThat(catalog).isEmpty();
+    }
+
+    @Test
+    void should_pin_the_client_to_the_primary_after_a_write() {
+        //Given
+        ResponseEntity<ProductResponseDto> created = restTemplate.exchange(productsPath(), POST,
+                new HttpEntity<>(ProductDTO.builder().productName("Cola").productPrice(350).build()), ProductResponseDto.class);
+        List<String> cookies = created.getHeaders().get(HttpHeaders.SET_COOKIE);
+        var pinned = new HttpHeaders();
+        pinned.add(HttpHeaders.COOKIE, cookies.get(0).split(";", 2)[0]);
+
+        //When
+        ProductPageDTO fromReplica = restTemplate.getForObject(productsPath() + "?size=10", ProductPageDTO.class);
+        ProductPageDTO fromPrimary = restTemplate.exchange(productsPath() + "?size=10", GET, new HttpEntity<>(pinned), ProductPageDTO.class)
+                .getBody();
+
+        //Then
+        assertThat(cookies).singleElement().asString().startsWith(ReadYourWritesFilter.PIN_COOKIE + "=");
+        assertThat(fromReplica.getProducts()).isEmpty();
+        assertThat(fromPrimary.getProducts()).extracting(ProductDTO::getProductName).containsExactly("Cola");
+    }
+
+    @Test
+    void should_fall_back_to_the_primary_when_the_replica_is_down() {
+        //Given
+        restTemplate.exchange(productsPath(), POST,
+                new HttpEntity<>(ProductDTO.builder().productName("Fanta").productPrice(300).build()), ProductResponseDto.class);
+        jdbcTemplate.execute("ALTER DATABASE replica ALLOW_CONNECTIONS false");
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = 'replica'");
+
+        //When
+        replicaRoutingDataSource.checkHealth();
+        ProductPageDTO page = restTemplate.getForObject(productsPath() + "?size=10", ProductPageDTO.class);
+
+        //Then
+        assertThat(replicaRoutingDataSource.replicas())
+                .singleElement()
+                .satisfies(status -> assertThat(status.available()).isFalse());
+        assertThat(page.getProducts()).extracting(ProductDTO::getProductName).containsExactly("Fanta");
+    }
+
+    /**
+     * A pool that failed to connect retries with a backoff, so the replica may take a few health
+     * checks to become available again.
+     */
+    private void awaitReplicaAvailable() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            replicaRoutingDataSource.checkHealth();
+            if (replicaRoutingDataSource.replicas().stream().allMatch(ReplicaRoutingDataSource.ReplicaStatus::available)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Replica not available again: " + replicaRoutingDataSource.replicas());
+    }
+
+    private static String productsPath() {
+        return MACHINE_API_PATH + MACHINE + "/products";
+    }
+}
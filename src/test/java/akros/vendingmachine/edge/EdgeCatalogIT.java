@@ -0,0 +1,160 @@
+package akros.vendingmachine.edge;
+
+import akros.vendingmachine.config.EdgeProperties;
+import akros.vendingmachine.domain.Inventar;
+import akros.vendingmachine.domain.Product;
+import akros.vendingmachine.dto.ProductRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class EdgeCatalogIT {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void should_recover_the_journal_of_a_crashed_catalog() throws Exception {
+        //Given
+        EdgeCatalog crashed = new EdgeCatalog(properties());
+        String inventarId = crashed.increment("edge-1", "Cola", UUID.randomUUID().toString(), 10).getId();
+        crashed.increment("edge-1", "Cola", "unused", 10);
+        Product cola = crashed.saveProduct(new Product(null, "edge-1", "Cola", 350, new Inventar(inventarId, null, null, null)));
+        Product fanta = crashed.saveProduct(new Product(null, "edge-1", "Fanta", 300, null));
+        crashed.updateProduct("edge-1", fanta.getProductId(), "Fanta Zero", 320);
+        long reservedUntil = crashed.reserve("edge-1", cola.getProductId(), UUID.randomUUID(), 60_000);
+
+        //When
+        EdgeCatalog recovered = new EdgeCatalog(properties());
+
+        //Then
+        assertThat(recovered.findRows("edge-1", 0, 10))
+                .extracting(ProductRow::getProductId, ProductRow::getProductName, ProductRow::getProductPrice, ProductRow::getInventarQuantity)
+                .containsExactly(
+                        tuple(cola.getProductId(), "Cola", 350, 2),
+                        tuple(fanta.getProductId(), "Fanta Zero", 320, null));
+        assertThat(reservedUntil).isPositive();
+        assertThat(recovered.isReserved("edge-1", cola.getProductId())).isTrue();
+        assertThat(recovered.saveProduct(new Product(null, "edge-1", "Water", 100, null)).getProductId()).isEqualTo(fanta.getProductId() + 1);
+    }
+
+    @Test
+    void should_recover_a_snapshot_and_the_journal_written_after_it() throws Exception {
+        //Given
+        EdgeCatalog catalog = new EdgeCatalog(properties());
+        Product cola = catalog.saveProduct(new Product(null, "edge-2", "Cola", 350, null));
+        Product fanta = catalog.saveProduct(new Product(null, "edge-2", "Fanta", 300, null));
+        catalog.snapshot();
+        catalog.deleteProduct("edge-2", cola.getProductId(), true);
+        catalog.saveProduct(new Product(null, "edge-3", "Water", 100, null));
+
+        //When
+        EdgeCatalog recovered = new EdgeCatalog(properties());
+
+        //Then
+        assertThat(recovered.findRows(null, 0, 10))
+                .extracting(ProductRow::getMachineId, ProductRow::getProductName)
+                .containsExactly(tuple("edge-2", "Fanta"), tuple("edge-3", "Water"));
+        assertThat(recovered.findProduct(fanta.getProductId()).getProductPrice()).isEqualTo(300);
+        assertThat(recovered.findMachineIds()).containsExactly("edge-2", "edge-3");
+    }
+
+    @Test
+    void should_stop_the_recovery_at_a_torn_record() throws Exception {
+        //Given
+        EdgeCatalog catalog = new EdgeCatalog(properties());
+        catalog.saveProduct(new Product(null, "edge-4", "Cola", 350, null));
+        catalog.saveProduct(new Product(null, "edge-4", "Fanta", 300, null));
+        tearLastRecord(dataDir.resolve("catalog.journal"));
+
+        //When
+        EdgeCatalog recovered = new EdgeCatalog(properties());
+        recovered.saveProduct(new Product(null, "edge-4", "Water", 100, null));
+
+        //Then
+        assertThat(recovered.findRows("edge-4", 0, 10)).extracting(ProductRow::getProductName).containsExactly("Cola", "Water");
+        assertThat(new EdgeCatalog(properties()).findRows("edge-4", 0, 10)).extracting(ProductRow::getProductName)
+                .containsExactly("Cola", "Water");
+    }
+
+    @Test
+    void should_take_a_snapshot_when_the_journal_is_full() throws Exception {
+        //Given
+        EdgeProperties properties = properties();
+        properties.setJournalSize(DataSize.ofKilobytes(4));
+        EdgeCatalog catalog = new EdgeCatalog(properties);
+
+        //When
+        for (int i = 0; i < 500; i++) {
+            catalog.saveProduct(new Product(null, "edge-5", "Product " + i, i, null));
+        }
+
+        //Then
+        assertThat(new EdgeCatalog(properties).countProducts()).isEqualTo(500);
+    }
+
+    @Test
+    void should_sort_page_and_query_products_by_example_in_memory() throws Exception {
+        //Given
+        EdgeProductRepository repository = new EdgeProductRepository(new EdgeCatalog(properties()));
+        repository.save(new Product(null, "edge-6", "Fanta", 300, null));
+        repository.save(new Product(null, "edge-6", "Cola", 350, null));
+        repository.save(new Product(null, "edge-6", "Cola Zero", 320, null));
+        repository.save(new Product(null, "edge-7", "Cola", 350, null));
+
+        //When
+        Page<Product> page = repository.findAll(PageRequest.of(1, 2, Sort.by("productPrice").descending()));
+        List<Product> colas = repository.findAll(Example.of(new Product(null, "edge-6", "cola", null, null),
+                ExampleMatcher.matching().withIgnoreCase().withStringMatcher(ExampleMatcher.StringMatcher.STARTING)), Sort.by("productName"));
+        long expensive = repository.findBy(Example.of(new Product(null, null, null, 350, null)), query -> query.count());
+
+        //Then
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting(Product::getProductPrice).containsExactly(320, 300);
+        assertThat(colas).extracting(Product::getProductName).containsExactly("Cola", "Cola Zero");
+        assertThat(expensive).isEqualTo(2);
+    }
+
+    private EdgeProperties properties() {
+        EdgeProperties properties = new EdgeProperties();
+        properties.setDataDir(dataDir);
+        properties.setForceWrites(false);
+        return properties;
+    }
+
+    /**
+     * Flips a byte in the payload of the last record, as if the write had not reached the disk.
+     */
+    private static void tearLastRecord(Path journal) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            long position = 0;
+            long last = 0;
+            while (true) {
+                file.seek(position);
+                int length = file.readInt();
+                if (length <= 0) {
+                    break;
+                }
+                last = position;
+                position += 16 + length;
+            }
+            file.seek(last + 20);
+            int value = file.read();
+            file.seek(last + 20);
+            file.write(value ^ 0xFF);
+        }
+    }
+}
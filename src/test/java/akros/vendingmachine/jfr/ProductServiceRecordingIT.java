@@ -0,0 +1,94 @@
+package akros.vendingmachine.jfr;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+@TestPropertySource(properties = "app.jfr.continuous=true")
+class ProductServiceRecordingIT extends AbstractProductIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_record_the_product_id_and_outcome_of_service_calls() throws Exception {
+        //Given
+        Integer id = addProduct("Cola");
+        restTemplate.exchange(PRODUCT_API_PATH + Integer.MAX_VALUE, GET, HttpEntity.EMPTY, ProductResponseDto.class);
+
+        //When
+        List<RecordedEvent> events = dump();
+
+        //Then
+        assertThat(events)
+                .filteredOn(event -> event.getEventType().getName().equals("akros.vendingmachine.ProductService"))
+                .extracting(event -> event.getString("method"), event -> event.getInt("productId"),
+                        event -> event.getString("outcome"), event -> event.getInt("status"))
+                .contains(
+                        tuple("createProduct", id, "SUCCESS", 201),
+                        tuple("getProduct", Integer.MAX_VALUE, "CLIENT_ERROR", 404));
+    }
+
+    @Test
+    void should_record_the_phases_of_a_service_call() throws Exception {
+        //Given
+        Integer id = addProduct("Fanta");
+        restTemplate.exchange(PRODUCT_API_PATH + id, GET, HttpEntity.EMPTY, ProductResponseDto.class);
+
+        //When
+        List<RecordedEvent> events = dump();
+
+        //Then
+        assertThat(events)
+                .filteredOn(event -> event.getEventType().getName().equals("akros.vendingmachine.ProductPhase"))
+                .filteredOn(event -> event.getString("method").equals("getProduct") && event.getInt("productId") == id)
+                .extracting(event -> event.getString("phase"))
+                .contains("repository", "mapping", "validation", "response", "serialization");
+    }
+
+    private Integer addProduct(String productName) {
+        ProductResponseDto response = restTemplate.exchange("/api/v1/products", POST,
+                new HttpEntity<>(ProductDTO.builder().productName(productName).productPrice(350).build()), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) response.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    private List<RecordedEvent> dump() throws Exception {
+        byte[] recording = restTemplate.getForObject("/actuator/jfr", byte[].class);
+        Path file = Files.createTempFile("product-service-", ".jfr");
+        try {
+            Files.write(file, recording);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package akros.vendingmachine.metrics;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.http.HttpEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+
+@AutoConfigureObservability
+class ProductServiceMetricsIT extends AbstractProductIT {
+
+    @Test
+    void should_expose_service_timers_and_outcome_counters_to_prometheus() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        //When
+        for (int i = 0; i <= MAX_PRODUCT_QUANTITY; i++) {
+            restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class);
+        }
+        restTemplate.getForObject(PRODUCT_API_PATH + Integer.MAX_VALUE, ProductResponseDto.class);
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        //Then
+        assertThat(scrape)
+                .contains("product_service_seconds_bucket{")
+                .contains("method=\"createProduct\",outcome=\"SUCCESS\",status=\"201\"")
+                .contains("method=\"createProduct\",outcome=\"CLIENT_ERROR\",status=\"400\"")
+                .contains("product_inventory_cap_rejections_total{application=\"vending-machine\",method=\"createProduct\"} 1.0")
+                .contains("product_not_found_total{application=\"vending-machine\",method=\"getProduct\"} 1.0")
+                .contains("hikaricp_connections_saturation")
+                .contains("cache_gets_total");
+    }
+
+    @Test
+    void should_count_only_cap_rejections_of_a_batch() {
+        //Given
+        List<ProductDTO> batch = new ArrayList<>();
+        batch.add(ProductDTO.builder().productPrice(100).build());
+        for (int i = 0; i <= MAX_PRODUCT_QUANTITY; i++) {
+            batch.add(ProductDTO.builder().productName("Sparkling Water").productPrice(100).build());
+        }
+
+        //When
+        restTemplate.exchange("/api/v1/products/batch", POST, new HttpEntity<>(batch), ProductResponseDto.class);
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        //Then
+        assertThat(scrape).contains("product_inventory_cap_rejections_total{application=\"vending-machine\",method=\"createProducts\"} 1.0");
+    }
+}
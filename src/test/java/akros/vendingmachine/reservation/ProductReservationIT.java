@@ -0,0 +1,155 @@
+package akros.vendingmachine.reservation;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.RESERVATION_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+@TestPropertySource(properties = {"app.reservations.ttl=1s", "app.reservations.tick=20ms"})
+class ProductReservationIT extends AbstractProductIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_vend_the_unit_of_a_confirmed_reservation() {
+        //Given
+        Integer id = addProduct("Cola");
+        ProductResponseDto reserved = reserve(id);
+        String reservationId = reservationId(reserved);
+
+        //When
+        ProductResponseDto secondReservation = reserve(id);
+        ProductResponseDto directVend = call(DELETE, PRODUCT_API_PATH + id);
+        ProductResponseDto confirmed = call(POST, PRODUCT_API_PATH + "reservations/" + reservationId + "/confirm");
+        ProductResponseDto confirmedTwice = call(POST, PRODUCT_API_PATH + "reservations/" + reservationId + "/confirm");
+
+        //Then
+        assertThat(reserved.getStatus()).isEqualTo(CREATED);
+        assertThat(secondReservation.getStatus()).isEqualTo(CONFLICT);
+        assertThat(directVend.getStatus()).isEqualTo(CONFLICT);
+        assertThat(confirmed.getStatus()).isEqualTo(OK);
+        assertThat(((Map<?, ?>) confirmed.getData().get(PRODUCT_KEY)).get("productId")).isEqualTo(id);
+        assertThat(confirmedTwice.getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(productRepository.findById(id)).isEmpty();
+        assertThat(inventarRepository.findByMachineIdAndProductName("default", "Cola").getQuantity()).isZero();
+    }
+
+    @Test
+    void should_give_the_unit_of_a_released_reservation_back() {
+        //Given
+        Integer id = addProduct("Cola");
+        String reservationId = reservationId(reserve(id));
+
+        //When
+        ProductResponseDto released = call(DELETE, PRODUCT_API_PATH + "reservations/" + reservationId);
+        ProductResponseDto releasedTwice = call(DELETE, PRODUCT_API_PATH + "reservations/" + reservationId);
+        ProductResponseDto vended = call(DELETE, PRODUCT_API_PATH + id);
+
+        //Then
+        assertThat(released.getStatus()).isEqualTo(OK);
+        assertThat(releasedTwice.getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(vended.getStatus()).isEqualTo(OK);
+    }
+
+    @Test
+    void should_return_the_unit_of_an_expired_reservation_to_stock() throws Exception {
+        //Given
+        Integer id = addProduct("Cola");
+        String reservationId = reservationId(reserve(id));
+        double expiredBefore = meterRegistry.get("product.reservations.expired").functionCounter().count();
+
+        //When
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.get("product.reservations.expired").functionCounter().count() == expiredBefore
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        ProductResponseDto confirmed = call(POST, PRODUCT_API_PATH + "reservations/" + reservationId + "/confirm");
+        ProductResponseDto reservedAgain = reserve(id);
+
+        //Then
+        assertThat(meterRegistry.get("product.reservations.expired").functionCounter().count()).isGreaterThan(expiredBefore);
+        assertThat(confirmed.getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(reservedAgain.getStatus()).isEqualTo(CREATED);
+        assertThat(inventarRepository.findByMachineIdAndProductName("default", "Cola").getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    void should_let_only_one_of_concurrent_reservations_hold_the_last_unit() throws Exception {
+        //Given
+        Integer id = addProduct("Cola");
+        List<Callable<ProductResponseDto>> reservations = IntStream.range(0, 8)
+                .<Callable<ProductResponseDto>>mapToObj(i -> () -> reserve(id))
+                .toList();
+
+        //When
+        List<Future<ProductResponseDto>> results;
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            results = executor.invokeAll(reservations);
+        }
+
+        //Then
+        long created = 0;
+        for (Future<ProductResponseDto> result : results) {
+            assertThat(result.get().getStatus()).isIn(CREATED, CONFLICT);
+            created += result.get().getStatus() == CREATED ? 1 : 0;
+        }
+        assertThat(created).isEqualTo(1);
+    }
+
+    private Integer addProduct(String productName) {
+        ProductResponseDto response = restTemplate.exchange("/api/v1/products", POST,
+                new HttpEntity<>(ProductDTO.builder().productName(productName).productPrice(350).build()), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) response.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    private ProductResponseDto reserve(Integer id) {
+        return call(POST, PRODUCT_API_PATH + id + "/reservations");
+    }
+
+    private ProductResponseDto call(HttpMethod method, String path) {
+        return restTemplate.exchange(path, method, HttpEntity.EMPTY, ProductResponseDto.class).getBody();
+    }
+
+    private static String reservationId(ProductResponseDto response) {
+        return (String) ((Map<?, ?>) response.getData().get(RESERVATION_KEY)).get("reservationId");
+    }
+}
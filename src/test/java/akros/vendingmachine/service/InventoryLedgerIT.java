@@ -0,0 +1,187 @@
+package akros.vendingmachine.service;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarLedgerRepository;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.InventarRepository.InventarQuantity;
+import akros.vendingmachine.repository.ProductRepository;
+import akros.vendingmachine.service.impl.InventoryLedgerCompactor;
+import akros.vendingmachine.service.impl.LedgerInventoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.MULTI_STATUS;
+
+@TestPropertySource(properties = {
+        "app.inventory.mode=ledger",
+        "app.inventory.compaction-interval=1h"
+})
+class InventoryLedgerIT extends AbstractProductIT {
+
+    private static final int CONCURRENT_REQUESTS = 300;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private InventarLedgerRepository inventarLedgerRepository;
+    @Autowired
+    private InventoryStore inventoryStore;
+    @Autowired
+    private InventoryLedgerCompactor inventoryLedgerCompactor;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarLedgerRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_not_exceed_quantity_cap_when_products_are_added_concurrently() throws Exception {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<ProductResponseDto> addProduct = () -> {
+            start.await();
+            return restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody();
+        };
+
+        //When
+        List<ProductResponseDto> responses;
+        try (ExecutorService executor = Executors.newFixedThreadPool(64)) {
+            List<Future<ProductResponseDto>> futures = IntStream.range(0, CONCURRENT_REQUESTS)
+                    .mapToObj(i -> executor.submit(addProduct))
+                    .toList();
+            start.countDown();
+            responses = futures.stream().map(InventoryLedgerIT::await).toList();
+        }
+
+        //Then
+        assertThat(responses).filteredOn(response -> response.getStatus() == CREATED).hasSize(MAX_PRODUCT_QUANTITY);
+        assertThat(responses).filteredOn(response -> response.getStatus() == BAD_REQUEST).hasSize(CONCURRENT_REQUESTS - MAX_PRODUCT_QUANTITY);
+        assertThat(productRepository.count()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Cola").getQuantity()).isZero();
+        assertThat(inventoryStore.find(DEFAULT_MACHINE_ID, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+    }
+
+    @Test
+    void should_fold_deltas_into_inventar_quantity_and_keep_the_cap() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(250)
+                .build();
+        for (int i = 0; i < MAX_PRODUCT_QUANTITY; i++) {
+            restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class);
+        }
+        Integer productId = productRepository.findAll().getFirst().getProductId();
+        restTemplate.exchange(PRODUCT_API_PATH + productId, DELETE, null, ProductResponseDto.class);
+
+        //When
+        int compacted = inventoryLedgerCompactor.compact();
+        ProductResponseDto batch = restTemplate.exchange("/api/v1/products/batch", POST,
+                new HttpEntity<>(Collections.nCopies(3, productDTO)), ProductResponseDto.class).getBody();
+
+        //Then
+        assertThat(compacted).isEqualTo(1);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Fanta").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY - 1);
+        assertThat(batch.getStatus()).isEqualTo(MULTI_STATUS);
+        assertThat(inventoryStore.find(DEFAULT_MACHINE_ID, "Fanta").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(productRepository.count()).isEqualTo(MAX_PRODUCT_QUANTITY);
+    }
+
+    @Test
+    void should_release_a_full_stripe_before_waiting_for_a_batch_locking_all_stripes() throws Exception {
+        //Given
+        String machineId = "ledger-full-stripe";
+        // fills stripe 0, so the single unit below locks a higher stripe
+        inventoryStore.increment(machineId, new TreeMap<>(Map.of("Cola", 1)), MAX_PRODUCT_QUANTITY);
+        List<CompletableFuture<Map<String, InventoryStore.Grant>>> batches = new ArrayList<>();
+        InventarLedgerRepository fullStripes = (InventarLedgerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{InventarLedgerRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("bookUnit")) {
+                        // a batch waits for the locked stripe while holding the lower ones, then the stripe turns out to be full
+                        batches.add(CompletableFuture.supplyAsync(() ->
+                                inventoryStore.increment(machineId, new TreeMap<>(Map.of("Cola", 1)), MAX_PRODUCT_QUANTITY)));
+                        awaitWaitingStripeLock();
+                        return 0;
+                    }
+                    try {
+                        return method.invoke(inventarLedgerRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        LedgerInventoryStore ledgerInventoryStore = new LedgerInventoryStore(inventarRepository, fullStripes);
+
+        //When
+        Optional<InventarQuantity> single = new TransactionTemplate(transactionManager).execute(status ->
+                ledgerInventoryStore.increment(machineId, "Cola", MAX_PRODUCT_QUANTITY));
+        Map<String, InventoryStore.Grant> batch = batches.getFirst().get(10, TimeUnit.SECONDS);
+
+        //Then
+        assertThat(single).isPresent();
+        assertThat(batch.get("Cola").granted()).isEqualTo(1);
+        assertThat(inventoryStore.find(machineId, "Cola").getQuantity()).isEqualTo(3);
+    }
+
+    private void awaitWaitingStripeLock() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject("SELECT count(*) FROM pg_locks WHERE locktype = 'advisory' AND NOT granted", Integer.class) == 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("The batch never waited for a stripe");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package akros.vendingmachine.sse;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.cache.CacheNode;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+
+class ProductEventStreamIT extends AbstractProductIT {
+
+    private static final String MACHINE = "site-11";
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private CacheNode cacheNode;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_push_the_changes_of_the_machine_with_the_inventory_quantity() throws Exception {
+        //Given
+        try (Stream<String> stream = subscribe(null)) {
+            Iterator<String> lines = stream.iterator();
+
+            //When
+            addProduct("site-12", "Cola");
+            addProduct(MACHINE, "Cola");
+            addProduct(MACHINE, "Cola");
+            Map<String, String> first = nextEvent(lines);
+            Map<String, String> second = nextEvent(lines);
+
+            //Then
+            assertThat(first).containsEntry("event", "created");
+            assertThat(first.get("data")).contains("\"machineId\":\"site-11\"", "\"productName\":\"Cola\"", "\"quantity\":1");
+            assertThat(second.get("data")).contains("\"quantity\":2");
+            assertThat(first.get("id")).startsWith(cacheNode.getId() + "-");
+            assertThat(sequence(second.get("id"))).isGreaterThan(sequence(first.get("id")));
+        }
+    }
+
+    @Test
+    void should_resume_after_the_last_event_id() throws Exception {
+        //Given
+        String lastEventId;
+        try (Stream<String> stream = subscribe(null)) {
+            addProduct(MACHINE, "Cola");
+            lastEventId = nextEvent(stream.iterator()).get("id");
+        }
+        addProduct(MACHINE, "Fanta");
+
+        //When
+        try (Stream<String> stream = subscribe(lastEventId)) {
+            Map<String, String> missed = nextEvent(stream.iterator());
+
+            //Then
+            assertThat(missed).containsEntry("event", "created");
+            assertThat(missed.get("data")).contains("\"productName\":\"Fanta\"");
+        }
+    }
+
+    @Test
+    void should_push_the_quantity_left_after_a_vend() throws Exception {
+        //Given
+        addProduct(MACHINE, "Cola");
+        Integer id = addProduct(MACHINE, "Cola");
+        try (Stream<String> stream = subscribe(null)) {
+
+            //When
+            restTemplate.delete(MACHINE_API_PATH + MACHINE + "/products/" + id);
+            Map<String, String> deleted = nextEvent(stream.iterator());
+
+            //Then
+            assertThat(deleted).containsEntry("event", "deleted");
+            assertThat(deleted.get("data")).contains("\"productId\":" + id, "\"quantity\":1");
+        }
+    }
+
+    @Test
+    void should_reset_a_client_whose_last_event_id_was_issued_by_another_node() throws Exception {
+        //Given
+        String lastEventId;
+        try (Stream<String> stream = subscribe(null)) {
+            addProduct(MACHINE, "Cola");
+            lastEventId = nextEvent(stream.iterator()).get("id");
+        }
+        String otherNodeId = UUID.randomUUID() + lastEventId.substring(cacheNode.getId().length());
+
+        //When
+        try (Stream<String> stream = subscribe(otherNodeId)) {
+            Map<String, String> reset = nextEvent(stream.iterator());
+
+            //Then
+            assertThat(reset).containsEntry("event", ProductEventStream.RESET);
+        }
+    }
+
+    @Test
+    void should_reset_a_client_whose_missed_events_are_not_buffered_anymore() throws Exception {
+        //When
+        try (Stream<String> stream = subscribe("999999999")) {
+            Map<String, String> reset = nextEvent(stream.iterator());
+
+            //Then
+            assertThat(reset).containsEntry("event", ProductEventStream.RESET);
+        }
+    }
+
+    private Stream<String> subscribe(String lastEventId) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + MACHINE_API_PATH + MACHINE + "/products/events"))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<Stream<String>> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response.body();
+    }
+
+    private Integer addProduct(String machineId, String productName) {
+        ProductResponseDto response = restTemplate.exchange(MACHINE_API_PATH + machineId + "/products", POST,
+                new HttpEntity<>(ProductDTO.builder().productName(productName).productPrice(100).build()), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) response.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    private long sequence(String eventId) {
+        return Long.parseLong(eventId.substring(cacheNode.getId().length() + 1));
+    }
+
+    /**
+     * Reads the fields of the next event, skipping comments, within a few seconds.
+     */
+    private static Map<String, String> nextEvent(Iterator<String> lines) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, String> fields = new HashMap<>();
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (line.isEmpty() && !fields.isEmpty()) {
+                    return fields;
+                }
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    fields.put(line.substring(0, colon), line.substring(colon + 1).trim());
+                }
+            }
+            return fields;
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
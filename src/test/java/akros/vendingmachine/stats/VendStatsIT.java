@@ -0,0 +1,150 @@
+package akros.vendingmachine.stats;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.config.StatsProperties;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.dto.VendStatsDTO;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.MACHINE_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static akros.vendingmachine.AppConstant.STATS_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+class VendStatsIT extends AbstractProductIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private VendStats vendStats;
+    @Autowired
+    private VendStatsStore vendStatsStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_count_the_vends_and_restocks_of_the_product_name_of_a_product() {
+        //Given
+        List<Integer> ids = List.of(addProduct("stats-1", "Cola"), addProduct("stats-1", "Cola"), addProduct("stats-1", "Cola"));
+        vend("stats-1", ids.get(0));
+        vend("stats-1", ids.get(1));
+
+        //When
+        ProductResponseDto response = restTemplate.exchange(MACHINE_API_PATH + "stats-1/products/" + ids.get(2) + "/stats", GET,
+                HttpEntity.EMPTY, ProductResponseDto.class).getBody();
+
+        //Then
+        Map<?, ?> stats = (Map<?, ?>) response.getData().get(STATS_KEY);
+        assertThat(stats.get("vendsLastMinute")).isEqualTo(2);
+        assertThat(stats.get("vendsLastDay")).isEqualTo(2);
+        assertThat(stats.get("restocksLastHour")).isEqualTo(3);
+        assertThat(stats.get("quantity")).isEqualTo(1);
+        assertThat(stats.get("hoursUntilEmpty")).isEqualTo(12.0);
+    }
+
+    @Test
+    void should_rank_the_product_names_of_all_machines() {
+        //Given
+        vend("stats-2", addProduct("stats-2", "Cola"));
+        vend("stats-2", addProduct("stats-2", "Cola"));
+        vend("stats-3", addProduct("stats-3", "Fanta"));
+        addProduct("stats-3", "Water");
+
+        //When
+        List<VendStatsDTO> top = restTemplate.exchange("/api/v1/stats/top?window=minute&kind=vend&limit=500", GET, HttpEntity.EMPTY,
+                new ParameterizedTypeReference<List<VendStatsDTO>>() {
+                }).getBody();
+
+        //Then
+        assertThat(top)
+                .filteredOn(stats -> List.of("stats-2", "stats-3").contains(stats.getMachineId()))
+                .extracting(VendStatsDTO::getMachineId, VendStatsDTO::getProductName, VendStatsDTO::getVendsLastMinute)
+                .containsExactly(
+                        tuple("stats-2", "Cola", 2L),
+                        tuple("stats-3", "Fanta", 1L));
+    }
+
+    @Test
+    void should_restore_the_persisted_hour_and_day_buckets() {
+        //Given
+        vend("stats-4", addProduct("stats-4", "Cola"));
+        vendStatsStore.flush();
+        var restarted = new VendStats(new StatsProperties());
+
+        //When
+        new VendStatsStore(restarted, jdbcTemplate).load();
+
+        //Then
+        VendStatsDTO stats = restarted.stats("stats-4", "Cola");
+        assertThat(stats.getVendsLastHour()).isEqualTo(1);
+        assertThat(stats.getVendsLastDay()).isEqualTo(1);
+        assertThat(stats.getRestocksLastDay()).isEqualTo(1);
+        assertThat(stats.getVendsLastMinute()).isZero();
+    }
+
+    @Test
+    void should_count_the_granted_units_of_an_import_as_restocks() {
+        //Given
+        addProduct("stats-5", "Cola");
+        String csv = "productName,productPrice\n" + "Cola,350\n".repeat(12) + "Fanta,300\n".repeat(2);
+
+        //When
+        importFile("stats-5", csv);
+
+        //Then
+        assertThat(vendStats.stats("stats-5", "Cola").getRestocksLastHour()).isEqualTo(10);
+        assertThat(vendStats.stats("stats-5", "Fanta").getRestocksLastHour()).isEqualTo(2);
+    }
+
+    private Integer addProduct(String machineId, String productName) {
+        ProductResponseDto response = restTemplate.exchange(MACHINE_API_PATH + machineId + "/products", POST,
+                new HttpEntity<>(ProductDTO.builder().productName(productName).productPrice(100).build()), ProductResponseDto.class).getBody();
+        return (Integer) ((Map<?, ?>) response.getData().get(PRODUCT_KEY)).get("productId");
+    }
+
+    private void importFile(String machineId, String content) {
+        var file = new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "units.csv";
+            }
+        };
+        var body = new LinkedMultiValueMap<String, Object>();
+        body.add("file", file);
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        restTemplate.exchange(MACHINE_API_PATH + machineId + "/products/import", POST, new HttpEntity<>(body, headers), ProductResponseDto.class);
+    }
+
+    private void vend(String machineId, Integer id) {
+        restTemplate.exchange(MACHINE_API_PATH + machineId + "/products/" + id, DELETE, HttpEntity.EMPTY, ProductResponseDto.class);
+    }
+}
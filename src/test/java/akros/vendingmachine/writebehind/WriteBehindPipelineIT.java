@@ -0,0 +1,121 @@
+package akros.vendingmachine.writebehind;
+
+import akros.vendingmachine.AbstractProductIT;
+import akros.vendingmachine.dto.ProductDTO;
+import akros.vendingmachine.dto.ProductResponseDto;
+import akros.vendingmachine.repository.InventarRepository;
+import akros.vendingmachine.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static akros.vendingmachine.AppConstant.DEFAULT_MACHINE_ID;
+import static akros.vendingmachine.AppConstant.MAX_PRODUCT_QUANTITY;
+import static akros.vendingmachine.AppConstant.PRODUCT_API_PATH;
+import static akros.vendingmachine.AppConstant.PRODUCT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+@TestPropertySource(properties = "app.write-behind.enabled=true")
+class WriteBehindPipelineIT extends AbstractProductIT {
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventarRepository inventarRepository;
+    @Autowired
+    private WriteBehindPipeline writeBehindPipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehindPipeline.flush(FLUSH_TIMEOUT_MILLIS);
+        productRepository.deleteAll();
+        inventarRepository.deleteAll();
+    }
+
+    @Test
+    void should_acknowledge_restocks_and_write_them_behind_within_the_quantity_cap() throws InterruptedException {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Cola")
+                .productPrice(350)
+                .build();
+
+        //When
+        List<ProductResponseDto> responses = new ArrayList<>();
+        for (int i = 0; i <= MAX_PRODUCT_QUANTITY; i++) {
+            responses.add(restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody());
+        }
+        boolean flushed = writeBehindPipeline.flush(FLUSH_TIMEOUT_MILLIS);
+
+        //Then
+        assertThat(flushed).isTrue();
+        assertThat(responses).filteredOn(response -> response.getStatus() == ACCEPTED).hasSize(MAX_PRODUCT_QUANTITY);
+        assertThat(responses.getLast().getStatus()).isEqualTo(BAD_REQUEST);
+        assertThat(productRepository.count()).isEqualTo(MAX_PRODUCT_QUANTITY);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Cola").getQuantity()).isEqualTo(MAX_PRODUCT_QUANTITY);
+    }
+
+    @Test
+    void should_acknowledge_a_vend_once_and_write_it_behind() throws InterruptedException {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Fanta")
+                .productPrice(250)
+                .build();
+        Integer id = productId(restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class).getBody());
+        restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class);
+
+        //When
+        ProductResponseDto vend = restTemplate.exchange(PRODUCT_API_PATH + id, DELETE, null, ProductResponseDto.class).getBody();
+        ProductResponseDto secondVend = restTemplate.exchange(PRODUCT_API_PATH + id, DELETE, null, ProductResponseDto.class).getBody();
+        boolean flushed = writeBehindPipeline.flush(FLUSH_TIMEOUT_MILLIS);
+
+        //Then
+        assertThat(flushed).isTrue();
+        assertThat(vend.getStatus()).isEqualTo(ACCEPTED);
+        assertThat(secondVend.getStatus()).isEqualTo(NOT_FOUND);
+        assertThat(productRepository.findById(id)).isEmpty();
+        assertThat(productRepository.count()).isEqualTo(1);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Fanta").getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void should_write_acknowledged_operations_on_shutdown() {
+        //Given
+        ProductDTO productDTO = ProductDTO.builder()
+                .productName("Sprite")
+                .productPrice(300)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class);
+        }
+
+        //When
+        writeBehindPipeline.stop();
+
+        //Then
+        assertThat(productRepository.count()).isEqualTo(5);
+        assertThat(inventarRepository.findByMachineIdAndProductName(DEFAULT_MACHINE_ID, "Sprite").getQuantity()).isEqualTo(5);
+        assertThat(restTemplate.exchange("/api/v1/products", POST, new HttpEntity<>(productDTO), ProductResponseDto.class)
+                .getBody().getStatusCode()).isEqualTo(503);
+    }
+
+    private static Integer productId(ProductResponseDto responseDto) {
+        return (Integer) ((Map<?, ?>) responseDto.getData().get(PRODUCT_KEY)).get("productId");
+    }
+}